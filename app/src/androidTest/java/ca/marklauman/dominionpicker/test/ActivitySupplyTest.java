@@ -0,0 +1,110 @@
+package ca.marklauman.dominionpicker.test;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ca.marklauman.dominionpicker.ActivitySupply;
+import ca.marklauman.dominionpicker.Supply;
+import ca.marklauman.dominionpicker.database.CardRowCache;
+import ca.marklauman.dominionpicker.database.Provider;
+import ca.marklauman.dominionpicker.database.TableSupply;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests that a new supply passed to {@link ActivitySupply} stays on display while the
+ *  history table is read, whether or not its row has been written yet.
+ *  @author Mark Lauman */
+@RunWith(AndroidJUnit4.class)
+public class ActivitySupplyTest {
+
+    /** The id (time) of the test supply. Far in the past, so no real supply has it. */
+    private static final long TIME = 1L;
+    /** The cards of the test supply. */
+    private static final String CARDS = "1,2,3,4,5,6,7,8,9,10";
+    /** The longest time to wait for the history table to be read, in milliseconds. */
+    private static final long WAIT = 2000;
+
+    @Rule
+    public final ActivityTestRule<ActivitySupply> rule
+            = new ActivityTestRule<>(ActivitySupply.class, false, false);
+
+    /** Context of the app. */
+    private Context context;
+
+
+    @Before
+    public void warmCache() {
+        context = InstrumentationRegistry.getTargetContext();
+        CardRowCache.load(context);
+        removeRow();
+    }
+
+
+    @After
+    public void removeRow() {
+        context.getContentResolver().delete(Provider.URI_HIST, TableSupply._ID + "=?",
+                                            new String[]{"" + TIME});
+    }
+
+
+    /** Build the supply the shuffler would pass to the activity. */
+    private static Supply supply() {
+        MatrixCursor c = new MatrixCursor(new String[]{TableSupply._ID, TableSupply._NAME,
+                TableSupply._BANE, TableSupply._HIGH_COST, TableSupply._SHELTERS,
+                TableSupply._CARDS});
+        c.addRow(new Object[]{TIME, null, -1L, 0, 0, CARDS});
+        c.moveToFirst();
+        Supply res = new Supply(c);
+        c.close();
+        return res;
+    }
+
+
+    /** Show the supply, wait for the history table to be read,
+     *  then check that every card is still in the list. */
+    private void assertShown() throws InterruptedException {
+        Intent intent = new Intent(context, ActivitySupply.class);
+        intent.putExtra(ActivitySupply.PARAM_HISTORY_ID, TIME);
+        intent.putExtra(ActivitySupply.PARAM_SUPPLY, supply());
+        ActivitySupply activity = rule.launchActivity(intent);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        Thread.sleep(WAIT);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        RecyclerView list = activity.findViewById(android.R.id.list);
+        assertEquals(CARDS.split(",").length, list.getAdapter().getItemCount());
+    }
+
+
+    /** The row has not been written yet (the loader finds nothing). */
+    @Test
+    public void rowMissing() throws InterruptedException {
+        assertShown();
+    }
+
+
+    /** The row has been written with the same cards. */
+    @Test
+    public void rowUnchanged() throws InterruptedException {
+        ContentValues values = new ContentValues();
+        values.put(TableSupply._ID, TIME);
+        values.put(TableSupply._CARDS, CARDS);
+        values.put(TableSupply._BANE, -1L);
+        values.put(TableSupply._HIGH_COST, 0);
+        values.put(TableSupply._SHELTERS, 0);
+        context.getContentResolver().insert(Provider.URI_HIST, values);
+        assertShown();
+    }
+}
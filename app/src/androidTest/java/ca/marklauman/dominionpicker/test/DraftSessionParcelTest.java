@@ -0,0 +1,65 @@
+package ca.marklauman.dominionpicker.test;
+
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.DraftSession;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/** Tests that a {@link DraftSession} is unchanged by a trip through a {@link Parcel},
+ *  as happens when the draft screen is recreated.
+ *  @author Mark Lauman */
+@RunWith(AndroidJUnit4.class)
+public class DraftSessionParcelTest {
+
+    @Test
+    public void roundTrip() {
+        CardCatalog.Builder builder = new CardCatalog.Builder(20);
+        for(long id=1; id<=20; id++)
+            builder.add(id, 0, 4, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        CardCatalog catalog = builder.build();
+        ShuffleRequest request = new ShuffleRequest.Builder()
+                .setLimits(10, 0)
+                .setFilter("0", "", "", true, true, "")
+                .build();
+        DraftSession draft = DraftSession.deal(catalog, ShuffleEngine.newPool(catalog, request),
+                                               request, 3, 6, 3, new Random(0));
+        assertNotNull(draft);
+        draft.hand(0).setPicked(1, true);
+        draft.hand(2).setPicked(0, true);
+        draft.hand(2).setPicked(5, true);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            draft.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            DraftSession copy = DraftSession.CREATOR.createFromParcel(parcel);
+
+            assertEquals(draft.players, copy.players);
+            assertEquals(draft.handSize, copy.handSize);
+            assertEquals(draft.picksEach, copy.picksEach);
+            assertArrayEquals(draft.getPicks(), copy.getPicks());
+            for(int player=0; player<draft.players; player++) {
+                DraftSession.Hand hand = draft.hand(player);
+                DraftSession.Hand copyHand = copy.hand(player);
+                for(int pos=0; pos<hand.size(); pos++) {
+                    assertEquals(hand.getCard(pos), copyHand.getCard(pos));
+                    assertEquals(hand.isPicked(pos), copyHand.isPicked(pos));
+                }
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ca.marklauman.dominionpicker.test;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ca.marklauman.dominionpicker.R;
+import ca.marklauman.dominionpicker.database.DataDb;
+import ca.marklauman.dominionpicker.database.Provider;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests that the history card table matches the history table: when it is first made
+ *  by {@link DataDb#onUpgrade}, and after rows are changed through the {@link Provider}.
+ *  @author Mark Lauman */
+@RunWith(AndroidJUnit4.class)
+public class HistoryCardTest {
+
+    /** The last data db version without the history card table. */
+    private static final int VER_NO_HISTORY_CARD = 11;
+    /** The first data db version with the history card table. */
+    private static final int VER_HISTORY_CARD = 12;
+
+    /** The timestamps used by the tests. Far in the past, so no real shuffle has them. */
+    private static final long[] TIMES = {1L, 2L, 3L};
+
+    /** Context of the app. */
+    private Context context;
+
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        removeRows();
+    }
+
+
+    @After
+    public void removeRows() {
+        for(long time : TIMES)
+            context.getContentResolver().delete(Provider.URI_HIST, DataDb._H_TIME + "=?",
+                                                new String[]{"" + time});
+    }
+
+
+    /** The current data db version. */
+    private int current() {
+        return context.getResources().getInteger(R.integer.db_ver_data);
+    }
+
+
+    /** Get the cards of a shuffle in the history card table,
+     *  as "card@position" strings in position order. */
+    private static ArrayList<String> cardsOf(Cursor c) {
+        ArrayList<String> res = new ArrayList<>();
+        try {
+            while(c.moveToNext())
+                res.add(c.getLong(0) + "@" + c.getLong(1));
+        } finally {
+            c.close();
+        }
+        return res;
+    }
+
+
+    /** Read the cards of a shuffle from the history card table of a database. */
+    private static ArrayList<String> cardsOf(SQLiteDatabase db, long time) {
+        return cardsOf(db.query(DataDb.TABLE_HISTORY_CARD,
+                                new String[]{DataDb._HC_CARD, DataDb._HC_POS},
+                                DataDb._HC_TIME + "=?", new String[]{"" + time},
+                                null, null, DataDb._HC_POS));
+    }
+
+
+    /** Read the cards of a shuffle through the provider. */
+    private ArrayList<String> cardsOf(long time) {
+        return cardsOf(context.getContentResolver()
+                              .query(Provider.URI_HIST_CARD,
+                                     new String[]{DataDb._HC_CARD, DataDb._HC_POS},
+                                     DataDb._HC_TIME + "=?", new String[]{"" + time},
+                                     DataDb._HC_POS));
+    }
+
+
+    /** Add a shuffle to the history table of a database, without indexing it. */
+    private static void insertRaw(SQLiteDatabase db, long time, String cards) {
+        ContentValues row = new ContentValues();
+        row.put(DataDb._H_TIME, time);
+        row.put(DataDb._H_CARDS, cards);
+        db.insert(DataDb.TABLE_HISTORY, null, row);
+    }
+
+
+    /** Upgrading a database from before the history card table fills it from the
+     *  history table. Entries that are not card ids are skipped. */
+    @Test
+    public void backfill() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            db.execSQL("CREATE TABLE " + DataDb.TABLE_HISTORY + " ("
+                       + DataDb._H_TIME + " INTEGER PRIMARY KEY, "
+                       + DataDb._H_NAME + " TEXT DEFAULT NULL, "
+                       + DataDb._H_CARDS + " TEXT, "
+                       + DataDb._H_HIGH_COST + " INTEGER, "
+                       + DataDb._H_SHELTERS + " INTEGER, "
+                       + DataDb._H_BANE + " INTEGER DEFAULT -1);");
+            insertRaw(db, 1L, "10,20,30");
+            insertRaw(db, 2L, "40,x,50");
+            insertRaw(db, 3L, null);
+
+            new DataDb(context).onUpgrade(db, VER_NO_HISTORY_CARD, current());
+            assertEquals(Arrays.asList("10@0", "20@1", "30@2"), cardsOf(db, 1L));
+            assertEquals(Arrays.asList("40@0", "50@2"), cardsOf(db, 2L));
+            assertEquals(0, cardsOf(db, 3L).size());
+
+            // The triggers are there too
+            db.delete(DataDb.TABLE_HISTORY, DataDb._H_TIME + "=1", null);
+            assertEquals(0, cardsOf(db, 1L).size());
+        } finally {
+            db.close();
+        }
+    }
+
+
+    /** Upgrading a database that has the history card table adds the trigger that
+     *  moves cards to a new timestamp. */
+    @Test
+    public void upgradeAddsMove() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            DataDb data = new DataDb(context);
+            data.onCreate(db);
+            db.execSQL("DROP TRIGGER " + DataDb.TABLE_HISTORY_CARD + "_move");
+            insertRaw(db, 1L, "10,20");
+            data.onUpgrade(db, VER_HISTORY_CARD, current());
+            db.execSQL("INSERT INTO " + DataDb.TABLE_HISTORY_CARD + " VALUES (1, 10, 0)");
+
+            ContentValues values = new ContentValues();
+            values.put(DataDb._H_TIME, 2L);
+            db.update(DataDb.TABLE_HISTORY, values, DataDb._H_TIME + "=1", null);
+            assertEquals(0, cardsOf(db, 1L).size());
+            assertEquals(Arrays.asList("10@0"), cardsOf(db, 2L));
+        } finally {
+            db.close();
+        }
+    }
+
+
+    /** The history card table follows inserts, card changes, timestamp changes
+     *  and deletes made through the provider. */
+    @Test
+    public void providerKeepsIndex() {
+        ContentResolver resolver = context.getContentResolver();
+        ContentValues row = new ContentValues();
+        row.put(DataDb._H_TIME, 1L);
+        row.put(DataDb._H_CARDS, "10,20,30");
+        resolver.insert(Provider.URI_HIST, row);
+        assertEquals(Arrays.asList("10@0", "20@1", "30@2"), cardsOf(1L));
+
+        // New cards
+        ContentValues values = new ContentValues();
+        values.put(DataDb._H_CARDS, "40,50");
+        resolver.update(Provider.URI_HIST, values, DataDb._H_TIME + "=?", new String[]{"1"});
+        assertEquals(Arrays.asList("40@0", "50@1"), cardsOf(1L));
+
+        // New timestamp only: the stored cards move with it
+        values = new ContentValues();
+        values.put(DataDb._H_TIME, 2L);
+        resolver.update(Provider.URI_HIST, values, DataDb._H_TIME + "=?", new String[]{"1"});
+        assertEquals(0, cardsOf(1L).size());
+        assertEquals(Arrays.asList("40@0", "50@1"), cardsOf(2L));
+
+        // New timestamp and cards
+        values = new ContentValues();
+        values.put(DataDb._H_TIME, 3L);
+        values.put(DataDb._H_CARDS, "60");
+        resolver.update(Provider.URI_HIST, values, DataDb._H_TIME + "=?", new String[]{"2"});
+        assertEquals(0, cardsOf(2L).size());
+        assertEquals(Arrays.asList("60@0"), cardsOf(3L));
+
+        // Changes that don't touch the cards or timestamp leave them alone
+        values = new ContentValues();
+        values.put(DataDb._H_NAME, "Favorite");
+        resolver.update(Provider.URI_HIST, values, DataDb._H_TIME + "=?", new String[]{"3"});
+        assertEquals(Arrays.asList("60@0"), cardsOf(3L));
+
+        resolver.delete(Provider.URI_HIST, DataDb._H_TIME + "=?", new String[]{"3"});
+        assertEquals(0, cardsOf(3L).size());
+    }
+}
@@ -13,6 +13,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.text.SpannableStringBuilder;
 import android.text.style.ImageSpan;
 import android.util.Log;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ImageView;
@@ -24,6 +25,7 @@ import com.bumptech.glide.request.RequestOptions;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import ca.marklauman.dominionpicker.userinterface.InfoTextView;
+import ca.marklauman.dominionpicker.userinterface.WeightDialog;
 import ca.marklauman.dominionpicker.userinterface.icons.IconDescriber;
 import ca.marklauman.dominionpicker.userinterface.icons.PriceIcon;
 import ca.marklauman.dominionpicker.userinterface.imagefactories.CardColorFactory;
@@ -58,6 +60,8 @@ public class ActivityCardInfo extends AppCompatActivity
     private CardColorFactory colorFactory;
     /** Holds the price of the card */
     private PriceIcon price;
+    /** The name of the card, once it is loaded. */
+    private String cardName = null;
 
     /** Actionbar for this activity */
     private ActionBar actionBar;
@@ -106,12 +110,26 @@ public class ActivityCardInfo extends AppCompatActivity
     }
 
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.card_info, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
-        if(android.R.id.home == item.getItemId()) {
-            finish();
-            return true;
-        } else return super.onOptionsItemSelected(item);
+        switch(item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+            case R.id.action_weight:
+                WeightDialog.pickCard(this, cardName == null ? getString(R.string.weight_title)
+                                                             : cardName,
+                                      getIntent().getLongExtra(PARAM_ID, -1), null);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
     }
 
 
@@ -128,7 +146,8 @@ public class ActivityCardInfo extends AppCompatActivity
         c.setUri(Provider.URI_CARD_ALL);
         c.setProjection(COLS_USED);
         long card = getIntent().getLongExtra(PARAM_ID, -1);
-        c.setSelection(TableCard._ID+"="+card+" AND "+Pref.languageFilter(this));
+        c.setSelection(TableCard._ID+"=? AND "+Pref.languageFilter(this));
+        c.setSelectionArgs(new String[]{""+card});
         return c;
     }
 
@@ -143,7 +162,8 @@ public class ActivityCardInfo extends AppCompatActivity
         Resources res = getResources();
 
         // Name of the card
-        if(actionBar != null) actionBar.setTitle(getString(data, TableCard._NAME));
+        cardName = getString(data, TableCard._NAME);
+        if(actionBar != null) actionBar.setTitle(cardName);
 
         // The text on the card
         String txt = getString(data, TableCard._TEXT);
@@ -0,0 +1,339 @@
+package ca.marklauman.dominionpicker;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.LoaderManager.LoaderCallbacks;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
+import android.support.v7.app.ActionBar;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.Calendar;
+import java.util.Random;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import ca.marklauman.dominionpicker.database.InClause;
+import ca.marklauman.dominionpicker.database.LoaderId;
+import ca.marklauman.dominionpicker.database.Provider;
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCards;
+import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCardsDraft;
+import ca.marklauman.tools.recyclerview.ListDivider;
+
+/** Activity used to run a {@link DraftSession}. The players pass the device around,
+ *  and each one picks cards from their own hand. When the last player is done,
+ *  the picks are made into a supply and shown like any other shuffle.
+ *  @author Mark Lauman */
+public class ActivityDraft extends AppCompatActivity
+                           implements AdapterCards.Listener {
+    /** Key used to pass the number of players to this activity. */
+    public static final String PARAM_PLAYERS = "players";
+
+    /** Key used to save the draft to savedInstanceState. */
+    private static final String KEY_DRAFT = "draft";
+    /** Key used to save the player on display to savedInstanceState. */
+    private static final String KEY_PLAYER = "player";
+    /** The number of cards in a hand that are not picked. */
+    private static final int HAND_EXTRA = 3;
+
+    /** Shown while the hands are dealt and while the supply is made. */
+    @BindView(R.id.loading) View vLoading;
+    /** The hand on display and its controls. */
+    @BindView(R.id.draft_hand) View vHand;
+    /** Says whose hand is on display. */
+    @BindView(R.id.draft_player) TextView vPlayer;
+    /** Passes the device to the next player. */
+    @BindView(R.id.draft_next) Button vNext;
+    /** Adapter used to display the hand. */
+    private AdapterCardsDraft adapter;
+
+    /** The draft, or null if it has not been dealt yet. */
+    private DraftSession draft = null;
+    /** The player whose hand is on display. */
+    private int player = 0;
+    /** The number of players. */
+    private int players;
+    /** The number of cards each player picks. */
+    private int picksEach;
+
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Pref.checkLanguage(this);
+        setContentView(R.layout.activity_draft);
+        ButterKnife.bind(this);
+        ActionBar ab = getSupportActionBar();
+        if(ab != null) ab.setDisplayHomeAsUpEnabled(true);
+
+        // Each player picks an even share of the kingdom, and the rest is shuffled
+        players = Math.max(1, getIntent().getIntExtra(PARAM_PLAYERS, 2));
+        int kingdom = Pref.get(this).getInt(Pref.LIMIT_SUPPLY, 10);
+        picksEach = Math.max(1, kingdom / players);
+
+        RecyclerView cardList = findViewById(R.id.card_list);
+        cardList.setLayoutManager(new LinearLayoutManager(this));
+        cardList.addItemDecoration(new ListDivider(this));
+        adapter = new AdapterCardsDraft(cardList);
+        adapter.setListener(this);
+        cardList.setAdapter(adapter);
+        vNext.setOnClickListener(new NextListener());
+
+        if(savedInstanceState != null) {
+            draft = savedInstanceState.getParcelable(KEY_DRAFT);
+            player = savedInstanceState.getInt(KEY_PLAYER, 0);
+        }
+        if(draft != null) showHand();
+        else getSupportLoaderManager().initLoader(LoaderId.DRAFT_DEAL, null, new DealCallbacks());
+    }
+
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putParcelable(KEY_DRAFT, draft);
+        outState.putInt(KEY_PLAYER, player);
+    }
+
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        // anything but the back button returns normal
+        if(android.R.id.home != item.getItemId())
+            return super.onOptionsItemSelected(item);
+        // the back button closes the activity
+        finish();
+        return true;
+    }
+
+
+    /** Used by subclasses to get this activity */
+    private ActivityDraft getActivity() {
+        return this;
+    }
+
+
+    /** Show the hand of the current player. */
+    private void showHand() {
+        adapter.setHand(draft.hand(player));
+        updateHeader();
+        vNext.setText(player == draft.players - 1 ? R.string.draft_done : R.string.draft_next);
+        getSupportLoaderManager().restartLoader(LoaderId.DRAFT_HAND, null, new HandCallbacks());
+    }
+
+
+    /** Update the text saying whose hand this is. */
+    private void updateHeader() {
+        vPlayer.setText(String.format(getString(R.string.draft_hand), player + 1,
+                                      draft.hand(player).numPicked(), draft.picksEach));
+    }
+
+
+    /** Show or hide the loading panel. */
+    private void setLoading(boolean loading) {
+        vLoading.setVisibility(loading ? View.VISIBLE : View.GONE);
+        vHand.setVisibility(loading ? View.GONE : View.VISIBLE);
+    }
+
+
+    /** Picks or unpicks a card. Called when a card in the hand is clicked. */
+    @Override
+    public void onItemClick(AdapterCards.ViewHolder holder, int position, long id,
+                            boolean longClick) {
+        if(draft == null) return;
+        DraftSession.Hand hand = draft.hand(player);
+        int pos = hand.indexOf(id);
+        if(pos == -1) return;
+        if(!hand.setPicked(pos, !hand.isPicked(pos)))
+            Toast.makeText(this, R.string.draft_full, Toast.LENGTH_SHORT)
+                 .show();
+        else {
+            adapter.notifyItemChanged(position);
+            updateHeader();
+        }
+    }
+
+
+    /** Passes the device to the next player, or makes the supply after the last one.
+     *  Invoked when the "next" button is pressed. */
+    private class NextListener implements View.OnClickListener {
+        @Override
+        public void onClick(View v) {
+            if(draft == null) return;
+            int missing = draft.picksEach - draft.hand(player).numPicked();
+            if(0 < missing) {
+                Toast.makeText(getActivity(),
+                               String.format(getString(R.string.draft_pick_more), missing),
+                               Toast.LENGTH_SHORT)
+                     .show();
+                return;
+            }
+            if(player < draft.players - 1) {
+                player++;
+                showHand();
+            } else {
+                setLoading(true);
+                new AssembleTask(draft).execute();
+            }
+        }
+    }
+
+
+    /** Deals the draft. If there aren't enough cards, the activity closes. */
+    private class DealCallbacks implements LoaderCallbacks<DraftSession> {
+        @NonNull @Override
+        public Loader<DraftSession> onCreateLoader(int id, Bundle args) {
+            return new DealLoader(getActivity(), players, picksEach + HAND_EXTRA, picksEach);
+        }
+
+        @Override
+        public void onLoadFinished(@NonNull Loader<DraftSession> loader, DraftSession data) {
+            if(draft != null) return;
+            if(data == null) {
+                String msg = String.format(getString(R.string.draft_no_deal),
+                                           players, picksEach + HAND_EXTRA);
+                Toast.makeText(getActivity(), msg, Toast.LENGTH_LONG)
+                     .show();
+                finish();
+                return;
+            }
+            draft = data;
+            player = 0;
+            showHand();
+        }
+
+        @Override
+        public void onLoaderReset(@NonNull Loader<DraftSession> loader) {}
+    }
+
+
+    /** Loads the cards of the hand on display. */
+    private class HandCallbacks implements LoaderCallbacks<Cursor> {
+        @NonNull @Override
+        public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+            DraftSession.Hand hand = draft.hand(player);
+            long[] cards = new long[hand.size()];
+            for(int i=0; i<cards.length; i++)
+                cards[i] = hand.getCard(i);
+
+            CursorLoader c = new CursorLoader(getActivity());
+            c.setUri(Provider.URI_CARD_ALL);
+            c.setProjection(AdapterCards.COLS_USED);
+            c.setSortOrder(Pref.cardSort(getActivity()));
+            String[] cardArgs = InClause.args(cards);
+            c.setSelection(InClause.in(TableCard._ID, cardArgs)
+                           + " AND " + Pref.languageFilter(getActivity()));
+            c.setSelectionArgs(cardArgs);
+            return c;
+        }
+
+        @Override
+        public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
+            adapter.changeCursor(data);
+            setLoading(false);
+        }
+
+        @Override
+        public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+            adapter.changeCursor(null);
+        }
+    }
+
+
+    /** Makes the supply from the picks of a finished draft, saves it and shows it.
+     *  If the supply can't be completed, the reason is shown instead. */
+    private class AssembleTask extends AsyncTask<Void, Void, ShuffleSupply> {
+        /** The finished draft. */
+        private final DraftSession finished;
+
+        AssembleTask(DraftSession finished) {
+            this.finished = finished;
+        }
+
+        @Override
+        protected ShuffleSupply doInBackground(Void... ignored) {
+            return finished.assemble(Pref.getAppContext(), new Random());
+        }
+
+        @Override
+        protected void onPostExecute(ShuffleSupply result) {
+            if(result.isComplete()) {
+                long time = Calendar.getInstance().getTimeInMillis();
+                SupplyShuffler.saveSupply(result, null, time);
+                Intent showSupply = new Intent(getActivity(), ActivitySupply.class);
+                showSupply.putExtra(ActivitySupply.PARAM_HISTORY_ID, time);
+                showSupply.putExtra(ActivitySupply.PARAM_SUPPLY, new Supply(time, result));
+                startActivity(showSupply);
+                finish();
+                return;
+            }
+
+            setLoading(false);
+            String msg;
+            if(result.rulesUnmet) msg = getString(R.string.rules_unmet);
+            else if(result.rulesGaveUp) msg = getString(R.string.rules_gave_up);
+            else if(result.missingSidePile()) msg = getString(R.string.yw_no_bane);
+            else msg = String.format(getString(R.string.more_k),
+                                     result.minKingdom - result.getShortfall()
+                                     + "/" + result.minKingdom);
+            Toast.makeText(getActivity(), msg, Toast.LENGTH_LONG)
+                 .show();
+        }
+    }
+
+
+    /** Deals a draft with the current preferences. The draft is kept, so it is not dealt
+     *  again when the activity is recreated before it has saved the draft. */
+    private static class DealLoader extends AsyncTaskLoader<DraftSession> {
+        /** The number of players. */
+        private final int players;
+        /** The number of cards dealt to each player. */
+        private final int handSize;
+        /** The number of cards each player picks. */
+        private final int picksEach;
+        /** The draft, once it has been dealt. */
+        private DraftSession result = null;
+        /** True once the draft has been dealt (it may be null). */
+        private boolean dealt = false;
+
+        DealLoader(Context context, int players, int handSize, int picksEach) {
+            super(context);
+            this.players = players;
+            this.handSize = handSize;
+            this.picksEach = picksEach;
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if(dealt) deliverResult(result);
+            else forceLoad();
+        }
+
+        @Override
+        public DraftSession loadInBackground() {
+            return DraftSession.deal(getContext(), players, handSize, picksEach, new Random());
+        }
+
+        @Override
+        public void deliverResult(DraftSession data) {
+            result = data;
+            dealt = true;
+            super.deliverResult(data);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.LoaderManager;
@@ -20,14 +21,20 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import ca.marklauman.dominionpicker.database.CardRowCache;
+import ca.marklauman.dominionpicker.database.InClause;
 import ca.marklauman.dominionpicker.database.LoaderId;
 import ca.marklauman.dominionpicker.database.Provider;
 import ca.marklauman.dominionpicker.database.TableCard;
 import ca.marklauman.dominionpicker.database.TableSupply;
 import ca.marklauman.dominionpicker.database.TimestampFormatter;
 import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSession;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCards.ViewHolder;
 import ca.marklauman.tools.QueryDialogBuilder;
 import ca.marklauman.tools.QueryDialogBuilder.QueryListener;
@@ -46,6 +53,10 @@ public class ActivitySupply extends AppCompatActivity
     /** Key used to pass a history timestamp to this activity.
      *  The supply will load from the history table. */
     public static final String PARAM_HISTORY_ID = "historyId";
+    /** Key used to pass a new supply to this activity along with its
+     *  {@link #PARAM_HISTORY_ID}. The supply is displayed straight away,
+     *  without waiting for it to be written to the history table. */
+    public static final String PARAM_SUPPLY = "supply";
 
     /** The loader that gets the supply when an id is provided. */
     private final SupplyLoader supplyLoader = new SupplyLoader();
@@ -72,6 +83,8 @@ public class ActivitySupply extends AppCompatActivity
     private boolean sampleSupply = false;
 	/** The supply on display. */
 	private Supply supply;
+    /** Card replacements that have not reached the list yet. */
+    private final ArrayList<ReplaceTask> replacing = new ArrayList<>(1);
 
 	
 	
@@ -101,6 +114,9 @@ public class ActivitySupply extends AppCompatActivity
         long supplyId = params.getLong(PARAM_HISTORY_ID, -1);
         if(supplyId != -1) {
             vTime.setText(tFormat.formatShort(supplyId));
+            Supply shuffled = params.getParcelable(PARAM_SUPPLY);
+            if(shuffled != null && savedInstanceState == null)
+                setSupply(shuffled);
             Bundle args = new Bundle();
             args.putLong(PARAM_HISTORY_ID, supplyId);
             LoaderManager lm = getSupportLoaderManager();
@@ -207,14 +223,41 @@ public class ActivitySupply extends AppCompatActivity
 	private void setSupply(Supply supply) {
 		this.supply = supply;
         sampleSupply = supply.sample;
-		// Start loading the supply
-        getSupportLoaderManager()
-                .restartLoader(LoaderId.SUPPLY_CARDS, null, cardLoader);
+        // Show the cards straight from memory if they are there. If not, load them.
+        Cursor cards = CardRowCache.peek(this, supply.cards);
+        LoaderManager lm = getSupportLoaderManager();
+        if(cards != null) {
+            lm.destroyLoader(LoaderId.SUPPLY_CARDS);
+            showCards(cards);
+        } else lm.restartLoader(LoaderId.SUPPLY_CARDS, null, cardLoader);
         // Now that we have a supply, redo the action bar
 		supportInvalidateOptionsMenu();
 	}
 
 
+    /** Display the cards of the supply, along with its resource cards.
+     *  @param data The rows of the cards in the supply. */
+    private void showCards(Cursor data) {
+        // display the supply cards
+        adapter.setBane(supply.bane);
+        adapter.changeCursor(data);
+        vLoading.setVisibility(View.GONE);
+        vList.setVisibility(View.VISIBLE);
+
+        // display the resource cards
+        String output = "";
+        if(supply.high_cost)
+            output += getString(R.string.supply_colonies);
+        if(supply.shelters)
+            output += "\n" + getString(R.string.supply_shelters);
+        output = output.trim();
+        if(! "".equals(output)) {
+            vResources.setText(output);
+            vResources.setVisibility(View.VISIBLE);
+        }
+    }
+
+
     /** Used by subclasses to access the activity context */
     private ActivitySupply getActivity() {
         return this;
@@ -239,7 +282,10 @@ public class ActivitySupply extends AppCompatActivity
 
     @Override
     public void onDismiss(int position, long id) {
-        // TODO: Draw new card
+        if(supply == null) return;
+        ReplaceTask task = new ReplaceTask(supply, position, id);
+        replacing.add(task);
+        task.execute();
     }
 
 
@@ -260,9 +306,11 @@ public class ActivitySupply extends AppCompatActivity
             c.setSortOrder(Pref.cardSort(ActivitySupply.this));
 
             // Selection string (sql WHERE clause)
-            // _id IN (1,2,3,4)
-            String cards = TableCard._ID+" IN ("+ Utils.join(",",supply.cards)+")";
-            c.setSelection("("+cards+") AND "+ Pref.languageFilter(ActivitySupply.this));
+            // _id IN (?,?,?,?)
+            String[] cards = InClause.args(supply.cards);
+            c.setSelection("("+InClause.in(TableCard._ID, cards)+") AND "
+                           + Pref.languageFilter(ActivitySupply.this));
+            c.setSelectionArgs(cards);
 
             return c;
         }
@@ -270,23 +318,7 @@ public class ActivitySupply extends AppCompatActivity
 
         @Override
         public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-            // display the supply cards
-            adapter.setBane(supply.bane);
-            adapter.changeCursor(data);
-            vLoading.setVisibility(View.GONE);
-            vList.setVisibility(View.VISIBLE);
-
-            // display the resource cards
-            String output = "";
-            if(supply.high_cost)
-                output += getString(R.string.supply_colonies);
-            if(supply.shelters)
-                output += "\n" + getString(R.string.supply_shelters);
-            output = output.trim();
-            if(! "".equals(output)) {
-                vResources.setText(output);
-                vResources.setVisibility(View.VISIBLE);
-            }
+            showCards(data);
         }
 
 
@@ -302,11 +334,9 @@ public class ActivitySupply extends AppCompatActivity
     private class SupplyLoader implements LoaderCallbacks<Cursor> {
         @Override @NonNull
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-            // Display the loading icon, hide the resources
-            vResources.setVisibility(View.GONE);
-            adapter.changeCursor(null);
-
-            // Basic loader
+            /* The list is not cleared here. A new supply may already be on display,
+             * and if the row has not changed (or is not written yet) it stays there.
+             * The card loader clears the list if the cards need to be loaded. */
             CursorLoader c = new CursorLoader(getActivity());
             c.setProjection(new String[]{TableSupply._ID, TableSupply._NAME, TableSupply._BANE,
                                          TableSupply._HIGH_COST, TableSupply._SHELTERS, TableSupply._CARDS});
@@ -344,6 +374,14 @@ public class ActivitySupply extends AppCompatActivity
             if(bar != null && s.name != null)
                 bar.setTitle(s.name);
 
+            // The cards have not changed (the row was updated from this activity)
+            if(supply != null && supply.time == s.time && supply.bane == s.bane
+               && Arrays.equals(supply.cards, s.cards))
+                return;
+            // The row was written by a replacement that will update the list itself
+            for(ReplaceTask task : replacing)
+                if(task.wrote(s)) return;
+
             // Finish up
             setSupply(s);
         }
@@ -352,6 +390,83 @@ public class ActivitySupply extends AppCompatActivity
         public void onLoaderReset(@NonNull Loader<Cursor> loader) {}
     }
 
+    /** Replaces a dismissed card. A new card is drawn from the supply's
+     *  {@link ShuffleSession} and saved to the history table. Then the new card is loaded
+     *  and only its position in the list is updated. */
+    private class ReplaceTask extends AsyncTask<Void, Void, Cursor> {
+        /** The supply the card was dismissed from. */
+        private final Supply target;
+        /** The position of the dismissed card in the list. */
+        private final int position;
+        /** The id of the dismissed card. */
+        private final long dismissed;
+        /** The cards in the supply after the replacement. */
+        private volatile long[] cards;
+        /** The bane card after the replacement. */
+        private volatile long bane;
+
+        ReplaceTask(Supply target, int position, long dismissed) {
+            this.target = target;
+            this.position = position;
+            this.dismissed = dismissed;
+        }
+
+        /** Check if a row loaded from the history table is the one written by this task.
+         *  The row is written before the list is updated, so the supply loader may see it
+         *  first. */
+        boolean wrote(Supply row) {
+            long[] res = cards;
+            return res != null && row.time == target.time && row.bane == bane
+                   && Arrays.equals(res, row.cards);
+        }
+
+        @Override
+        protected Cursor doInBackground(Void... ignored) {
+            // A new supply may not have been written to the history table yet
+            if(!target.sample) SupplyShuffler.flush();
+            ShuffleSession session = SupplyShuffler.getSession(getActivity(), target);
+            long card = session.replace(dismissed);
+            // Set the bane first, so the loader never sees new cards with the old bane
+            bane = session.getBane();
+            cards = session.getCards();
+
+            // Update the supply in the history table
+            if(!target.sample) {
+                ContentValues values = new ContentValues();
+                values.put(TableSupply._CARDS, Utils.join(",", cards));
+                values.put(TableSupply._BANE, bane);
+                getContentResolver().update(Provider.URI_HIST, values,
+                                            TableSupply._ID+"=?",
+                                            new String[]{""+target.time});
+            }
+
+            // Load the new card (from memory if it is there)
+            if(card == ShuffleSession.NO_CARD) return null;
+            Cursor row = CardRowCache.peek(getActivity(), new long[]{card});
+            if(row != null) return row;
+            return getContentResolver()
+                    .query(Provider.URI_CARD_ALL, AdapterCardsDismiss.COLS_USED,
+                           TableCard._ID+"=? AND "+Pref.languageFilter(getActivity()),
+                           new String[]{""+card}, null);
+        }
+
+        @Override
+        protected void onPostExecute(Cursor card) {
+            replacing.remove(this);
+            if(supply == target) {
+                supply.cards = cards;
+                adapter.replaceCard(position, card);
+                if(supply.bane != bane) {
+                    supply.bane = bane;
+                    adapter.setBane(bane);
+                }
+                supportInvalidateOptionsMenu();
+            }
+            if(card != null) card.close();
+        }
+    }
+
+
     /** Used to ask for the name of the new favorite. */
     private class FavDialog extends QueryDialogBuilder
                             implements QueryListener {
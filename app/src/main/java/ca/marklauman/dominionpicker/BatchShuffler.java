@@ -0,0 +1,71 @@
+package ca.marklauman.dominionpicker;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import java.util.ArrayList;
+
+import ca.marklauman.dominionpicker.database.CatalogLoader;
+import ca.marklauman.dominionpicker.database.Provider;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+/** Shuffles many supplies at once (for tournaments and other events).
+ *  The shuffles are spread across all available cores. Every supply has its own
+ *  seed derived from a master seed, so a batch can be reproduced exactly
+ *  no matter how the work is split between threads
+ *  (see {@link ShuffleEngine#shuffleBatch}).
+ *
+ *  <p>The methods in this class block, and should not be called on the UI thread.</p>
+ *  @author Mark Lauman */
+public abstract class BatchShuffler {
+
+    /** Shuffle a batch of supplies using the current preferences.
+     *  @param context A context within this app.
+     *  @param count The number of supplies to shuffle.
+     *  @param masterSeed The seed of the batch. The same seed and preferences
+     *                    will always produce the same batch.
+     *  @return The supplies, in order. If a supply could not be completed,
+     *  {@link ShuffleSupply#isComplete()} is false.
+     *  @throws InterruptedException If the thread is interrupted while waiting. */
+    public static ShuffleSupply[] shuffle(Context context, int count, long masterSeed)
+            throws InterruptedException {
+        Context appContext = context.getApplicationContext();
+        CardCatalog catalog = CatalogLoader.get(appContext);
+        ShuffleRequest request = SupplyShuffler.newRequest(Pref.get(appContext));
+        CardPool pool = SupplyShuffler.loadPool(catalog, request);
+        return ShuffleEngine.shuffleBatch(catalog, request, pool, count, masterSeed,
+                                          Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /** Save a batch of supplies to the history table in a single transaction.
+     *  Incomplete supplies are skipped. The batch never overwrites a supply already in
+     *  the history: a supply whose timestamp is taken is moved to the latest free
+     *  timestamp before it.
+     *  @param context A context within this app.
+     *  @param supplies The supplies to save.
+     *  @param endTime The timestamp given to the last supply. Each supply before it is
+     *                 given a timestamp 1ms before the one after it. Timestamps after
+     *                 the current time are lowered to it, so that supplies shuffled
+     *                 later can't take the same timestamps.
+     *  @return The number of supplies that were saved. */
+    public static int save(Context context, ShuffleSupply[] supplies, long endTime) {
+        endTime = Math.min(endTime, System.currentTimeMillis());
+        // Newest first, so moving a supply back never passes the one before it
+        ArrayList<ContentValues> rows = new ArrayList<>(supplies.length);
+        for(int i=supplies.length-1; 0<=i; i--) {
+            if(supplies[i] == null || !supplies[i].isComplete()) continue;
+            rows.add(SupplyShuffler.historyRow(supplies[i],
+                                               endTime - (supplies.length - 1 - i)));
+        }
+        if(rows.size() == 0) return 0;
+        return context.getContentResolver()
+                      .bulkInsert(Provider.URI_HIST_KEEP,
+                                  rows.toArray(new ContentValues[rows.size()]));
+    }
+}
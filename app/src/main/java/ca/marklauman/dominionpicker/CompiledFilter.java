@@ -0,0 +1,152 @@
+package ca.marklauman.dominionpicker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.BitSet;
+
+import ca.marklauman.dominionpicker.database.CatalogLoader;
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+
+/** The card filters of the picker, compiled into bitsets over the {@link CardCatalog}.
+ *  The filters are compiled once for each set of filter preferences, and shared by
+ *  every black market restock. Checking a card is then a bitset lookup,
+ *  and a set of cards is found with a few bitset operations.
+ *  (The shuffler compiles its own filter, see {@link SupplyShuffler#loadPool}.)
+ *  The SQL version of the filter is cached the same way, for the picker's loader
+ *  (see {@link #sql(SharedPreferences)}).
+ *
+ *  <p>The caches are keyed on the values of the filter preferences themselves
+ *  ({@link #keyOf(SharedPreferences)}). A counter bumped by a preference listener could
+ *  be read by another listener before it was bumped, and hand out the old filter.</p>
+ *  @author Mark Lauman */
+class CompiledFilter {
+
+    /** The last filter compiled. */
+    private static CompiledFilter cache = null;
+    /** The last SQL selection built. */
+    private static Selection cacheSql = null;
+    /** The filter preferences {@link #cacheSql} was built from. */
+    private static String sqlKey = null;
+
+    /** The filter preferences this was compiled from. */
+    private final String key;
+    /** The catalog that the bitsets index. */
+    final CardCatalog catalog;
+    /** The cards that pass the filters (the cards visible in the picker). */
+    private final BitSet visible;
+    /** The cards deselected in the picker. */
+    private final BitSet deselected;
+    /** The cards required by the picker. */
+    private final BitSet required;
+
+
+    /** Compile the filters from the preferences. */
+    private CompiledFilter(String key, CardCatalog catalog, SharedPreferences pref) {
+        this.key = key;
+        this.catalog = catalog;
+        visible = FragmentPicker.getCardFilter(pref).compile(catalog);
+        deselected = toBits(catalog, SupplyShuffler.parseIds(pref.getString(Pref.FILT_CARD, "")));
+        required = toBits(catalog, SupplyShuffler.parseIds(pref.getString(Pref.REQ_CARDS, "")));
+    }
+
+
+    /** Get the filters for the current preferences. They are only compiled if the
+     *  preferences have changed since the last call. The first call loads the catalog,
+     *  so it should be made off of the UI thread.
+     *  @param context A context within this app. */
+    static synchronized CompiledFilter get(Context context) {
+        SharedPreferences pref = Pref.get(context);
+        String key = keyOf(pref);
+        if(cache != null && cache.key.equals(key)) return cache;
+        cache = new CompiledFilter(key, CatalogLoader.get(context), pref);
+        return cache;
+    }
+
+
+    /** Get the SQL selection used by the picker for the current preferences, with its
+     *  arguments. It is only rebuilt if the preferences have changed since the last call,
+     *  so the same string is handed to the database each time (and its compiled
+     *  statement can be reused). Unlike {@link #get(Context)}, this never loads the catalog.
+     *  @param pref The preferences of this app. */
+    static synchronized Selection sql(SharedPreferences pref) {
+        String key = keyOf(pref);
+        if(cacheSql == null || !key.equals(sqlKey)) {
+            cacheSql = new Selection(FragmentPicker.getFilter(pref),
+                                     FragmentPicker.getFilterArgs(pref));
+            sqlKey = key;
+        }
+        return cacheSql;
+    }
+
+
+    /** Join the values of every preference used by the filters into one string.
+     *  Two calls give the same string only if the filters are the same.
+     *  @param pref The preferences of this app. */
+    private static String keyOf(SharedPreferences pref) {
+        return pref.getString(Pref.FILT_SET, "")
+               + "|" + pref.getString(Pref.FILT_COST, "")
+               + "|" + pref.getString(Pref.FILT_DEBT, "")
+               + "|" + pref.getBoolean(Pref.FILT_POTION, true)
+               + "|" + pref.getBoolean(Pref.FILT_CURSE, true)
+               + "|" + pref.getString(Pref.FILT_EDITION, "")
+               + "|" + pref.getString(Pref.EXPANSION_EDITIONS, "")
+               + "|" + pref.getString(Pref.FILT_CARD, "")
+               + "|" + pref.getString(Pref.REQ_CARDS, "");
+    }
+
+
+    /** An SQL selection and its arguments, built from the same preferences. */
+    static class Selection {
+        /** The selection. */
+        final String sql;
+        /** The arguments of {@link #sql}. */
+        private final String[] args;
+
+        private Selection(String sql, String[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        /** Get a copy of the arguments of {@link #sql}. */
+        String[] args() {
+            return args.clone();
+        }
+    }
+
+
+    /** Turn a set of card ids into a bitset of catalog indexes. Unknown ids are skipped. */
+    private static BitSet toBits(CardCatalog catalog, Iterable<Long> ids) {
+        BitSet res = new BitSet(catalog.size());
+        for(long id : ids) {
+            int card = catalog.indexOf(id);
+            if(card != -1) res.set(card);
+        }
+        return res;
+    }
+
+
+    /** Get the cards that may be stocked in the black market.
+     *  @param supply The ids of the cards in the supply, or null if there is no supply.
+     *                The supply is left out of the market. With no supply, the required
+     *                cards are left out instead (they will be in any supply).
+     *                The Black Market itself is never in its own stock.
+     *  @return A new bitset, which may be changed. */
+    BitSet market(long[] supply) {
+        BitSet res = (BitSet) visible.clone();
+        res.and(catalog.kingdomCards());
+        res.andNot(deselected);
+        int blackMarket = catalog.indexOf(TableCard.ID_BLACK_MARKET);
+        if(blackMarket != -1) res.clear(blackMarket);
+        if(supply == null || supply.length == 0) res.andNot(required);
+        else {
+            for(long id : supply) {
+                int card = catalog.indexOf(id);
+                if(card != -1) res.clear(card);
+            }
+        }
+        return res;
+    }
+}
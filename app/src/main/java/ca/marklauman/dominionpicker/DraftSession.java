@@ -0,0 +1,266 @@
+package ca.marklauman.dominionpicker;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.database.CatalogLoader;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+/** A draft: each player is dealt a hand of kingdom cards, picks some of them,
+ *  and the picks are then made into a supply.
+ *
+ *  <p>The hands are dealt from the same pool as an ordinary shuffle, in one deal
+ *  ({@link CardPool#deal}), so no card is in two hands. Every hand is stored in one
+ *  shared array, one player after the other, and each {@link Hand} is a view of its
+ *  part of that array.</p>
+ *
+ *  <p>The session is Parcelable, so it can be kept across configuration changes
+ *  without dealing again.</p>
+ *  @author Mark Lauman */
+public class DraftSession implements Parcelable {
+
+    /** The number of players. */
+    public final int players;
+    /** The number of cards dealt to each player. */
+    public final int handSize;
+    /** The number of cards each player may pick. */
+    public final int picksEach;
+
+    /** The settings the hands were dealt with. The supply is made with these too. */
+    private final ShuffleRequest request;
+    /** The ids of the cards in every hand, one player after the other. */
+    private final long[] cards;
+    /** True for each card in {@link #cards} that has been picked. */
+    private final boolean[] picked;
+
+
+    /** Constructor used by {@link #deal}. */
+    private DraftSession(ShuffleRequest request, int players, int handSize, int picksEach,
+                         long[] cards) {
+        this.request = request;
+        this.players = players;
+        this.handSize = handSize;
+        this.picksEach = picksEach;
+        this.cards = cards;
+        picked = new boolean[cards.length];
+    }
+
+
+    /** Deal a draft with the current preferences. The catalog may be loaded,
+     *  so this should not be called on the UI thread.
+     *  @param context A context within this app.
+     *  @param players The number of players.
+     *  @param handSize The number of cards dealt to each player.
+     *  @param picksEach The number of cards each player may pick.
+     *  @param random The source of randomness for the deal.
+     *  @return The draft, or null if there are not enough kingdom cards to deal. */
+    public static DraftSession deal(Context context, int players, int handSize,
+                                    int picksEach, Random random) {
+        ShuffleRequest request = SupplyShuffler.newRequest(Pref.get(context));
+        CardCatalog catalog = CatalogLoader.get(context);
+        return deal(catalog, SupplyShuffler.loadPool(catalog, request), request,
+                    players, handSize, picksEach, random);
+    }
+
+
+    /** Deal a draft from a pool.
+     *  @param catalog The catalog the cards come from.
+     *  @param pool The pool of the request. The pool is not changed.
+     *  @param request The settings the pool was made with.
+     *  @param players The number of players.
+     *  @param handSize The number of cards dealt to each player.
+     *  @param picksEach The number of cards each player may pick.
+     *  @param random The source of randomness for the deal.
+     *  @return The draft, or null if there are not enough kingdom cards to deal. */
+    public static DraftSession deal(CardCatalog catalog, CardPool pool, ShuffleRequest request,
+                                    int players, int handSize, int picksEach, Random random) {
+        int[] dealt = pool.deal(players * handSize, random);
+        if(dealt.length < players * handSize) return null;
+
+        long[] cards = new long[dealt.length];
+        for(int i=0; i<dealt.length; i++)
+            cards[i] = catalog.getId(dealt[i]);
+        return new DraftSession(request, players, handSize,
+                                Math.min(picksEach, handSize), cards);
+    }
+
+
+    /** Get the hand of a player.
+     *  @param player The player, from 0 to {@link #players}-1. */
+    public Hand hand(int player) {
+        return new Hand(player);
+    }
+
+
+    /** Get the ids of every card picked so far, one player after the other. */
+    public long[] getPicks() {
+        long[] res = new long[cards.length];
+        int size = 0;
+        for(int i=0; i<cards.length; i++)
+            if(picked[i]) res[size++] = cards[i];
+        return Arrays.copyOf(res, size);
+    }
+
+
+    /** Check if every player has made all of their picks. */
+    public boolean isFinished() {
+        for(int player=0; player<players; player++)
+            if(hand(player).numPicked() < picksEach) return false;
+        return true;
+    }
+
+
+    /** Make the supply from the picks. The picks are added like required cards, and the
+     *  rest of the supply (if there is room) is shuffled from the pool as usual.
+     *  The catalog may be loaded, so this should not be called on the UI thread.
+     *  @param context A context within this app.
+     *  @param random The source of randomness for the rest of the supply.
+     *  @return The supply. If it could not be completed,
+     *  {@link ShuffleSupply#isComplete()} is false. */
+    public ShuffleSupply assemble(Context context, Random random) {
+        CardCatalog catalog = CatalogLoader.get(context);
+        return assemble(catalog, SupplyShuffler.loadPool(catalog, request), random);
+    }
+
+
+    /** Make the supply from the picks, with the rest of the supply shuffled from a pool.
+     *  @param catalog The catalog the cards come from.
+     *  @param pool The pool of this draft's request. It is filled like any other shuffle.
+     *  @param random The source of randomness for the rest of the supply.
+     *  @return The supply. If it could not be completed,
+     *  {@link ShuffleSupply#isComplete()} is false. */
+    public ShuffleSupply assemble(CardCatalog catalog, CardPool pool, Random random) {
+        long[] picks = getPicks();
+        int[] chosen = new int[picks.length];
+        int size = 0;
+        for(long id : picks) {
+            int card = catalog.indexOf(id);
+            if(card != -1) chosen[size++] = card;
+        }
+
+        ShuffleSupply supply = ShuffleEngine.newSupply(catalog, request, random);
+        pool.fill(supply, Arrays.copyOf(chosen, size), random);
+        return supply;
+    }
+
+
+    /** The cards dealt to one player. This is a view of the session,
+     *  so picks made here are picks of the session. */
+    public class Hand {
+        /** The position of this hand's first card in {@link #cards}. */
+        private final int start;
+
+        /** Constructor used by {@link #hand(int)}. */
+        private Hand(int player) {
+            if(player < 0 || players <= player)
+                throw new IndexOutOfBoundsException("No player " + player);
+            start = player * handSize;
+        }
+
+        /** The number of cards in this hand. */
+        public int size() {
+            return handSize;
+        }
+
+        /** Get the id of a card in this hand.
+         *  @param pos The position of the card in the hand. */
+        public long getCard(int pos) {
+            return cards[start + checked(pos)];
+        }
+
+        /** Find a card in this hand.
+         *  @param id The id of the card.
+         *  @return The position of the card in the hand, or -1 if it is not in the hand. */
+        public int indexOf(long id) {
+            for(int pos=0; pos<handSize; pos++)
+                if(cards[start + pos] == id) return pos;
+            return -1;
+        }
+
+        /** Check if a card in this hand has been picked.
+         *  @param pos The position of the card in the hand. */
+        public boolean isPicked(int pos) {
+            return picked[start + checked(pos)];
+        }
+
+        /** Get the number of cards picked from this hand. */
+        public int numPicked() {
+            int res = 0;
+            for(int i=start; i<start+handSize; i++)
+                if(picked[i]) res++;
+            return res;
+        }
+
+        /** Pick or unpick a card in this hand.
+         *  @param pos The position of the card in the hand.
+         *  @param pick True to pick the card, false to unpick it.
+         *  @return False if the card could not be picked,
+         *  because this player has already made all of their picks. */
+        public boolean setPicked(int pos, boolean pick) {
+            checked(pos);
+            if(pick && !picked[start + pos] && picksEach <= numPicked())
+                return false;
+            picked[start + pos] = pick;
+            return true;
+        }
+
+        /** Check that a position is within this hand. */
+        private int checked(int pos) {
+            if(pos < 0 || handSize <= pos)
+                throw new IndexOutOfBoundsException("No card " + pos + " in hand");
+            return pos;
+        }
+    }
+
+
+    /** Constructor for unpacking a parcel into a {@code DraftSession} */
+    private DraftSession(Parcel in) {
+        players = in.readInt();
+        handSize = in.readInt();
+        picksEach = in.readInt();
+        cards = in.createLongArray();
+        picked = in.createBooleanArray();
+        request = (ShuffleRequest) in.readSerializable();
+    }
+
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+
+    /** Flatten this session in to a Parcel.
+     *  @param out The Parcel in which the session should be written.
+     *  @param flags Parameter is ignored */
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(players);
+        out.writeInt(handSize);
+        out.writeInt(picksEach);
+        out.writeLongArray(cards);
+        out.writeBooleanArray(picked);
+        out.writeSerializable(request);
+    }
+
+
+    public static final Parcelable.Creator<DraftSession> CREATOR
+            = new Parcelable.Creator<DraftSession>() {
+        public DraftSession createFromParcel(Parcel in) {
+            return new DraftSession(in);
+        }
+
+        public DraftSession[] newArray(int size) {
+            return new DraftSession[size];
+        }
+    };
+}
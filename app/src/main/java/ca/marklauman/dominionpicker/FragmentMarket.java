@@ -1,12 +1,15 @@
 package ca.marklauman.dominionpicker;
 
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
+import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.widget.LinearLayoutManager;
@@ -18,14 +21,16 @@ import android.view.ViewGroup;
 import android.widget.Toast;
 
 import java.util.LinkedList;
+import java.util.Random;
 
+import ca.marklauman.dominionpicker.database.InClause;
 import ca.marklauman.dominionpicker.database.LoaderId;
 import ca.marklauman.dominionpicker.database.Provider;
 import ca.marklauman.dominionpicker.database.TableCard;
 import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.RandomOrder;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCards;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCards.ViewHolder;
-import ca.marklauman.tools.Utils;
 import ca.marklauman.tools.recyclerview.ListDivider;
 
 /** Governs all the Black Market shuffler screens.
@@ -168,9 +173,9 @@ public class FragmentMarket extends Fragment
         FragmentActivity activity = getActivity();
         if(activity == null) return;
         switch(key) {
-            case Pref.FILT_SET: case Pref.FILT_COST: case Pref.FILT_POTION:
-            case Pref.FILT_CURSE: case Pref.REQ_CARDS: case Pref.FILT_CARD:
-            case Pref.FILT_EDITION:
+            case Pref.FILT_SET: case Pref.FILT_COST: case Pref.FILT_DEBT:
+            case Pref.FILT_POTION: case Pref.FILT_CURSE: case Pref.REQ_CARDS:
+            case Pref.FILT_CARD: case Pref.FILT_EDITION:
                 setActivePanel(PANEL_STARTUP);
                 activity.getSupportLoaderManager()
                         .restartLoader(LoaderId.MARKET_SHUFFLE, null, this);
@@ -228,80 +233,28 @@ public class FragmentMarket extends Fragment
     @NonNull @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle loadArgs) {
         assert getActivity() != null;
-        CursorLoader c = new CursorLoader(getActivity());
         switch (id) {
             case LoaderId.MARKET_SHUFFLE:
                 // Announce the new market
                 hasNewStock = true;
-
-                // Filter out cards not visible in the picker, and special cards
-                SharedPreferences pref = Pref.get(getContext());
-                String sel = FragmentPicker.getFilter(pref)
-                             +" AND "+TableCard._TYPE_EVENT+"=0"
-                             +" AND "+TableCard._TYPE_LANDMARK+"=0";
-
-                // Filter out cards excluded by the card list & the black market card
-                String filt_card = pref.getString(Pref.FILT_CARD, "");
-                filt_card = (filt_card.length() == 0) ? TableCard.ID_BLACK_MARKET+""
-                                                      : TableCard.ID_BLACK_MARKET+","+filt_card;
-
-                // Get the supply passed to this fragment and exclude it
                 Bundle args = getArguments();
-                long[] supply_arr = (args == null) ? null : args.getLongArray(PARAM_SUPPLY);
-                if(supply_arr == null) supply_arr = new long[0];
-                if(0 < supply_arr.length) filt_card += ","+Utils.join(",", supply_arr);
-
-                // If no supply cards are provided, filter out required cards.
-                // They are required to be in the supply
-                else {
-                    String req_cards = pref.getString(Pref.REQ_CARDS, "");
-                    if(0 < req_cards.length()) filt_card += ","+req_cards;
-                }
-
-                // Add the card filter to the selection
-                sel += " AND "+TableCard._ID+" NOT IN ("+filt_card+")";
-
-                // Exclude cards from disabled editions
-                String edition_filter = pref.getString(Pref.FILT_EDITION, "");
-                if (0 < edition_filter.length())
-                    sel += " AND " + edition_filter;
-
-                // Build the cursor loader
-                c.setUri(Provider.URI_CARD_DATA);
-                c.setProjection(new String[]{TableCard._ID});
-                c.setSelection(sel);
-                c.setSortOrder("random()");
-                return c;
+                return new StockLoader(getActivity(),
+                                       args == null ? null : args.getLongArray(PARAM_SUPPLY));
 
             case LoaderId.MARKET_SHOW:
+                CursorLoader c = new CursorLoader(getActivity());
                 c.setUri(Provider.URI_CARD_ALL);
                 c.setProjection(AdapterCards.COLS_USED);
                 c.setSortOrder(Pref.cardSort(getContext()));
 
-                // no choices, no cards
-                if(choices == null || choices.length == 0) {
-                    c.setSelection(TableCard._ID + "=?");
-                    c.setSelectionArgs(new String[]{"-1"});
-                    return c;
-                }
-
-                // Generate selection string
-                StringBuilder cardSel = new StringBuilder(TableCard._ID+" IN (");
-                for(long ignored : choices)
-                    cardSel.append("?,");
-                cardSel.deleteCharAt(cardSel.length()-1)
-                       .append(") AND ")
-                       .append(Pref.languageFilter(getContext()));
-                c.setSelection(cardSel.toString());
-
-                // selection args
-                String[] strChoices = new String[choices.length];
-                for(int i=0; i<choices.length; i++)
-                    strChoices[i] = Long.toString(choices[i]);
-                c.setSelectionArgs(strChoices);
+                // Selection string (no choices, no cards)
+                String[] cardArgs = InClause.args(choices == null ? new long[0] : choices);
+                c.setSelection(InClause.in(TableCard._ID, cardArgs)
+                               + " AND " + Pref.languageFilter(getContext()));
+                c.setSelectionArgs(cardArgs);
                 return c;
         }
-        return c;
+        throw new UnsupportedOperationException("Unknown loader id " + id);
     }
 
 
@@ -383,4 +336,63 @@ public class FragmentMarket extends Fragment
             setActivePanel(PANEL_DRAW);
         }
     }
-}
\ No newline at end of file
+
+
+    /** Loads the stock of the market in a random order. The stock is found with the
+     *  {@link CompiledFilter}, so the database is only read if the catalog has not
+     *  been loaded yet. The result is a cursor with one column ({@link TableCard#_ID}).
+     *  The stock is kept, so it is not shuffled again each time the activity is started. */
+    private static class StockLoader extends AsyncTaskLoader<Cursor> {
+        /** The cards in the supply, or null if there isn't one. */
+        private final long[] supply;
+        /** The stock, once it has been loaded. */
+        private Cursor result = null;
+
+        StockLoader(Context context, long[] supply) {
+            super(context);
+            this.supply = supply;
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if(result != null) deliverResult(result);
+            if(result == null || takeContentChanged()) forceLoad();
+        }
+
+        @Override
+        protected void onStopLoading() {
+            cancelLoad();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+            onStopLoading();
+            if(result != null) result.close();
+            result = null;
+        }
+
+        @Override
+        public void deliverResult(Cursor data) {
+            if(isReset()) {
+                if(data != null) data.close();
+                return;
+            }
+            Cursor old = result;
+            result = data;
+            if(isStarted()) super.deliverResult(data);
+            if(old != null && old != data) old.close();
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            CompiledFilter filter = CompiledFilter.get(getContext());
+            int[] stock = RandomOrder.of(filter.market(supply), new Random());
+
+            MatrixCursor res = new MatrixCursor(new String[]{TableCard._ID}, stock.length);
+            for(int card : stock)
+                res.addRow(new Object[]{filter.catalog.getId(card)});
+            return res;
+        }
+    }
+}
@@ -19,9 +19,11 @@ import android.view.ViewGroup;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import ca.marklauman.dominionpicker.database.InClause;
 import ca.marklauman.dominionpicker.database.LoaderId;
 import ca.marklauman.dominionpicker.database.Provider;
 import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.shuffler.CardFilter;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCardsFilter;
 import ca.marklauman.dominionpicker.settings.Pref;
 import ca.marklauman.tools.recyclerview.ListDivider;
@@ -156,9 +158,10 @@ public class FragmentPicker extends Fragment
         CursorLoader c = new CursorLoader(getActivity());
         c.setUri(Provider.URI_CARD_ALL);
         c.setProjection(AdapterCardsFilter.COLS_USED);
-        String sel = getFilter(Pref.get(getContext()));
-        sel += " AND "+ Pref.languageFilter(getContext());
-        c.setSelection(sel);
+        SharedPreferences pref = Pref.get(getContext());
+        CompiledFilter.Selection filter = CompiledFilter.sql(pref);
+        c.setSelection(filter.sql + " AND "+ Pref.languageFilter(getContext()));
+        c.setSelectionArgs(filter.args());
         c.setSortOrder(Pref.cardSort(getContext()));
 
         return c;
@@ -167,28 +170,28 @@ public class FragmentPicker extends Fragment
 
     /** Get the filter used by the picker to hide cards that will never be in the supply.
      *  This does not include individual deselected or required cards.
+     *  The sets, costs and debts are bound as arguments ({@link #getFilterArgs}).
      *  @param pref The preferences used to retrieve filter values.
      *  @return The SQL selection statement that FragmentPicker uses to hide cards.
      *  This statement is never null or the empty string. There will be something in here. */
     public static String getFilter(SharedPreferences pref) {
         // Filter out sets (the set filter is always present)
-        String curSel = pref.getString(Pref.FILT_SET, "");
-        String sel = (curSel.length()==0) ? TableCard._SET_ID+"=NULL"
-                                          : TableCard._SET_ID+" IN ("+curSel+")";
+        String sel = InClause.in(TableCard._SET_ID,
+                                 InClause.args(pref.getString(Pref.FILT_SET, "")));
 
         // Filter out potions
         if(!pref.getBoolean(Pref.FILT_POTION, true))
             sel += " AND "+TableCard._POT+"=0";
 
         // Filter out coins
-        curSel = pref.getString(Pref.FILT_COST, "");
+        String curSel = pref.getString(Pref.FILT_COST, "");
         if(0 < curSel.length())
-            sel += " AND "+TableCard._COST_VAL+" NOT IN ("+curSel+")";
+            sel += " AND "+InClause.notIn(TableCard._COST_VAL, InClause.args(curSel));
 
         // Filter out debt
         curSel = pref.getString(Pref.FILT_DEBT, "");
         if(0 < curSel.length())
-            sel += " AND "+TableCard._DEBT+" NOT IN ("+curSel+")";
+            sel += " AND "+InClause.notIn(TableCard._DEBT, InClause.args(curSel));
 
         // Filter out cursers
         boolean filt_curse = pref.getBoolean(Pref.FILT_CURSE, true);
@@ -204,6 +207,33 @@ public class FragmentPicker extends Fragment
     }
 
 
+    /** Get the arguments of {@link #getFilter(SharedPreferences)}, in order.
+     *  @param pref The preferences used to retrieve filter values. */
+    public static String[] getFilterArgs(SharedPreferences pref) {
+        String[] args = InClause.args(pref.getString(Pref.FILT_SET, ""));
+        String curSel = pref.getString(Pref.FILT_COST, "");
+        if(0 < curSel.length())
+            args = InClause.concat(args, InClause.args(curSel));
+        curSel = pref.getString(Pref.FILT_DEBT, "");
+        if(0 < curSel.length())
+            args = InClause.concat(args, InClause.args(curSel));
+        return args;
+    }
+
+
+    /** Get the filter used by the picker as a {@link CardFilter}, which can be checked
+     *  without querying the database. This matches {@link #getFilter(SharedPreferences)}.
+     *  @param pref The preferences used to retrieve filter values. */
+    public static CardFilter getCardFilter(SharedPreferences pref) {
+        return new CardFilter(pref.getString(Pref.FILT_SET, ""),
+                              pref.getString(Pref.FILT_COST, ""),
+                              pref.getString(Pref.FILT_DEBT, ""),
+                              pref.getBoolean(Pref.FILT_POTION, true),
+                              pref.getBoolean(Pref.FILT_CURSE, true),
+                              pref.getString(Pref.EXPANSION_EDITIONS, ""));
+    }
+
+
     @Override
     public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
         mCursor = data;
@@ -2,18 +2,24 @@ package ca.marklauman.dominionpicker;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import ca.marklauman.dominionpicker.database.CatalogLoader;
 import ca.marklauman.dominionpicker.history.FragmentHistory;
 import ca.marklauman.dominionpicker.settings.ActivityOptions;
 import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.EligibilityCounter;
 import ca.marklauman.tools.ExpandedArrayAdapter;
 
 import android.app.Activity;
 import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
@@ -22,6 +28,7 @@ import android.support.v4.view.GravityCompat;
 import android.support.v4.widget.DrawerLayout;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.ActionBarDrawerToggle;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -36,6 +43,9 @@ import android.widget.Toast;
 public class MainActivity extends AppCompatActivity
                           implements ListView.OnItemClickListener {
 
+    /** The largest number of players in a draft. */
+    private static final int MAX_PLAYERS = 6;
+
     /** Layout for the navigation drawer */
     @BindView(R.id.drawer_layout) DrawerLayout vDrawerLayout;
     /** ListView for the navigation drawer */
@@ -55,6 +65,8 @@ public class MainActivity extends AppCompatActivity
     private ExpandedArrayAdapter<String> navAdapt;
     /** Handler used to manage the shuffler */
     private ShuffleManager shuffler;
+    /** Warns about a shortfall before a shuffle is started. */
+    private ShortfallWatcher shortfall;
 
 
     /** Called when the activity is first created */
@@ -66,6 +78,7 @@ public class MainActivity extends AppCompatActivity
         ButterKnife.bind(this);
         shuffler = new ShuffleManager();
         vSubmit.setOnClickListener(shuffler);
+        shortfall = new ShortfallWatcher();
 
         // Get the strings for the nav drawer
         app_name = getString(R.string.app_name);
@@ -120,6 +133,7 @@ public class MainActivity extends AppCompatActivity
     @Override
     public void onDestroy() {
         shuffler.unregister();
+        shortfall.unregister();
         super.onDestroy();
     }
 
@@ -140,6 +154,9 @@ public class MainActivity extends AppCompatActivity
         // show the toggle all button on the picker screen
         menu.findItem(R.id.action_toggle_all)
             .setVisible(navHidden && sel == 1);
+        // drafts can be started from the screens that can shuffle
+        menu.findItem(R.id.action_draft)
+            .setVisible(navHidden && sel < 2);
         return super.onPrepareOptionsMenu(menu);
     }
 	
@@ -156,6 +173,10 @@ public class MainActivity extends AppCompatActivity
             case R.id.action_toggle_all:
                 ((FragmentPicker)active).toggleAll();
                 return true;
+            case R.id.action_draft:
+                saveActive();
+                startDraft();
+                return true;
 		}
 
         // Not an item we created
@@ -169,6 +190,34 @@ public class MainActivity extends AppCompatActivity
     }
 
 
+    /** Save the choices made on the active screen, so a shuffle can use them. */
+    private void saveActive() {
+        if(active instanceof FragmentPicker)
+            ((FragmentPicker)active).saveSelections();
+        else if(active instanceof FragmentRules)
+            ((FragmentRules)active).save();
+    }
+
+
+    /** Ask how many players are in a draft, then start it. */
+    private void startDraft() {
+        String[] choices = new String[MAX_PLAYERS - 1];
+        for(int i=0; i<choices.length; i++)
+            choices[i] = "" + (i + 2);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.draft_players)
+                .setItems(choices, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent draft = new Intent(getActivity(), ActivityDraft.class);
+                        draft.putExtra(ActivityDraft.PARAM_PLAYERS, which + 2);
+                        startActivity(draft);
+                    }
+                })
+                .show();
+    }
+
+
     /** Called when an item in the navigation bar's list is selected */
     @Override
     public void onItemClick(AdapterView parent, View view, int position, long id) {
@@ -204,6 +253,7 @@ public class MainActivity extends AppCompatActivity
                     break;
         }
         t.commit();
+        shortfall.update();
 
         vDrawerLayout.closeDrawer(vDrawer);
     }
@@ -252,26 +302,125 @@ public class MainActivity extends AppCompatActivity
     }
 
 
+    /** Keeps a count of the cards that pass the filters, and shows a warning if there
+     *  aren't enough kingdom cards for a supply. The count is updated as the filters
+     *  change, without querying the database (see {@link EligibilityCounter}). */
+    private class ShortfallWatcher implements Pref.Listener {
+        /** The counter, or null if it has not loaded yet. */
+        private EligibilityCounter counter = null;
+        /** The warning on display, or null if there isn't one. */
+        private Snackbar warning = null;
+        /** Loads the counter in the background. */
+        private final CounterLoader loader;
+
+        ShortfallWatcher() {
+            Pref.addListener(this);
+            loader = new CounterLoader();
+            loader.execute();
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences pref, String key) {
+            if(counter == null) return;
+            switch(key) {
+                case Pref.FILT_SET: case Pref.FILT_COST: case Pref.FILT_DEBT:
+                case Pref.FILT_POTION: case Pref.FILT_CURSE: case Pref.FILT_EDITION:
+                case Pref.EXPANSION_EDITIONS:
+                    counter.setFilter(FragmentPicker.getCardFilter(pref));
+                    update();
+                    break;
+                case Pref.FILT_CARD: case Pref.REQ_CARDS:
+                    setExcluded(pref);
+                    update();
+                    break;
+                case Pref.LIMIT_SUPPLY:
+                    update();
+                    break;
+            }
+        }
+
+        /** Pass the cards deselected in the picker to the counter. */
+        private void setExcluded(SharedPreferences pref) {
+            counter.setExcluded(SupplyShuffler.parseIds(pref.getString(Pref.FILT_CARD, "")),
+                                SupplyShuffler.parseIds(pref.getString(Pref.REQ_CARDS, "")));
+        }
+
+        /** Show or hide the warning. It is only shown on the screens that can shuffle. */
+        void update() {
+            if(counter == null) return;
+            int needed = Pref.get(getActivity()).getInt(Pref.LIMIT_SUPPLY, 10);
+            if(navAdapt.getSelection() < 2 && 0 < counter.shortfall(needed)) {
+                String msg = String.format(getString(R.string.more_k),
+                                           counter.numKingdom() + "/" + needed);
+                if(warning == null) {
+                    warning = Snackbar.make(vDrawerLayout, msg, Snackbar.LENGTH_INDEFINITE);
+                    warning.show();
+                } else warning.setText(msg);
+            } else if(warning != null) {
+                warning.dismiss();
+                warning = null;
+            }
+        }
+
+        /** Stop listening for preference changes. */
+        void unregister() {
+            Pref.removeListener(this);
+            loader.cancel(true);
+        }
+
+        /** Builds the counter off of the UI thread (the catalog may need to be loaded). */
+        private class CounterLoader extends AsyncTask<Void, Void, EligibilityCounter> {
+            @Override
+            protected EligibilityCounter doInBackground(Void... ignored) {
+                return new EligibilityCounter(CatalogLoader.get(Pref.getAppContext()));
+            }
+
+            @Override
+            protected void onPostExecute(EligibilityCounter result) {
+                SharedPreferences pref = Pref.get(getActivity());
+                counter = result;
+                counter.setFilter(FragmentPicker.getCardFilter(pref));
+                setExcluded(pref);
+                update();
+            }
+        }
+    }
+
+
     /** Allows this activity to request shuffles and get the results */
     private class ShuffleManager extends BroadcastReceiver
                                  implements View.OnClickListener {
         /** The shuffler */
         private SupplyShuffler shuffler;
+        /** Keeps supplies ready before the shuffle button is pressed. */
+        private final ShufflePrefetcher prefetcher;
 
         public ShuffleManager() {
             super();
             shuffler = null;
+            prefetcher = new ShufflePrefetcher();
             LocalBroadcastManager.getInstance(getActivity())
                     .registerReceiver(this, new IntentFilter(SupplyShuffler.MSG_INTENT));
         }
 
         @Override
         public void onClick(View v) {
-            if(active instanceof FragmentPicker)
-                ((FragmentPicker)active).saveSelections();
-            else if(active instanceof FragmentRules)
-                ((FragmentRules)active).save();
-            startShuffle();
+            saveActive();
+
+            // Use a supply that is ready, if there is one
+            Supply supply = prefetcher.take();
+            if(supply != null) {
+                cancelShuffle();
+                showSupply(supply);
+            } else startShuffle();
+        }
+
+        /** Display a new supply. It may not be in the history table yet. */
+        private void showSupply(Supply supply) {
+            Intent showSupply = new Intent(getActivity(), ActivitySupply.class);
+            showSupply.putExtra(ActivitySupply.PARAM_HISTORY_ID, supply.time);
+            showSupply.putExtra(ActivitySupply.PARAM_SUPPLY, supply);
+            startActivity(showSupply);
         }
 
         @Override
@@ -281,10 +430,8 @@ public class MainActivity extends AppCompatActivity
             String msg;
             switch(res) {
                 case SupplyShuffler.RES_OK:
-                    Intent showSupply = new Intent(getActivity(), ActivitySupply.class);
-                    showSupply.putExtra(ActivitySupply.PARAM_HISTORY_ID,
-                                        intent.getLongExtra(SupplyShuffler.MSG_SUPPLY_ID, -1));
-                    startActivity(showSupply);
+                    Supply supply = intent.getParcelableExtra(SupplyShuffler.MSG_SUPPLY);
+                    if(supply != null) showSupply(supply);
                     return;
                 case SupplyShuffler.RES_MORE:
                     msg = String.format(getString(R.string.more_k),
@@ -296,6 +443,14 @@ public class MainActivity extends AppCompatActivity
                     Toast.makeText(getActivity(), R.string.yw_no_bane, Toast.LENGTH_LONG)
                          .show();
                     return;
+                case SupplyShuffler.RES_RULES:
+                    Toast.makeText(getActivity(), R.string.rules_unmet, Toast.LENGTH_LONG)
+                         .show();
+                    return;
+                case SupplyShuffler.RES_RULES_GAVE_UP:
+                    Toast.makeText(getActivity(), R.string.rules_gave_up, Toast.LENGTH_LONG)
+                         .show();
+                    return;
                 default: // Do nothing
             }
         }
@@ -304,13 +459,13 @@ public class MainActivity extends AppCompatActivity
          *  Also cancels any shuffles in progress. */
         public void startShuffle() {
             cancelShuffle();
-            shuffler = new SupplyShuffler();
-            shuffler.execute();
+            shuffler = new SupplyShuffler(SupplyShuffler.newRequest(Pref.get(getActivity())));
+            shuffler.start();
         }
 
         /** Stop a shuffle if it is in session. */
         public void cancelShuffle() {
-            if(shuffler != null) shuffler.cancel(true);
+            if(shuffler != null) shuffler.cancel();
             shuffler = null;
         }
 
@@ -319,6 +474,7 @@ public class MainActivity extends AppCompatActivity
             LocalBroadcastManager.getInstance(getActivity())
                                  .unregisterReceiver(this);
             cancelShuffle();
+            prefetcher.shutdown();
         }
     }
 }
\ No newline at end of file
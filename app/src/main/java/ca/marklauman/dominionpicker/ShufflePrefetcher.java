@@ -0,0 +1,171 @@
+package ca.marklauman.dominionpicker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.database.CardRowCache;
+import ca.marklauman.dominionpicker.database.CatalogLoader;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSession;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+/** Shuffles supplies in the background before they are asked for, so that a supply is
+ *  ready the moment the shuffle button is pressed. Supplies are shuffled with the
+ *  preferences at the time, and are thrown out if a preference that affects the shuffle
+ *  changes. A supply is only written to the history table once it is taken.
+ *
+ *  <p>Only successful supplies are kept. If a supply can't be shuffled with the current
+ *  preferences, nothing is ready and the {@link SupplyShuffler} reports why as usual.</p>
+ *  @author Mark Lauman */
+class ShufflePrefetcher implements Pref.Listener {
+
+    /** The number of supplies kept ready. */
+    private static final int DEPTH = 2;
+
+    /** Supplies ready to be taken. Only used on the UI thread. */
+    private final ArrayDeque<Ready> ready = new ArrayDeque<>(DEPTH);
+    /** Changes every time a preference that affects the shuffle is changed.
+     *  Supplies shuffled before a change are thrown out. */
+    private int generation = 0;
+    /** The shuffle in progress, or null if there isn't one. */
+    private Prefetch task = null;
+    /** True once {@link #shutdown()} has been called. */
+    private boolean shutdown = false;
+
+
+    /** A supply that has been shuffled, but not saved. */
+    private static class Ready {
+        /** The value of {@link #generation} when the shuffle started. */
+        final int generation;
+        /** The supply. */
+        final ShuffleSupply supply;
+        /** The session of the supply (null if nothing was drawn). */
+        final ShuffleSession session;
+
+        Ready(int generation, ShuffleSupply supply, ShuffleSession session) {
+            this.generation = generation;
+            this.supply = supply;
+            this.session = session;
+        }
+    }
+
+
+    /** Create a prefetcher and start shuffling. */
+    ShufflePrefetcher() {
+        Pref.addListener(this);
+        fill();
+    }
+
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences pref, String key) {
+        switch(key) {
+            case Pref.FILT_SET: case Pref.FILT_COST: case Pref.FILT_DEBT:
+            case Pref.FILT_POTION: case Pref.FILT_CURSE: case Pref.FILT_CARD:
+            case Pref.REQ_CARDS: case Pref.FILT_EDITION:
+            case Pref.LIMIT_SUPPLY: case Pref.LIMIT_EVENTS:
+            case Pref.WEIGHT_SET: case Pref.WEIGHT_CARD:
+            case Pref.RULE_BUY: case Pref.RULE_VILLAGE:
+            case Pref.RULE_ATTACKS: case Pref.RULE_COST_SPREAD:
+            case Pref.RULE_COST_CURVE: case Pref.RULE_ANTI_REPEAT:
+                generation++;
+                ready.clear();
+                fill();
+                break;
+        }
+    }
+
+
+    /** Take a ready supply and save it to the history table. The save happens in the
+     *  background (see {@link SupplyShuffler#saveSupply}).
+     *  Another supply is shuffled to take its place.
+     *  @return The supply, or null if no supply was ready. */
+    Supply take() {
+        Ready next = ready.poll();
+        if(next == null) return null;
+        long time = Calendar.getInstance().getTimeInMillis();
+        SupplyShuffler.saveSupply(next.supply, next.session, time);
+        fill();
+        return new Supply(time, next.supply);
+    }
+
+
+    /** Stop shuffling and throw out any ready supplies. */
+    void shutdown() {
+        shutdown = true;
+        Pref.removeListener(this);
+        if(task != null) task.cancel(true);
+        task = null;
+        ready.clear();
+    }
+
+
+    /** Start shuffling if there is room for another ready supply. */
+    private void fill() {
+        if(shutdown || task != null || DEPTH <= ready.size()) return;
+        // The preferences are captured here, so later changes can't leak into the shuffle
+        ShuffleRequest request = SupplyShuffler.newRequest(Pref.get(Pref.getAppContext()));
+        // Anti-repeat supplies depend on the supplies before them, so they are not shuffled ahead
+        if(request.antiRepeat) return;
+        task = new Prefetch(generation, request);
+        // Run beside the other tasks, so a shuffle started by the user is not held up
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+
+    /** Shuffles one supply in the background. */
+    private class Prefetch extends AsyncTask<Void, Void, Ready> {
+        /** The generation of the preferences used for this shuffle. */
+        private final int startGeneration;
+        /** The settings of the shuffle. */
+        private final ShuffleRequest request;
+
+        Prefetch(int startGeneration, ShuffleRequest request) {
+            this.startGeneration = startGeneration;
+            this.request = request;
+        }
+
+        @Override
+        protected Ready doInBackground(Void... ignored) {
+            Context context = Pref.getAppContext();
+            Random random = new Random();
+            CardCatalog catalog = CatalogLoader.get(context);
+            // The supply screen shows ready supplies from these rows
+            CardRowCache.load(context);
+            ShuffleSupply supply = ShuffleEngine.newSupply(catalog, request, random);
+            if(supply.isComplete())
+                return new Ready(startGeneration, supply, null);
+
+            CardPool pool = SupplyShuffler.loadPool(catalog, request);
+            if(isCancelled()) return null;
+            pool.fill(supply, random);
+            if(!supply.isComplete()) return null;
+            return new Ready(startGeneration, supply,
+                             SupplyShuffler.newSession(supply, pool, random));
+        }
+
+        @Override
+        protected void onPostExecute(Ready result) {
+            task = null;
+            if(shutdown) return;
+            // A supply that can't be shuffled won't be shuffled next time either.
+            if(result == null && startGeneration == generation) return;
+            if(result != null && result.generation == generation) ready.add(result);
+            fill();
+        }
+
+        @Override
+        protected void onCancelled(Ready result) {
+            if(task == this) task = null;
+        }
+    }
+}
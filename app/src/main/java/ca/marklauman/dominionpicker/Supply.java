@@ -8,6 +8,7 @@ import android.os.Parcelable;
 
 import ca.marklauman.dominionpicker.database.TableCard;
 import ca.marklauman.dominionpicker.database.TableSupply;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
 
 /** Contains all information about a supply set.
  *  @author Mark Lauman                       */
@@ -18,7 +19,7 @@ public class Supply implements Parcelable {
     /** The name of this supply (optional, may be null) */
     public String name;
 	/** The cards in the supply. */
-	public final long[] cards;
+	public long[] cards;
 	/** {@code true} if colonies + platinum are in use. */
 	public final boolean high_cost;
 	/** {@code true} if shelters are in use. */
@@ -26,7 +27,7 @@ public class Supply implements Parcelable {
     /** {@code true} if this is from the sample database. */
     public boolean sample;
 	/** The id of the bane card, or -1 if there isn't one. */
-	final long bane;
+	long bane;
 
 
     public Supply(Cursor c) {
@@ -41,6 +42,21 @@ public class Supply implements Parcelable {
         for(int i=0; i<cardList.length; i++)
             cards[i] = Long.parseLong(cardList[i]);
     }
+
+
+
+    /** Constructor for a supply that has just been shuffled.
+     *  @param time The timestamp of the supply.
+     *  @param supply The finished supply. */
+    Supply(long time, ShuffleSupply supply) {
+        this.time = time;
+        name = null;
+        cards = supply.getCards();
+        bane = supply.getBane();
+        high_cost = supply.high_cost;
+        shelters = supply.shelters;
+        sample = false;
+    }
 	
 	
 	/** Constructor for unpacking a parcel into a {@code Supply} */
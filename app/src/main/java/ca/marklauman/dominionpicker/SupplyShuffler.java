@@ -1,27 +1,56 @@
 package ca.marklauman.dominionpicker;
 
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.os.AsyncTask;
+import android.os.Process;
 import android.support.v4.content.LocalBroadcastManager;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import ca.marklauman.dominionpicker.database.CardRowCache;
+import ca.marklauman.dominionpicker.database.CatalogLoader;
 import ca.marklauman.dominionpicker.database.DataDb;
 import ca.marklauman.dominionpicker.database.Provider;
-import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.database.RecencyTracker;
 import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSession;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
 import ca.marklauman.tools.Utils;
 
 /** This task is used to shuffle new supplies.
- *  It reads the current setting configuration when called, and attempts to create a supply
- *  with the available cards.
- *  The result of the shuffle is communicated to the main activity with broadcast intents.
+ *  It is given the settings as a {@link ShuffleRequest} when it is created, and attempts
+ *  to create a supply with the available cards. Cards are drawn from the in-memory
+ *  {@link CardCatalog} by the {@link ShuffleEngine}, so the database is not queried
+ *  during a shuffle.
+ *
+ *  <p>A shuffle runs in two stages, each on a thread of its own (so it never waits
+ *  behind unrelated AsyncTasks). The draw stage shuffles the supply and broadcasts the
+ *  result to the main activity straight away, with the supply attached. The new supply
+ *  is then written to the history table by the persist stage, while it is already on
+ *  display. Supplies are written in the order they were shuffled. {@link #flush()} waits
+ *  for the writes to finish.</p>
+ *
+ *  <p>The persist stage also keeps the translated card rows in the {@link CardRowCache},
+ *  so the supply screen can show later supplies without querying their cards. This is
+ *  kept off of the draw stage: if the rows are not ready yet, the supply screen
+ *  queries the cards itself.</p>
+ *
+ *  <p>Cancelling a shuffle ({@link #cancel()}) stops it at the next stage boundary.
+ *  A supply that has been broadcast is always written.</p>
  *  @author Mark Lauman */
-class SupplyShuffler extends AsyncTask<Void, Void, Void> {
+class SupplyShuffler implements Runnable {
 
     /** When the shuffler is done, an intent of this type broadcasts
      *  the results back to the activity.                         */
@@ -34,6 +63,9 @@ class SupplyShuffler extends AsyncTask<Void, Void, Void> {
     public static final String MSG_SHORT = "shortfall";
     /** The extra containing the supply id. Only available on {@link #RES_OK}. */
     public static final String MSG_SUPPLY_ID ="supply";
+    /** The extra containing the {@link Supply} itself. Only available on {@link #RES_OK}.
+     *  It may arrive before the supply is in the history table. */
+    public static final String MSG_SUPPLY = "supplyData";
 
     /** Shuffle succeeded. Supply available in {@link #MSG_SUPPLY_ID} */
     public static final int RES_OK = 0;
@@ -42,63 +74,111 @@ class SupplyShuffler extends AsyncTask<Void, Void, Void> {
     /** Shuffle failed. Insufficient kingdom cards.
      *  Shortfall in {@link #MSG_SHORT}. */
     public static final int RES_MORE = 2;
+    /** Shuffle failed. No supply can meet the shuffle rules. */
+    public static final int RES_RULES = 3;
+    /** Shuffle failed. No supply meeting the shuffle rules was found in time,
+     *  but one may exist. */
+    public static final int RES_RULES_GAVE_UP = 4;
     /** Shuffle cancelled by outside source. */
     @SuppressWarnings("WeakerAccess")
     public static final int RES_CANCEL = 100;
 
+    /** Runs the draw stage of each shuffle. */
+    private static final ExecutorService DRAW
+            = Executors.newSingleThreadExecutor(new StageFactory("shuffle-draw"));
+    /** Runs the persist stage of each shuffle, in the order they finished drawing. */
+    private static final ExecutorService PERSIST
+            = Executors.newSingleThreadExecutor(new StageFactory("shuffle-persist"));
+
+    /** The settings of this shuffle. */
+    private final ShuffleRequest request;
+    /** Set when this shuffle is cancelled. Checked between each stage. */
+    private volatile boolean cancelled = false;
+
+    /** The pool of the last request made to {@link #loadPool}. */
+    private static CardPool lastPool = null;
+    /** The request that {@link #lastPool} was built for. */
+    private static ShuffleRequest lastRequest = null;
+    /** Session left over from the last successful shuffle. Used to replace dismissed cards. */
+    private static ShuffleSession session = null;
+    /** The id (timestamp) of the supply that {@link #session} belongs to. */
+    private static long sessionId = -1L;
+
+
+
+    /** Create a shuffler.
+     *  @param request The settings of the shuffle, captured from the preferences
+     *                 when the shuffle was asked for (see {@link #newRequest}). */
+    SupplyShuffler(ShuffleRequest request) {
+        this.request = request;
+    }
+
+
+    /** Start the shuffle. The result is broadcast with a {@link #MSG_INTENT}. */
+    void start() {
+        DRAW.execute(this);
+    }
+
+
+    /** Cancel the shuffle. If the supply has not been broadcast, the shuffle stops
+     *  at the next stage boundary and {@link #RES_CANCEL} is broadcast instead. */
+    void cancel() {
+        cancelled = true;
+    }
+
+
+    /** Check if the shuffle has been cancelled. */
+    private boolean isCancelled() {
+        return cancelled;
+    }
 
 
+    /** The draw stage. */
     @Override
-    protected Void doInBackground(Void... ignored) {
-        // Create the supply we will populate, and do a check for minKingdoms == 0
-        ShuffleSupply supply = new ShuffleSupply();
-        if(!supply.needsKingdom())
-            return successfulResult(supply);
-
-        // load applicable filters.
-        SharedPreferences pref = Pref.get(Pref.getAppContext());
-        String filt_pre = FragmentPicker.getFilter(pref);
-        String filt_req = pref.getString(Pref.REQ_CARDS, "");
-        String filt_card = pref.getString(Pref.FILT_CARD, "");
-        String edition_filter = pref.getString(Pref.FILT_EDITION, "");
-
-        // Load the required cards into the supply
-        if(0 < filt_req.length())
-            loadCards(supply, joinFilters(filt_pre, TableCard._ID+" IN ("+filt_req+")"), true);
-        if(isCancelled())
-            return cancelResult();
-        if (!supply.needsKingdom())
-            return successfulResult(supply);
+    public void run() {
+        drawSupply();
+    }
 
-        // Filter out both required and excluded cards
-        String filt = filt_req;
 
-        if(0 < filt_card.length())
-            if (0 < filt.length())
-                filt += ",";
-            filt += filt_card;
+    /** Draw the supply and broadcast the result. */
+    private Void drawSupply() {
+        if(isCancelled())
+            return cancelResult();
 
-        if(0 < filt.length())
-            filt = TableCard._ID+" NOT IN ("+filt+")";
+        // Create the supply we will populate, and do a check for minKingdoms == 0
+        Context context = Pref.getAppContext();
+        Random random = new Random();
+        CardCatalog catalog = CatalogLoader.get(context);
+        ShuffleSupply supply = ShuffleEngine.newSupply(catalog, request, random);
+        if(!supply.needsKingdom())
+            return successfulResult(supply, null, random);
 
-        if (0 < filt.length()) {
-            filt += " AND " + edition_filter;
-        } else {
-            filt = edition_filter;
-        }
+        // Find the cards that may go into the supply
+        CardPool pool = loadPool(catalog, request);
+        if(isCancelled())
+            return cancelResult();
 
-        // Shuffle the remaining cards into the supply
-        loadCards(supply, joinFilters(filt_pre, filt), false);
+        // Shuffle the cards into the supply
+        pool.fill(supply, random);
         if(isCancelled())
             return cancelResult();
-        if (!supply.needsKingdom())
-            return successfulResult(supply);
+        if (supply.isComplete())
+            return successfulResult(supply, pool, random);
 
         // Shuffle has failed.
         Intent msg = new Intent(MSG_INTENT);
         int shortfall = supply.getShortfall();
+        // Shuffle failed because of the shuffle rules
+        if(supply.rulesUnmet) {
+            msg.putExtra(MSG_RES, RES_RULES);
+            return sendMsg(msg);
+        }
+        if(supply.rulesGaveUp) {
+            msg.putExtra(MSG_RES, RES_RULES_GAVE_UP);
+            return sendMsg(msg);
+        }
         // Shuffle failed because there were no bane cards for the young witch
-        if(supply.waitingForBane() && shortfall == 1) {
+        if(supply.missingSidePile()) {
             msg.putExtra(MSG_RES, RES_NO_YW);
             return sendMsg(msg);
         } else {
@@ -109,71 +189,157 @@ class SupplyShuffler extends AsyncTask<Void, Void, Void> {
     }
 
 
-    /** Joins a collection of filters together with AND statements */
-    private static String joinFilters(String... filters) {
-        if(filters.length == 0) return "";
-        if(filters.length == 1) return filters[0];
+    /** Capture the current preferences as a shuffle request.
+     *  @param pref The preferences of this app. */
+    static ShuffleRequest newRequest(SharedPreferences pref) {
+        return new ShuffleRequest.Builder()
+                .setLimits(pref.getInt(Pref.LIMIT_SUPPLY, 10), pref.getInt(Pref.LIMIT_EVENTS, 2))
+                .setFilter(pref.getString(Pref.FILT_SET, ""),
+                           pref.getString(Pref.FILT_COST, ""),
+                           pref.getString(Pref.FILT_DEBT, ""),
+                           pref.getBoolean(Pref.FILT_POTION, true),
+                           pref.getBoolean(Pref.FILT_CURSE, true),
+                           pref.getString(Pref.EXPANSION_EDITIONS, ""))
+                .setCards(toArray(parseIds(pref.getString(Pref.FILT_CARD, ""))),
+                          toArray(parseIds(pref.getString(Pref.REQ_CARDS, ""))))
+                .setWeights(pref.getString(Pref.WEIGHT_SET, ""),
+                            pref.getString(Pref.WEIGHT_CARD, ""))
+                .setRules(pref.getBoolean(Pref.RULE_BUY, false),
+                          pref.getBoolean(Pref.RULE_VILLAGE, false),
+                          pref.getBoolean(Pref.RULE_ATTACKS, false),
+                          pref.getBoolean(Pref.RULE_COST_SPREAD, false))
+                .setCostCurve(pref.getBoolean(Pref.RULE_COST_CURVE, false))
+                .setAntiRepeat(pref.getBoolean(Pref.RULE_ANTI_REPEAT, false))
+                .build();
+    }
+
 
-        // Find the first non-null string in the filter list
-        int i =0;
-        while(filters[i] == null || "".equals(filters[i])) {
-            if(i == filters.length) return "";
-            i++;
+    /** Get the pool of cards for a request (see {@link ShuffleEngine#newPool}).
+     *  The pool of the last request is kept, and a copy of it is returned
+     *  if the same request is made again with the same catalog.
+     *  If the request asks for anti-repeat, the pool is given the recency scores
+     *  of the history table (see {@link RecencyTracker}).
+     *  @param catalog The catalog the cards come from.
+     *  @param request The settings of the shuffle.
+     *  @return A pool that belongs to the caller. */
+    static synchronized CardPool loadPool(CardCatalog catalog, ShuffleRequest request) {
+        if(lastPool == null || lastPool.getCatalog() != catalog
+           || !request.equals(lastRequest)) {
+            lastPool = ShuffleEngine.newPool(catalog, request);
+            if(request.antiRepeat)
+                lastPool.setRecency(RecencyTracker.get(Pref.getAppContext()));
+            lastRequest = request;
         }
+        return lastPool.copy();
+    }
 
-        // Start of the joined filter
-        StringBuilder res = new StringBuilder(filters[i].length());
-        res.append(filters[i]);
-        i++;
 
-        // Add any remaining non-null filters
-        for(;i<filters.length; i++) {
-            if(filters[i] != null && !"".equals(filters[i])) {
-                res.append(" AND ");
-                res.append(filters[i]);
-            }
+    /** Get the session for a supply, so that its cards can be replaced.
+     *  The session from the last shuffle is kept. For any other supply, a new session is
+     *  loaded using the current preferences. This may load the catalog, so it should not
+     *  be called on the UI thread.
+     *  @param context A context within this app.
+     *  @param supply The supply on display.
+     *  @return The session for that supply. */
+    static synchronized ShuffleSession getSession(Context context, Supply supply) {
+        if(session != null && sessionId == supply.time) return session;
+        CardPool pool = loadPool(CatalogLoader.get(context), newRequest(Pref.get(context)));
+        // Seeded by the supply, so a reloaded session makes the same replacements
+        session = pool.newSession(supply.cards, supply.bane, new Random(supply.time));
+        sessionId = supply.time;
+        return session;
+    }
+
+
+    /** Keep the session of a new supply. */
+    private static synchronized void keepSession(ShuffleSession newSession, long time) {
+        session = newSession;
+        sessionId = newSession == null ? -1L : time;
+    }
+
+
+    /** Parse a comma separated list of card ids. Invalid ids are ignored. */
+    static HashSet<Long> parseIds(String ids) {
+        HashSet<Long> res = new HashSet<>();
+        if(ids.length() == 0) return res;
+        for(String id : ids.split(",")) {
+            try { res.add(Long.parseLong(id.trim()));
+            } catch(NumberFormatException ignored) {}
         }
-        return res.toString();
+        return res;
     }
 
 
-    /** Load all cards matching the filter and add them to the supply.
-     *  @param s The supply object that you want to add to.
-     *  @param filter The filter for the cards you wish to add.
-     *  @param cardsRequired True if all matching cards must be in the supply.
-     *  If this is false, cards will be added to the supply until it has enough kingdom cards. */
-    private void loadCards(ShuffleSupply s, String filter, boolean cardsRequired) {
-        // Query the cards in the database
-        Cursor c = Pref.getAppContext()
-                       .getContentResolver()
-                       .query(Provider.URI_CARD_DATA,
-                               new String[]{TableCard._ID, TableCard._TYPE_EVENT,
-                                            TableCard._TYPE_LANDMARK, TableCard._SET_ID,
-                                            TableCard._COST},
-                               filter, null, "random()");
-        if(c == null) return;
+    /** Turn a set of card ids into an array. */
+    private static long[] toArray(HashSet<Long> ids) {
+        long[] res = new long[ids.size()];
+        int i = 0;
+        for(long id : ids) res[i++] = id;
+        return res;
+    }
 
-        try {
-            int _id = c.getColumnIndex(TableCard._ID);
-            int _event = c.getColumnIndex(TableCard._TYPE_EVENT);
-            int _landmark = c.getColumnIndex(TableCard._TYPE_LANDMARK);
-            int _cost = c.getColumnIndex(TableCard._COST);
-            int _set_id = c.getColumnIndex(TableCard._SET_ID);
-
-            c.moveToPosition(-1);
-            while(c.moveToNext() && (cardsRequired || s.needsKingdom())) {
-                if(isCancelled())
-                    return;
-
-                // We handle special and kingdom cards differently (specials first)
-                long id = c.getLong(_id);
-                if(c.getInt(_event) != 0 || c.getInt(_landmark) != 0)
-                    s.addSpecial(id, cardsRequired);
-                else s.addKingdom(id, c.getString(_cost), c.getInt(_set_id), cardsRequired);
+
+    /** Get the history table row for a finished supply.
+     *  @param supply The supply to store.
+     *  @param time The timestamp of the supply (its id in the history table). */
+    static ContentValues historyRow(ShuffleSupply supply, long time) {
+        ContentValues values = new ContentValues();
+        values.putNull(DataDb._H_NAME);
+        values.put(DataDb._H_TIME,      time);
+        values.put(DataDb._H_CARDS,     Utils.join(",", supply.getCards()));
+        values.put(DataDb._H_BANE,      supply.getBane());
+        values.put(DataDb._H_HIGH_COST, supply.high_cost);
+        values.put(DataDb._H_SHELTERS,  supply.shelters);
+        return values;
+    }
+
+
+    /** Start a session for a supply that is about to be saved (see {@link #saveSupply}).
+     *  @param supply The finished supply.
+     *  @param pool The pool the supply was drawn from (null if no cards were drawn).
+     *  @param random The source of randomness for the supply.
+     *  @return The session, or null if no cards were drawn. */
+    static ShuffleSession newSession(ShuffleSupply supply, CardPool pool, Random random) {
+        if(pool == null) return null;
+        return pool.newSession(supply.getCards(), supply.getBane(), random);
+    }
+
+
+    /** Keep the session of a finished supply, and queue it to be written into the
+     *  history table by the persist stage. This returns straight away.
+     *  After the write, the persist stage loads the {@link CardRowCache} if it is out of date.
+     *  The supply is recorded in the recency scores now, so the next shuffle
+     *  does not have to wait for it to be written (see {@link RecencyTracker}).
+     *  @param supply The finished supply.
+     *  @param session The session of the supply (see {@link #newSession}).
+     *  @param time The timestamp of the supply (its id in the history table). */
+    static void saveSupply(ShuffleSupply supply, ShuffleSession session, final long time) {
+        keepSession(session, time);
+        RecencyTracker.record(time, supply.getCards());
+        final ContentValues row = historyRow(supply, time);
+        PERSIST.execute(new Runnable() {
+            @Override
+            public void run() {
+                Context context = Pref.getAppContext();
+                context.getContentResolver()
+                       .insert(Provider.URI_HIST, row);
+                CardRowCache.load(context);
             }
-        } finally {
-            c.close();
-        }
+        });
+    }
+
+
+    /** Wait for every supply saved so far to be written into the history table.
+     *  This blocks, so it should not be called on the UI thread. */
+    static void flush() {
+        try {
+            PERSIST.submit(new Runnable() {
+                @Override
+                public void run() {}
+            }).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException ignored) {}
     }
 
 
@@ -197,154 +363,45 @@ class SupplyShuffler extends AsyncTask<Void, Void, Void> {
 
 
     /** Generating the supply was successful.
-     *  Write the result into the history database and tell the app its id number */
-    private Void successfulResult(ShuffleSupply supply) {
-        // Insert the new supply
+     *  Tell the app about the supply, and queue it to be written into the history table.
+     *  The rest of the pool is kept as a {@link ShuffleSession}.
+     *  @param supply The new supply.
+     *  @param pool The pool the supply was drawn from (null if no cards were drawn).
+     *  @param random The source of randomness for the supply. */
+    private Void successfulResult(ShuffleSupply supply, CardPool pool, Random random) {
+        ShuffleSession newSession = newSession(supply, pool, random);
+        if(isCancelled())
+            return cancelResult();
         long time = Calendar.getInstance().getTimeInMillis();
-        ContentValues values = new ContentValues();
-        values.putNull(DataDb._H_NAME);
-        values.put(DataDb._H_TIME,      time);
-        values.put(DataDb._H_CARDS,     Utils.join(",", supply.getCards()));
-        values.put(DataDb._H_BANE,      supply.getBane());
-        values.put(DataDb._H_HIGH_COST, supply.high_cost);
-        values.put(DataDb._H_SHELTERS,  supply.shelters);
-        Pref.getAppContext()
-            .getContentResolver()
-            .insert(Provider.URI_HIST, values);
+        saveSupply(supply, newSession, time);
 
         // let the listeners know the result
         Intent msg = new Intent(MSG_INTENT);
         msg.putExtra(MSG_RES, RES_OK);
         msg.putExtra(MSG_SUPPLY_ID, time);
+        msg.putExtra(MSG_SUPPLY, new Supply(time, supply));
         return sendMsg(msg);
     }
 
 
-    /** Represents a supply in the process of being shuffled. */
-    private class ShuffleSupply {
-        /** Possible value of {@link #baneStatus}. There is no young witch in the supply. */
-        private static final int BANE_INACTIVE = 0;
-        /** Possible value of {@link #baneStatus}.
-         *  The young witch was drawn, but we haven't seen a bane yet */
-        private static final int BANE_WAITING = 1;
-        /** Possible value of {@link #baneStatus}. The bane and the young witch have been set */
-        private static final int BANE_ACTIVE = 2;
-
-        /** Minimum amount of kingdom cards needed for this supply to be complete. */
-        public int minKingdom;
-        /** Maximum amount of special cards allowed. */
-        public final int maxSpecial;
-        /** If this is a high cost game or not. */
-        public boolean high_cost = false;
-        /** If this game uses shelters or not. */
-        public boolean shelters = false;
-
-        /** Position of the kingdom card that determines if this is a high cost game. */
-        private final int costCard;
-        /** Position of the kingdom card that determines if this game uses shelters. */
-        private final int shelterCard;
-
-        /** Kingdom cards in this supply */
-        private final ArrayList<Long> kingdom;
-        /** Special cards in this supply that are not kingdom cards. */
-        private final ArrayList<Long> special;
-        /** Current status of the bane card */
-        private int baneStatus = BANE_INACTIVE;
-        /** Id for a possible bane card */
-        private long bane = -1L;
-
-
-        public ShuffleSupply() {
-            SharedPreferences prefs = Pref.get(Pref.getAppContext());
-            minKingdom = prefs.getInt(Pref.LIMIT_SUPPLY, 10);
-            maxSpecial = prefs.getInt(Pref.LIMIT_EVENTS, 2);
-            kingdom = new ArrayList<>(minKingdom);
-            special = new ArrayList<>(maxSpecial);
-            costCard = (int)(Math.random() * minKingdom)+1;
-            shelterCard = (int)(Math.random() * minKingdom)+1;
-        }
-
-
-        /** Add an event to the supply */
-        public void addSpecial(long id, boolean required) {
-            if(required) special.add(id);
-            else if(special.size() < maxSpecial)
-                special.add(id);
-        }
-
+    /** Makes the threads of a stage. They run at background priority, like an AsyncTask. */
+    private static class StageFactory implements ThreadFactory {
+        /** The name of the stage. */
+        private final String name;
 
-        /** Check if this shuffler needs a kingdom card */
-        public boolean needsKingdom() {
-            return kingdom.size() < minKingdom;
+        StageFactory(String name) {
+            this.name = name;
         }
 
-
-        /** Add a kingdom card to the supply */
-        public void addKingdom(long id, String cost, int set_id, boolean required) {
-            if(!required && minKingdom <= kingdom.size())
-                return;
-
-            // Special handling for the young witch
-            if(id == TableCard.ID_YOUNG_WITCH) {
-                if(bane == -1L) {
-                    // Do not add the young witch, wait for a bane card first
-                    baneStatus = BANE_WAITING;
-                    return;
-                } else {
-                    // Add the young witch, we have a bane card
-                    baneStatus = BANE_ACTIVE;
-                    minKingdom++;
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
                 }
-            }
-
-            // Special handling for the young witch's bane
-            else if("2".equals(cost) || "3".equals(cost)) {
-                bane = id;
-                if(baneStatus == BANE_WAITING)
-                    addKingdom(TableCard.ID_YOUNG_WITCH, "4", 3, true);
-            }
-
-            kingdom.add(id);
-
-            // determine if this is a high cost/shelters game
-            if(kingdom.size() == costCard)
-                high_cost = set_id == TableCard.SET_PROSPERITY;
-            if(kingdom.size() == shelterCard)
-                shelters = set_id == TableCard.SET_DARK_AGES;
-        }
-
-
-        /** Get all cards in this supply */
-        public long[] getCards() {
-            long[] res = new long[kingdom.size() + special.size()];
-            int i = 0;
-            for(Long card : kingdom) {
-                res[i] = card;
-                i++;
-            }
-            for(Long card : special) {
-                res[i] = card;
-                i++;
-            }
-            return res;
-        }
-
-        /** Get the bane card of this supply */
-        public long getBane() {
-            if(baneStatus == BANE_ACTIVE) return bane;
-            else return -1L;
-        }
-
-
-        /** Get how many more kingdom cards we need */
-        public int getShortfall() {
-            return minKingdom - kingdom.size();
-        }
-
-
-        /** Check if the supply is waiting for a valid bane card. */
-        public boolean waitingForBane() {
-            return baneStatus == BANE_WAITING;
+            }, name);
         }
     }
 }
\ No newline at end of file
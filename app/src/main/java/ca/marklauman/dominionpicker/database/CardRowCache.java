@@ -0,0 +1,98 @@
+package ca.marklauman.dominionpicker.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterCardsDismiss;
+
+/** Keeps the translated rows of every card in memory, as they are shown on the supply
+ *  screen ({@link AdapterCardsDismiss#COLS_USED}). A new supply can then be displayed
+ *  straight from memory, without querying its cards from the database.
+ *
+ *  <p>The rows are read for the current language filter and card sort
+ *  ({@link Pref#languageFilter} and {@link Pref#cardSort}). If either changes, the rows
+ *  are out of date and {@link #peek} returns null until they are loaded again.</p>
+ *  @author Mark Lauman */
+public abstract class CardRowCache {
+
+    /** The language filter the rows were read with. */
+    private static String language = null;
+    /** The sort order the rows were read with. */
+    private static String sort = null;
+    /** Every row, in sort order. */
+    private static Object[][] rows = null;
+    /** The position of each card's row in {@link #rows}, by card id. */
+    private static HashMap<Long, Integer> positions = null;
+
+
+    /** Load the rows for the current language and sort, if they are not loaded already.
+     *  This queries the database, so it should not be called on the UI thread.
+     *  @param context A context within this app. */
+    public static synchronized void load(Context context) {
+        String curLang = Pref.languageFilter(context);
+        String curSort = Pref.cardSort(context);
+        if(rows != null && curLang.equals(language) && curSort.equals(sort)) return;
+
+        Cursor c = context.getContentResolver()
+                          .query(Provider.URI_CARD_ALL, AdapterCardsDismiss.COLS_USED,
+                                 curLang, null, curSort);
+        if(c == null) return;
+        try {
+            String[] cols = AdapterCardsDismiss.COLS_USED;
+            int _id = c.getColumnIndex(TableCard._ID);
+            Object[][] newRows = new Object[c.getCount()][];
+            HashMap<Long, Integer> newPositions = new HashMap<>(2 * c.getCount());
+            int size = 0;
+            c.moveToPosition(-1);
+            while(c.moveToNext()) {
+                // Only the first row of each card is kept
+                long id = c.getLong(_id);
+                if(newPositions.containsKey(id)) continue;
+                Object[] row = new Object[cols.length];
+                for(int col=0; col<cols.length; col++)
+                    row[col] = CursorSnapshot.valueOf(c, c.getColumnIndex(cols[col]));
+                newPositions.put(id, size);
+                newRows[size++] = row;
+            }
+            rows = Arrays.copyOf(newRows, size);
+            positions = newPositions;
+            language = curLang;
+            sort = curSort;
+        } finally {
+            c.close();
+        }
+    }
+
+
+    /** Get the rows of some cards from memory. This does not touch the database,
+     *  so it may be called on the UI thread.
+     *  @param context A context within this app.
+     *  @param ids The ids of the cards.
+     *  @return A cursor with the rows of the cards, in sort order (cards without a row
+     *  are left out). Null if the rows have not been loaded for the current language and
+     *  sort, in which case the cards should be queried as usual. */
+    public static synchronized Cursor peek(Context context, long[] ids) {
+        if(rows == null || !Pref.languageFilter(context).equals(language)
+           || !Pref.cardSort(context).equals(sort))
+            return null;
+
+        int[] found = new int[ids.length];
+        int size = 0;
+        for(long id : ids) {
+            Integer pos = positions.get(id);
+            if(pos != null) found[size++] = pos;
+        }
+        found = Arrays.copyOf(found, size);
+        Arrays.sort(found);
+
+        MatrixCursor res = new MatrixCursor(AdapterCardsDismiss.COLS_USED, size);
+        for(int pos : found)
+            res.addRow(rows[pos]);
+        return res;
+    }
+}
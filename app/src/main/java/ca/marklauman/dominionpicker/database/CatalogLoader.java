@@ -0,0 +1,86 @@
+package ca.marklauman.dominionpicker.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+
+/** Builds the {@link CardCatalog} from the core database and keeps it in memory.
+ *  The core database is read-only and only changes when the app is upgraded,
+ *  so the catalog is only built once per process.
+ *  @author Mark Lauman */
+public abstract class CatalogLoader {
+
+    /** The columns read from the card data table to build the catalog. */
+    private static final String[] COLS_USED =
+            {TableCard._ID, TableCard._SET_ID, TableCard._COST, TableCard._COST_VAL,
+             TableCard._DEBT, TableCard._POT, TableCard._TYPE_EVENT, TableCard._TYPE_LANDMARK,
+             TableCard._TYPE_ATK, TableCard._META_CURSER, TableCard._BUY, TableCard._ACT,
+             TableCard._UNIQUE_TO_EDITION};
+
+    /** The catalog, once it has been loaded. */
+    private static CardCatalog catalog = null;
+
+
+    /** Get the card catalog. The catalog is built the first time this is called,
+     *  so the first call should be made off of the UI thread.
+     *  @param context A context within this app.
+     *  @return The catalog. If the database could not be read,
+     *  this will be an empty catalog (which is not kept). */
+    public static synchronized CardCatalog get(Context context) {
+        if(catalog != null) return catalog;
+
+        Cursor c = context.getContentResolver()
+                          .query(Provider.URI_CARD_DATA, COLS_USED, null, null, null);
+        if(c == null) return new CardCatalog.Builder(1).build();
+
+        try {
+            int _id = c.getColumnIndex(TableCard._ID);
+            int _set_id = c.getColumnIndex(TableCard._SET_ID);
+            int _cost = c.getColumnIndex(TableCard._COST);
+            int _cost_val = c.getColumnIndex(TableCard._COST_VAL);
+            int _debt = c.getColumnIndex(TableCard._DEBT);
+            int _pot = c.getColumnIndex(TableCard._POT);
+            int _event = c.getColumnIndex(TableCard._TYPE_EVENT);
+            int _landmark = c.getColumnIndex(TableCard._TYPE_LANDMARK);
+            int _attack = c.getColumnIndex(TableCard._TYPE_ATK);
+            int _curser = c.getColumnIndex(TableCard._META_CURSER);
+            int _buy = c.getColumnIndex(TableCard._BUY);
+            int _act = c.getColumnIndex(TableCard._ACT);
+            int _edition = c.getColumnIndex(TableCard._UNIQUE_TO_EDITION);
+
+            CardCatalog.Builder builder = new CardCatalog.Builder(c.getCount());
+            c.moveToPosition(-1);
+            while(c.moveToNext()) {
+                int flags = 0;
+                if(c.getInt(_event) != 0)    flags |= CardCatalog.FLAG_EVENT;
+                if(c.getInt(_landmark) != 0) flags |= CardCatalog.FLAG_LANDMARK;
+                if(c.getInt(_curser) != 0)   flags |= CardCatalog.FLAG_CURSER;
+                if(TableCard.parseVal(c.getString(_attack)) != 0)
+                    flags |= CardCatalog.FLAG_ATTACK;
+                if(isPlainNumber(c.getString(_cost)))
+                    flags |= CardCatalog.FLAG_PLAIN_COST;
+                if(TableCard.parseVal(c.getString(_buy)) != 0)
+                    flags |= CardCatalog.FLAG_PLUS_BUY;
+                if(2 <= TableCard.parseVal(c.getString(_act)))
+                    flags |= CardCatalog.FLAG_VILLAGE;
+                builder.add(c.getLong(_id), c.getInt(_set_id), c.getInt(_cost_val),
+                            c.getInt(_debt), c.getInt(_pot), flags,
+                            c.isNull(_edition) ? 0 : c.getInt(_edition));
+            }
+            catalog = builder.build();
+            return catalog;
+        } finally {
+            c.close();
+        }
+    }
+
+
+    /** Check if a printed value contains only digits. */
+    private static boolean isPlainNumber(String value) {
+        if(value == null || value.length() == 0) return false;
+        for(int i=0; i<value.length(); i++)
+            if(!Character.isDigit(value.charAt(i))) return false;
+        return true;
+    }
+}
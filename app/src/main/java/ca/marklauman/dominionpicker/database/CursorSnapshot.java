@@ -0,0 +1,168 @@
+package ca.marklauman.dominionpicker.database;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+/** A copy of every row of a query, held in memory.
+ *  Any number of read-only cursors can be opened over the same copy
+ *  ({@link #newCursor()}), without copying the rows again.
+ *
+ *  <p>Single rows of a snapshot can be replaced or removed, and every cursor open over it
+ *  sees the change. The snapshots shared by the {@link QueryCache} are never changed.</p>
+ *  @author Mark Lauman */
+public class CursorSnapshot {
+
+    /** The column names. */
+    private final String[] columns;
+    /** The value of each cell, by row then column. */
+    private Object[][] rows;
+
+
+    /** Copy every row of a cursor. The cursor is left open.
+     *  @param c The cursor to copy. */
+    public CursorSnapshot(Cursor c) {
+        columns = c.getColumnNames();
+        rows = new Object[c.getCount()][];
+        c.moveToPosition(-1);
+        int row = 0;
+        while(c.moveToNext() && row < rows.length) {
+            Object[] values = new Object[columns.length];
+            for(int col=0; col<columns.length; col++)
+                values[col] = valueOf(c, col);
+            rows[row++] = values;
+        }
+    }
+
+
+    /** Get the value of a column in the current row of a cursor, as its own type. */
+    static Object valueOf(Cursor c, int col) {
+        if(col == -1) return null;
+        switch(c.getType(col)) {
+            case Cursor.FIELD_TYPE_INTEGER: return c.getLong(col);
+            case Cursor.FIELD_TYPE_FLOAT:   return c.getDouble(col);
+            case Cursor.FIELD_TYPE_BLOB:    return c.getBlob(col);
+            case Cursor.FIELD_TYPE_STRING:  return c.getString(col);
+            default: return null;
+        }
+    }
+
+
+    /** The number of cells in the snapshot (rows times columns). */
+    int numCells() {
+        return rows.length * columns.length;
+    }
+
+
+    /** Open a new cursor over the snapshot. */
+    public Cursor newCursor() {
+        return new SnapshotCursor();
+    }
+
+
+    /** Replace a row with the current row of a cursor. Columns are matched by name,
+     *  and columns the cursor does not have are left null.
+     *  @param row The position of the row to replace.
+     *  @param c A cursor on the new row. It is left open. */
+    public void setRow(int row, Cursor c) {
+        Object[] values = new Object[columns.length];
+        for(int col=0; col<columns.length; col++)
+            values[col] = valueOf(c, c.getColumnIndex(columns[col]));
+        rows[row] = values;
+    }
+
+
+    /** Remove a row. The rows after it move up by one.
+     *  @param row The position of the row to remove. */
+    public void removeRow(int row) {
+        Object[][] res = new Object[rows.length - 1][];
+        System.arraycopy(rows, 0, res, 0, row);
+        System.arraycopy(rows, row+1, res, row, res.length - row);
+        rows = res;
+    }
+
+
+    /** A read-only cursor over the rows of the snapshot. */
+    private class SnapshotCursor extends AbstractCursor {
+
+        /** Get a cell of the current row. */
+        private Object get(int column) {
+            checkPosition();
+            return rows[getPosition()][column];
+        }
+
+        @Override
+        public int getCount() {
+            return rows.length;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return columns;
+        }
+
+        @Override
+        public int getType(int column) {
+            Object value = get(column);
+            if(value == null)            return FIELD_TYPE_NULL;
+            if(value instanceof Long)    return FIELD_TYPE_INTEGER;
+            if(value instanceof Double)  return FIELD_TYPE_FLOAT;
+            if(value instanceof byte[])  return FIELD_TYPE_BLOB;
+            return FIELD_TYPE_STRING;
+        }
+
+        @Override
+        public String getString(int column) {
+            Object value = get(column);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public byte[] getBlob(int column) {
+            Object value = get(column);
+            if(value == null || value instanceof byte[]) return (byte[]) value;
+            return value.toString().getBytes();
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            Object value = get(column);
+            if(value == null) return 0L;
+            if(value instanceof Number) return ((Number) value).longValue();
+            try { return Long.parseLong(value.toString());
+            } catch(NumberFormatException e) {
+                return (long) getDouble(column);
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            Object value = get(column);
+            if(value == null) return 0.0;
+            if(value instanceof Number) return ((Number) value).doubleValue();
+            try { return Double.parseDouble(value.toString());
+            } catch(NumberFormatException e) {
+                return 0.0;
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return get(column) == null;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package ca.marklauman.dominionpicker.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import ca.marklauman.dominionpicker.R;
 
@@ -41,6 +43,25 @@ public class DataDb extends SQLiteOpenHelper {
      *  History Table, Java Long */
     public static final String _H_BANE = TableSupply._BANE;
 
+    /** The internal name of the history card table, which has a row for each card
+     *  of each shuffle in the history table. It is kept in step with
+     *  {@link #_H_CARDS}, so shuffles can be looked up by card. */
+    public static final String TABLE_HISTORY_CARD = "history_card";
+    /** Column storing the timestamp of the shuffle (its {@link #_H_TIME}).<br/>
+     *  History Card Table, Java Long */
+    public static final String _HC_TIME = "history_time";
+    /** Column storing the id of the card.<br/>
+     *  History Card Table, Java Long */
+    public static final String _HC_CARD = "card_id";
+    /** Column storing the position of the card in {@link #_H_CARDS}.<br/>
+     *  History Card Table, Java Integer */
+    public static final String _HC_POS = "position";
+
+    /** The data db version that added the history card table. */
+    private static final int VER_HISTORY_CARD = 12;
+    /** The data db version that moves history card rows when a timestamp changes. */
+    private static final int VER_HISTORY_CARD_MOVE = 13;
+
 
     public DataDb(Context c) {
         super(c, FILE_NAME, null, c.getResources().getInteger(R.integer.db_ver_data));
@@ -56,17 +77,121 @@ public class DataDb extends SQLiteOpenHelper {
                     + _H_HIGH_COST + " INTEGER, "
                     + _H_SHELTERS + " INTEGER, "
                     + _H_BANE + " INTEGER DEFAULT -1);");
+        createHistoryCard(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // This is version 1 of the data db. There are no upgrades yet.
+        // The history card table is made with all of its triggers,
+        // so a database that had none only needs to be filled.
+        if(oldVersion < VER_HISTORY_CARD) {
+            createHistoryCard(db);
+            backfillHistoryCard(db);
+        } else if(oldVersion < VER_HISTORY_CARD_MOVE)
+            createMoveTrigger(db);
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         // Since future structures are unknown, just flash the known tables.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_HISTORY_CARD);
         db.execSQL("DROP TABLE " + TABLE_HISTORY);
         onCreate(db);
     }
-}
\ No newline at end of file
+
+
+    /** Create the history card table. Cards are looked up by id, so they are indexed
+     *  by id. When a shuffle is deleted, a trigger deletes its cards too,
+     *  and when its timestamp changes, another trigger moves them (see {@link #createMoveTrigger}).
+     *  (Older versions of SQLite can't split the card list, so cards are added by
+     *  {@link #indexCards}, not by a trigger.) */
+    private static void createHistoryCard(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_HISTORY_CARD + " ("
+                    + _HC_TIME + " INTEGER NOT NULL, "
+                    + _HC_CARD + " INTEGER NOT NULL, "
+                    + _HC_POS + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY(" + _HC_TIME + ", " + _HC_POS + "));");
+        db.execSQL("CREATE INDEX " + TABLE_HISTORY_CARD + "_card ON " + TABLE_HISTORY_CARD
+                    + "(" + _HC_CARD + ", " + _HC_TIME + ");");
+        db.execSQL("CREATE TRIGGER " + TABLE_HISTORY_CARD + "_delete"
+                    + " AFTER DELETE ON " + TABLE_HISTORY + " BEGIN"
+                    + " DELETE FROM " + TABLE_HISTORY_CARD
+                    + " WHERE " + _HC_TIME + "=OLD." + _H_TIME + ";"
+                    + " END;");
+        createMoveTrigger(db);
+    }
+
+
+    /** Create the trigger that moves a shuffle's cards in the history card table when
+     *  its timestamp changes. Rows already under the new timestamp are stale
+     *  (no shuffle had it), so they are dropped first. */
+    private static void createMoveTrigger(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + TABLE_HISTORY_CARD + "_move"
+                    + " AFTER UPDATE OF " + _H_TIME + " ON " + TABLE_HISTORY
+                    + " WHEN OLD." + _H_TIME + "!=NEW." + _H_TIME + " BEGIN"
+                    + " DELETE FROM " + TABLE_HISTORY_CARD
+                    + " WHERE " + _HC_TIME + "=NEW." + _H_TIME + ";"
+                    + " UPDATE " + TABLE_HISTORY_CARD + " SET " + _HC_TIME + "=NEW." + _H_TIME
+                    + " WHERE " + _HC_TIME + "=OLD." + _H_TIME + ";"
+                    + " END;");
+    }
+
+
+    /** Fill the history card table from every shuffle in the history table.
+     *  This is called from {@link #onUpgrade}, which runs in a transaction. */
+    private static void backfillHistoryCard(SQLiteDatabase db) {
+        SQLiteStatement insert = compileInsert(db);
+        Cursor c = db.query(TABLE_HISTORY, new String[]{_H_TIME, _H_CARDS},
+                            null, null, null, null, null);
+        try {
+            while(c.moveToNext())
+                insertCards(insert, c.getLong(0), c.getString(1));
+        } finally {
+            c.close();
+            insert.close();
+        }
+    }
+
+
+    /** Update the history card table to match a shuffle's cards. This should be called
+     *  whenever {@link #_H_CARDS} is written, in the same transaction.
+     *  @param db The data database.
+     *  @param time The timestamp of the shuffle.
+     *  @param cards The cards of the shuffle, as stored in {@link #_H_CARDS}. */
+    static void indexCards(SQLiteDatabase db, long time, String cards) {
+        db.delete(TABLE_HISTORY_CARD, _HC_TIME + "=?", new String[]{"" + time});
+        SQLiteStatement insert = compileInsert(db);
+        try {
+            insertCards(insert, time, cards);
+        } finally {
+            insert.close();
+        }
+    }
+
+
+    /** Compile the statement that inserts a row into the history card table. */
+    private static SQLiteStatement compileInsert(SQLiteDatabase db) {
+        return db.compileStatement("INSERT OR REPLACE INTO " + TABLE_HISTORY_CARD
+                                   + " (" + _HC_TIME + ", " + _HC_CARD + ", " + _HC_POS
+                                   + ") VALUES (?, ?, ?)");
+    }
+
+
+    /** Insert the cards of one shuffle into the history card table.
+     *  Entries that are not card ids are skipped. */
+    private static void insertCards(SQLiteStatement insert, long time, String cards) {
+        if(cards == null || cards.length() == 0) return;
+        String[] split = cards.split(",");
+        for(int pos=0; pos<split.length; pos++) {
+            long card;
+            try { card = Long.parseLong(split[pos].trim());
+            } catch(NumberFormatException e) {
+                continue;
+            }
+            insert.bindLong(1, time);
+            insert.bindLong(2, card);
+            insert.bindLong(3, pos);
+            insert.executeInsert();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ca.marklauman.dominionpicker.database;
+
+import java.util.Arrays;
+
+/** Builds {@code column IN (?,?,...)} selections with bound arguments,
+ *  in place of lists of values written into the SQL.
+ *
+ *  <p>The number of placeholders is rounded up to a power of two, and the extra arguments
+ *  repeat the last value. Lists of 9 to 16 values then share one statement, which
+ *  SQLite compiles once and keeps in its statement cache. The same list written into the
+ *  SQL would be a new statement for every supply.</p>
+ *
+ *  <p>Only whole numbers are ever bound, so a bad preference string can't change the
+ *  SQL. An empty list is bound as {@link #NONE}, which matches no card, set or cost.</p>
+ *  @author Mark Lauman */
+public abstract class InClause {
+
+    /** Bound in place of an empty list. Ids, sets and costs are never negative. */
+    public static final String NONE = "-1";
+
+
+    /** Get the number of placeholders used for a list of values
+     *  (the smallest power of two that holds them all). */
+    public static int bucket(int count) {
+        int res = 1;
+        while(res < count) res <<= 1;
+        return res;
+    }
+
+
+    /** Get the arguments for a list of values, padded out to its {@link #bucket}.
+     *  @param values The values. */
+    public static String[] args(long[] values) {
+        if(values.length == 0) return new String[]{NONE};
+        String[] res = new String[bucket(values.length)];
+        for(int i=0; i<values.length; i++)
+            res[i] = Long.toString(values[i]);
+        Arrays.fill(res, values.length, res.length, res[values.length - 1]);
+        return res;
+    }
+
+
+    /** Get the arguments for a comma separated list of values, as stored in the
+     *  preferences. Entries that are not whole numbers are left out.
+     *  @param list The values, separated by commas. */
+    public static String[] args(String list) {
+        String[] split = list.length() == 0 ? new String[0] : list.split(",");
+        long[] values = new long[split.length];
+        int size = 0;
+        for(String val : split) {
+            try { values[size] = Long.parseLong(val.trim());
+                  size++;
+            } catch(NumberFormatException ignored) {}
+        }
+        return args(Arrays.copyOf(values, size));
+    }
+
+
+    /** Get the selection for a list of arguments.
+     *  @param column The column to check.
+     *  @param args The arguments (from {@link #args(long[])} or {@link #args(String)}).
+     *  @return {@code column IN (?,?,...)}, with one placeholder per argument. */
+    public static String in(String column, String[] args) {
+        return column + " IN (" + placeholders(args.length) + ")";
+    }
+
+
+    /** Get the selection for values the column must not have.
+     *  @param column The column to check.
+     *  @param args The arguments (from {@link #args(long[])} or {@link #args(String)}).
+     *  @return {@code column NOT IN (?,?,...)}, with one placeholder per argument. */
+    public static String notIn(String column, String[] args) {
+        return column + " NOT IN (" + placeholders(args.length) + ")";
+    }
+
+
+    /** Get {@code count} placeholders, separated by commas. */
+    private static String placeholders(int count) {
+        StringBuilder res = new StringBuilder(2 * count);
+        for(int i=0; i<count; i++)
+            res.append("?,");
+        res.setLength(res.length() - 1);
+        return res.toString();
+    }
+
+
+    /** Join several lists of arguments into one, in order. */
+    public static String[] concat(String[]... args) {
+        int size = 0;
+        for(String[] part : args)
+            size += part.length;
+        String[] res = new String[size];
+        int pos = 0;
+        for(String[] part : args) {
+            System.arraycopy(part, 0, res, pos, part.length);
+            pos += part.length;
+        }
+        return res;
+    }
+}
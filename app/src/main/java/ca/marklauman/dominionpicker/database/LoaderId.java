@@ -35,5 +35,9 @@ public abstract class LoaderId {
     public static final int EXP_EDITIONS_ORDER = 15;
     /** The Expansion edition selection loader. */
     public static final int EXP_EDITION_CHOICES = 16;
+    /** The draft's deal loader. */
+    public static final int DRAFT_DEAL = 17;
+    /** The draft's card loader for the hand on display. */
+    public static final int DRAFT_HAND = 18;
 
 }
\ No newline at end of file
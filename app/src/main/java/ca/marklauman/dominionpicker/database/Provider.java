@@ -1,8 +1,11 @@
 package ca.marklauman.dominionpicker.database;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -10,8 +13,12 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
 
 import ca.marklauman.dominionpicker.BuildConfig;
+import ca.marklauman.dominionpicker.R;
+import ca.marklauman.dominionpicker.settings.Pref;
 
 /** This content provider is where all database queries in this app end up.
  *  @author Mark Lauman */
@@ -27,6 +34,8 @@ public class Provider extends ContentProvider {
     public static final String MIME_SUPPLY = AUTHORITY+".supply";
     /** Mime type for translated supplies. */
     public static final String MIME_SUPPLY_TRANS = MIME_SUPPLY +".trans";
+    /** Mime type for the cards of past supplies. */
+    public static final String MIME_HIST_CARD = MIME_SUPPLY +".card";
 
     /** Internal id for unrecognized URIs */
     private static final int ID_WTF = 0;
@@ -44,6 +53,8 @@ public class Provider extends ContentProvider {
     private static final int ID_HIST = 6;
     /** Internal id for the setEdition table's URI. */
     private static final int ID_SET_EDITION = 7;
+    /** Internal id for the history card table's URI. */
+    private static final int ID_HIST_CARD = 8;
 
     /** URI to access the card data table */
     public static final Uri URI_CARD_DATA = Uri.parse("content://"+AUTHORITY+"/cardData");
@@ -57,8 +68,15 @@ public class Provider extends ContentProvider {
     public static final Uri URI_SUPPLY = Uri.parse("content://"+AUTHORITY+"/supply");
     /** URI to access the history table */
     public static final Uri URI_HIST = Uri.parse("content://"+AUTHORITY+"/history");
+    /** {@link #URI_HIST} for inserts that never overwrite a row. A row whose timestamp is
+     *  taken is moved to the latest free timestamp before it. */
+    public static final Uri URI_HIST_KEEP = URI_HIST.buildUpon()
+                                                    .appendQueryParameter("keep", "true")
+                                                    .build();
     /** URI to access the set edition table */
     public static final Uri URI_SET_EDITION = Uri.parse("content://"+AUTHORITY+"/setEdition");
+    /** URI to access the history card table (read only). It changes with {@link #URI_HIST}. */
+    public static final Uri URI_HIST_CARD = Uri.parse("content://"+AUTHORITY+"/historyCard");
 
     /** Used to match URIs to tables. */
     UriMatcher matcher;
@@ -66,6 +84,13 @@ public class Provider extends ContentProvider {
 	private CoreDb core_db;
     /** Handle to the data database */
     private DataDb data_db;
+    /** The version of the core database ({@link R.integer#db_ver_core}). */
+    private int coreVersion;
+    /** Results of queries on the core database. */
+    private static final QueryCache coreCache = new QueryCache();
+    /** The URIs changed by the batch running on this thread ({@link #applyBatch}),
+     *  or null if no batch is running. */
+    private final ThreadLocal<HashSet<Uri>> pendingChanges = new ThreadLocal<>();
 
 
 	@Override
@@ -79,6 +104,7 @@ public class Provider extends ContentProvider {
         matcher.addURI(AUTHORITY, "supply", ID_SUPPLY);
         matcher.addURI(AUTHORITY, "history", ID_HIST);
         matcher.addURI(AUTHORITY, "setEdition", ID_SET_EDITION);
+        matcher.addURI(AUTHORITY, "historyCard", ID_HIST_CARD);
 
         // Remove old database files.
         Context c = getContext();
@@ -101,6 +127,7 @@ public class Provider extends ContentProvider {
         // get the database files
 		core_db = new CoreDb(c);
         data_db = new DataDb(c);
+        if(c != null) coreVersion = c.getResources().getInteger(R.integer.db_ver_core);
 		return true;
 	}
 
@@ -115,6 +142,7 @@ public class Provider extends ContentProvider {
             case ID_CARD_ALL: return MIME_CARD;
             case ID_SUPPLY: return MIME_SUPPLY_TRANS;
             case ID_HIST: return MIME_SUPPLY;
+            case ID_HIST_CARD: return MIME_HIST_CARD;
             default: return null;
         }
 	}
@@ -125,26 +153,27 @@ public class Provider extends ContentProvider {
 				String sortOrder) {
         SQLiteDatabase db;
         Cursor res;
+        Uri notifyUri = uri;
         switch(matcher.match(uri)) {
             case ID_CARD_DATA:
-                res = core_db.query(TableCard.TABLE_DATA, projection,
-                                    selection, selectionArgs, sortOrder, false);
+                res = queryCore(uri, TableCard.TABLE_DATA, projection,
+                                selection, selectionArgs, sortOrder, false);
                 break;
             case ID_CARD_DATA_U:
-                res = core_db.query(TableCard.TABLE_DATA, projection,
-                                    selection, selectionArgs, sortOrder, true);
+                res = queryCore(uri, TableCard.TABLE_DATA, projection,
+                                selection, selectionArgs, sortOrder, true);
                 break;
             case ID_CARD_SET:
-                res = core_db.query(TableCard.TABLE_SET, projection,
-                                    selection, selectionArgs, sortOrder, false);
+                res = queryCore(uri, TableCard.TABLE_SET, projection,
+                                selection, selectionArgs, sortOrder, false);
                 break;
             case ID_CARD_ALL:
-                res = core_db.query(TableCard.VIEW_ALL, projection,
-                                    selection, selectionArgs, sortOrder, false);
+                res = queryCore(uri, TableCard.VIEW_ALL, projection,
+                                selection, selectionArgs, sortOrder, false);
                 break;
             case ID_SUPPLY:
-                res = core_db.query(TableSupply.VIEW, projection,
-                                    selection, selectionArgs, sortOrder, false);
+                res = queryCore(uri, TableSupply.VIEW, projection,
+                                selection, selectionArgs, sortOrder, false);
                 break;
             case ID_HIST:
                 db = data_db.getReadableDatabase();
@@ -152,33 +181,70 @@ public class Provider extends ContentProvider {
                         selection, selectionArgs,
                         null, null, sortOrder);
                 break;
+            case ID_HIST_CARD:
+                db = data_db.getReadableDatabase();
+                res = db.query(DataDb.TABLE_HISTORY_CARD, projection,
+                        selection, selectionArgs,
+                        null, null, sortOrder);
+                // This changes with the history table
+                notifyUri = URI_HIST;
+                break;
             case ID_SET_EDITION:
-                res = core_db.query("setEdition", projection,
+                res = queryCore(uri, TableCard.SET_EDITION, projection,
                                 selection, selectionArgs, sortOrder, false);
                 break;
             default: return null;
         }
         Context c = getContext();
         if(c == null) return res;
-        res.setNotificationUri(c.getContentResolver(), uri);
+        res.setNotificationUri(c.getContentResolver(), notifyUri);
         return res;
 	}
 
+
+    /** Query the core database. The core database only changes when the app is
+     *  upgraded, so results are kept in {@link #coreCache} and repeated queries
+     *  are answered from there. */
+    private Cursor queryCore(Uri uri, String table, String[] projection,
+                             String selection, String[] selectionArgs,
+                             String sortOrder, boolean distinct) {
+        Context c = getContext();
+        if(c == null)
+            return core_db.query(table, projection, selection, selectionArgs,
+                                 sortOrder, distinct);
+
+        String key = QueryCache.keyOf(uri, projection, selection, selectionArgs, sortOrder);
+        Cursor res = coreCache.get(key, coreVersion, Pref.languageFilter(c));
+        if(res != null) return res;
+        Cursor result = core_db.query(table, projection, selection, selectionArgs,
+                                      sortOrder, distinct);
+        if(result == null) return null;
+        try {
+            return coreCache.put(key, result);
+        } finally {
+            result.close();
+        }
+    }
+
+
+    /** Get the cache of core database queries (to see how often it is hit). */
+    public static QueryCache getCoreCache() {
+        return coreCache;
+    }
+
 	
 	@Override
 	public Uri insert(@NonNull Uri uri, ContentValues values) {
         switch(matcher.match(uri)) {
             case ID_HIST:
+                SQLiteDatabase db = data_db.getWritableDatabase();
                 long row;
+                db.beginTransaction();
                 try {
-                    row = data_db.getReadableDatabase()
-                                 .insertOrThrow(DataDb.TABLE_HISTORY, null, values);
-                } catch (Exception e) {
-                    row = values.getAsLong(DataDb._H_TIME);
-                    int change = update(uri, values,
-                                        DataDb._H_TIME + "=?",
-                                        new String[]{"" + row});
-                    if(change < 1) row = -1L;
+                    row = upsertHistory(db, values);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
                 if(row == -1L) return null;
                 notifyChange(URI_HIST);
@@ -188,25 +254,177 @@ public class Provider extends ContentProvider {
 	}
 
 
+    /** Insert many rows at once. History rows are inserted in a single transaction,
+     *  and listeners are only notified once. Rows sent to {@link #URI_HIST_KEEP} never
+     *  overwrite another row. */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        switch(matcher.match(uri)) {
+            case ID_HIST:
+                SQLiteDatabase db = data_db.getWritableDatabase();
+                boolean keep = uri.getBooleanQueryParameter("keep", false);
+                int change = 0;
+                db.beginTransaction();
+                try {
+                    for(ContentValues row : values) {
+                        long res = keep ? insertHistory(db, row) : upsertHistory(db, row);
+                        if(res != -1L) change++;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if(0 < change) notifyChange(URI_HIST);
+                return change;
+            default: return 0;
+        }
+    }
+
+
+    /** Insert a history row without overwriting another one. If its timestamp is taken,
+     *  the row is given the latest free timestamp before it.
+     *  The row's cards are written to the history card table too,
+     *  so this should be called in a transaction.
+     *  @param db The data database.
+     *  @param row The row to write. Its timestamp may be changed.
+     *  @return The id (timestamp) of the row, or -1 if it could not be written. */
+    private static long insertHistory(SQLiteDatabase db, ContentValues row) {
+        Long time = row.getAsLong(DataDb._H_TIME);
+        if(time == null) return upsertHistory(db, row);
+        long res = -1L;
+        for(long t=time; 0 < t && res == -1L; t--) {
+            row.put(DataDb._H_TIME, t);
+            res = db.insertWithOnConflict(DataDb.TABLE_HISTORY, null, row,
+                                          SQLiteDatabase.CONFLICT_IGNORE);
+        }
+        if(res != -1L && row.containsKey(DataDb._H_CARDS))
+            DataDb.indexCards(db, res, row.getAsString(DataDb._H_CARDS));
+        return res;
+    }
+
+
+    /** Insert a history row, or overwrite the row with the same timestamp.
+     *  No exception is thrown for a row that exists.
+     *  (SQLite's own upsert is newer than most devices this runs on.)
+     *  The row's cards are written to the history card table too,
+     *  so this should be called in a transaction.
+     *  @param db The data database.
+     *  @param row The row to write.
+     *  @return The id (timestamp) of the row, or -1 if it could not be written. */
+    private static long upsertHistory(SQLiteDatabase db, ContentValues row) {
+        Long time = row.getAsLong(DataDb._H_TIME);
+        long res = db.insertWithOnConflict(DataDb.TABLE_HISTORY, null, row,
+                                           SQLiteDatabase.CONFLICT_IGNORE);
+        if(time == null) {
+            if(res == -1L) return -1L;
+            time = res;
+        } else if(res != time) {
+            // The timestamp is the row id, so a new row would have it as its id.
+            // A row with this timestamp exists. Overwrite it.
+            int change = db.update(DataDb.TABLE_HISTORY, row,
+                                   DataDb._H_TIME + "=?", new String[]{"" + time});
+            if(change < 1) return -1L;
+        }
+        if(row.containsKey(DataDb._H_CARDS))
+            DataDb.indexCards(db, time, row.getAsString(DataDb._H_CARDS));
+        return time;
+    }
+
+
+    /** Apply a batch of operations. Operations on the history table are made in a
+     *  single transaction, and listeners are notified once, after the whole batch is
+     *  committed. If the batch is rolled back, nothing changed and no one is notified. */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = data_db.getWritableDatabase();
+        HashSet<Uri> changed = new HashSet<>();
+        pendingChanges.set(changed);
+        ContentProviderResult[] res;
+        boolean committed = false;
+        try {
+            db.beginTransaction();
+            try {
+                res = super.applyBatch(operations);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            committed = true;
+        } finally {
+            pendingChanges.set(null);
+            // The changes were rolled back, so there is nothing to notify
+            if(!committed) changed.clear();
+        }
+
+        for(Uri uri : changed)
+            notifyChange(uri);
+        return res;
+    }
+
+
 	@Override
 	public int update(@NonNull Uri uri, ContentValues values,
                       String selection, String[] selectionArgs) {
         switch(matcher.match(uri)) {
             case ID_HIST:
-                int change = data_db.getReadableDatabase()
-                                    .update(DataDb.TABLE_HISTORY, values,
-                                            selection, selectionArgs);
+                SQLiteDatabase db = data_db.getWritableDatabase();
+                int change;
+                db.beginTransaction();
+                try {
+                    change = updateHistory(db, values, selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 if(0 < change) notifyChange(URI_HIST);
                 return change;
             default: return 0;
         }
 	}
-	
+
+
+
+    /** Update history rows. If their cards change, the history card table is updated
+     *  to match, so this should be called in a transaction. If only their timestamp
+     *  changes, a trigger moves their cards to the new timestamp (see {@link DataDb}).
+     *  @return The number of rows updated. */
+    private static int updateHistory(SQLiteDatabase db, ContentValues values,
+                                     String selection, String[] selectionArgs) {
+        if(!values.containsKey(DataDb._H_CARDS))
+            return db.update(DataDb.TABLE_HISTORY, values, selection, selectionArgs);
+
+        // Find the rows before they change (the selection may be on their cards)
+        long[] times;
+        Cursor c = db.query(DataDb.TABLE_HISTORY, new String[]{DataDb._H_TIME},
+                            selection, selectionArgs, null, null, null);
+        try {
+            times = new long[c.getCount()];
+            for(int i=0; c.moveToNext(); i++)
+                times[i] = c.getLong(0);
+        } finally {
+            c.close();
+        }
+
+        int change = db.update(DataDb.TABLE_HISTORY, values, selection, selectionArgs);
+        String cards = values.getAsString(DataDb._H_CARDS);
+        Long newTime = values.getAsLong(DataDb._H_TIME);
+        if(newTime != null) DataDb.indexCards(db, newTime, cards);
+        else {
+            for(long time : times)
+                DataDb.indexCards(db, time, cards);
+        }
+        return change;
+    }
+
+
 	@Override
 	public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
         switch (matcher.match(uri)) {
             case ID_HIST:
-                int change = data_db.getReadableDatabase()
+                // The history card rows are deleted by a trigger
+                int change = data_db.getWritableDatabase()
                                     .delete(DataDb.TABLE_HISTORY,
                                             selection, selectionArgs);
                 if(change != 0) notifyChange(URI_HIST);
@@ -215,8 +433,14 @@ public class Provider extends ContentProvider {
         }
     }
 
-    /** Notify all listening processes that the data at the uri has changed */
+    /** Notify all listening processes that the data at the uri has changed.
+     *  During a batch, this waits until the batch is done. */
     private void notifyChange(Uri uri) {
+        HashSet<Uri> pending = pendingChanges.get();
+        if(pending != null) {
+            pending.add(uri);
+            return;
+        }
         Context c = getContext();
         if(c == null) return;
         c.getContentResolver()
@@ -0,0 +1,112 @@
+package ca.marklauman.dominionpicker.database;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.LruCache;
+
+/** Keeps the results of recent queries on the core database, so a query that is repeated
+ *  (like a loader restarting after a rotation) does not run again. The core database is
+ *  read-only, so a result only goes out of date when the core database is upgraded.
+ *
+ *  <p>Each result is copied into a {@link CursorSnapshot}, and every hit gets its own
+ *  read-only cursor over that copy. The least recently used results are dropped once
+ *  the results hold more than {@link #MAX_CELLS} cells.</p>
+ *
+ *  <p>The cache is emptied when the core database version or the language filter
+ *  changes. Queries in another language will not be asked for again,
+ *  so there is no point keeping them.</p>
+ *  @author Mark Lauman */
+public class QueryCache {
+
+    /** The largest number of cells (rows times columns) kept in the cache. */
+    private static final int MAX_CELLS = 1 << 16;
+    /** Separates the parts of a key. */
+    private static final char SEP = '\u0000';
+    /** Stands for a null part of a key. */
+    private static final char NULL = '\u0001';
+
+    /** The results, by query. */
+    private final LruCache<String, CursorSnapshot> results =
+            new LruCache<String, CursorSnapshot>(MAX_CELLS) {
+                @Override
+                protected int sizeOf(String key, CursorSnapshot value) {
+                    return Math.max(1, value.numCells());
+                }
+            };
+    /** The core database version the results came from. */
+    private int version = -1;
+    /** The language filter in use when the results were cached. */
+    private String language = null;
+
+
+    /** Build the key of a query. */
+    static String keyOf(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        StringBuilder key = new StringBuilder(uri.toString()).append(SEP);
+        append(key, projection).append(SEP);
+        append(key, selection).append(SEP);
+        append(key, selectionArgs).append(SEP);
+        append(key, sortOrder);
+        return key.toString();
+    }
+
+    /** Add a part of a key to the key. */
+    private static StringBuilder append(StringBuilder key, String part) {
+        return part == null ? key.append(NULL) : key.append(part);
+    }
+
+    /** Add a list of parts to a key. */
+    private static StringBuilder append(StringBuilder key, String[] parts) {
+        if(parts == null) return key.append(NULL);
+        key.append(parts.length);
+        for(String part : parts)
+            append(key.append(SEP), part);
+        return key;
+    }
+
+
+    /** Get the result of a query, if it is cached.
+     *  @param key The key of the query ({@link #keyOf}).
+     *  @param curVersion The current core database version.
+     *  @param curLanguage The current language filter.
+     *  @return A new cursor over the cached result, or null if it is not cached. */
+    synchronized Cursor get(String key, int curVersion, String curLanguage) {
+        if(version != curVersion || !curLanguage.equals(language)) {
+            results.evictAll();
+            version = curVersion;
+            language = curLanguage;
+        }
+        CursorSnapshot snapshot = results.get(key);
+        return snapshot == null ? null : snapshot.newCursor();
+    }
+
+
+    /** Cache the result of a query.
+     *  @param key The key of the query ({@link #keyOf}).
+     *  @param result The result. It is copied and left open.
+     *  @return A new cursor over the cached result. */
+    Cursor put(String key, Cursor result) {
+        CursorSnapshot snapshot = new CursorSnapshot(result);
+        synchronized(this) {
+            results.put(key, snapshot);
+        }
+        return snapshot.newCursor();
+    }
+
+
+    /** The number of queries answered from the cache. */
+    public synchronized int hitCount() {
+        return results.hitCount();
+    }
+
+    /** The number of queries that had to be run. */
+    public synchronized int missCount() {
+        return results.missCount();
+    }
+
+    /** The share of queries answered from the cache, from 0 to 1. */
+    public synchronized double hitRate() {
+        int total = results.hitCount() + results.missCount();
+        return total == 0 ? 0.0 : results.hitCount() / (double) total;
+    }
+}
@@ -0,0 +1,118 @@
+package ca.marklauman.dominionpicker.database;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+
+import java.util.Arrays;
+
+import ca.marklauman.dominionpicker.shuffler.RecencyScores;
+
+/** Keeps the {@link RecencyScores} up to date with the history table, so that anti-repeat
+ *  shuffles know which cards were in recent supplies.
+ *
+ *  <p>The history table uses the time of each supply as its id. When the scores are first
+ *  asked for, only the newest {@link RecencyScores#HORIZON} supplies are read (older ones
+ *  no longer matter). After that, a {@link ContentObserver} on the history table reads
+ *  any supply newer than the last one recorded. Each supply is only read once, so the cost
+ *  does not grow with the size of the history table. Changes to supplies that were already
+ *  recorded (like a dismissed card) are not counted again.</p>
+ *
+ *  <p>New supplies are written to the history table after they are shown, so the shuffler
+ *  records them itself with {@link #record(long, long[])} as soon as they are drawn.
+ *  A shuffle made straight after another one then knows about the last supply,
+ *  even if it has not been written yet.</p>
+ *  @author Mark Lauman */
+public abstract class RecencyTracker {
+
+    /** The columns read from the history table. */
+    private static final String[] COLS_USED = {DataDb._H_TIME, DataDb._H_CARDS};
+
+    /** The scores, once they have been loaded. */
+    private static RecencyScores scores = null;
+    /** The id (time) of the newest supply recorded in the scores. */
+    private static long lastTime = Long.MIN_VALUE;
+    /** Context used to read the history table. */
+    private static Context appContext = null;
+
+
+    /** Get the recency scores. The first call reads the newest supplies from the history
+     *  table, so it should not be made on the UI thread.
+     *  @param context A context within this app.
+     *  @return The scores. These are kept up to date as supplies are added. */
+    public static synchronized RecencyScores get(Context context) {
+        if(scores != null) return scores;
+        appContext = context.getApplicationContext();
+        scores = new RecencyScores();
+
+        // Read the newest supplies, then record them from oldest to newest
+        Cursor c = appContext.getContentResolver()
+                             .query(Provider.URI_HIST, COLS_USED, null, null,
+                                    DataDb._H_TIME + " DESC LIMIT " + RecencyScores.HORIZON);
+        if(c != null) {
+            try {
+                if(c.moveToLast()) {
+                    do record(c);
+                    while(c.moveToPrevious());
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        // No handler: changes are read on the thread that made them
+        appContext.getContentResolver()
+                  .registerContentObserver(Provider.URI_HIST, true, new ContentObserver(null) {
+                      @Override
+                      public void onChange(boolean selfChange) {
+                          catchUp();
+                      }
+                  });
+        return scores;
+    }
+
+
+    /** Record a new supply before it is in the history table. When it is written to
+     *  the table, it is not recorded again. Nothing is done if the scores have not been
+     *  loaded, as they will read the supply from the table when they are.
+     *  @param time The id (time) of the supply in the history table.
+     *  @param cards The ids of the cards in the supply. */
+    public static synchronized void record(long time, long[] cards) {
+        if(scores == null || time <= lastTime) return;
+        lastTime = time;
+        scores.record(cards);
+    }
+
+
+    /** Record every supply newer than the last one recorded. */
+    private static synchronized void catchUp() {
+        Cursor c = appContext.getContentResolver()
+                             .query(Provider.URI_HIST, COLS_USED,
+                                    DataDb._H_TIME + ">?", new String[]{"" + lastTime},
+                                    DataDb._H_TIME);
+        if(c == null) return;
+        try {
+            while(c.moveToNext())
+                record(c);
+        } finally {
+            c.close();
+        }
+    }
+
+
+    /** Record the supply at the cursor's current row. */
+    private static void record(Cursor c) {
+        lastTime = c.getLong(0);
+        String cards = c.getString(1);
+        if(cards == null || cards.length() == 0) return;
+        String[] split = cards.split(",");
+        long[] ids = new long[split.length];
+        int size = 0;
+        for(String id : split) {
+            try { ids[size] = Long.parseLong(id.trim());
+                  size++;
+            } catch(NumberFormatException ignored) {}
+        }
+        scores.record(Arrays.copyOf(ids, size));
+    }
+}
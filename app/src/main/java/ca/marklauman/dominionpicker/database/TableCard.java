@@ -1,8 +1,7 @@
 package ca.marklauman.dominionpicker.database;
 
-import android.provider.BaseColumns;
-
 /** Describes the card tables that are accessible through the ContentProvider.
+ *  This class does not use any android classes, so the shuffler can use it off-device.
  *  @author Mark Lauman */
 public abstract class TableCard {
     /** The _ID value of the Black Market card. */
@@ -34,8 +33,9 @@ public abstract class TableCard {
     public static final String _PROMO = "promotional";
 
 
-    /** Unique card identifier. From the cardTrans and cardData tables. */
-    public static final String _ID = BaseColumns._ID;
+    /** Unique card identifier. From the cardTrans and cardData tables.
+     *  Same as {@code BaseColumns._ID}. */
+    public static final String _ID = "_id";
     /** Column for the name of a card.  From the cardTrans table. */
     public static final String _NAME = "name";
     /** Column for the type of the card (as printed). From the cardTrans table. */
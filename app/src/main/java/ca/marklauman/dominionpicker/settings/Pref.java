@@ -46,6 +46,28 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
     public static final String FILT_CARD = "filt_card";
     /** Filter used to specify required cards. */
     public static final String REQ_CARDS = "req_cards";
+    /** Weight given to each set when shuffling, by set id. Stored as a comma separated
+     *  list of weights. Blank entries have the default weight.
+     *  Set on the rules screen. */
+    public static final String WEIGHT_SET = "weight_set";
+    /** Weights given to specific cards when shuffling. These override the weight of the
+     *  card's set. Stored as a comma separated list of {@code id:weight} pairs.
+     *  Set from the menu of the card details screen. */
+    public static final String WEIGHT_CARD = "weight_card";
+
+    /** Shuffle rule: supplies must have a card that gives +Buy. */
+    public static final String RULE_BUY = "rule_buy";
+    /** Shuffle rule: supplies must have a village (a card giving +2 Actions). */
+    public static final String RULE_VILLAGE = "rule_village";
+    /** Shuffle rule: supplies may have no more than 2 attacks. */
+    public static final String RULE_ATTACKS = "rule_attacks";
+    /** Shuffle rule: supplies must have a card costing each of 2, 3, 4 and 5 coins. */
+    public static final String RULE_COST_SPREAD = "rule_cost_spread";
+    /** Shuffle rule: supplies must have at least 2 cards costing 2-3, 4 costing 4-5
+     *  and 1 costing 6 or more. */
+    public static final String RULE_COST_CURVE = "rule_cost_curve";
+    /** Shuffle rule: cards from recent supplies are drawn less often. */
+    public static final String RULE_ANTI_REPEAT = "rule_anti_repeat";
 
     /** Filter used to provide the correct card translation for each set.
      *  This is computed from {@link #FILT_LANG} and {@link #APP_LANG}
@@ -137,6 +159,7 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
         get(appContext).unregisterOnSharedPreferenceChangeListener(listener);
     }
 
+
     /** Retrieves the current language filter ({@link #COMP_LANG}). */
     public static String languageFilter(Context context) {
         return get(context).getString(COMP_LANG, "");
@@ -176,6 +199,8 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
             case 6: update6(pref);
             case 7: update7(pref);
             case 8: // v8 -> v9 adds expansion_editions. Setting default values is all that is needed.
+            case 9: // v9 -> v10 adds weight_set and weight_card. Setting default values is all that is needed.
+            case 10: // v10 -> v11 adds the shuffle rules. Setting default values is all that is needed.
         }
         pref.edit().putInt(VERSION, res.getInteger(R.integer.pref_version))
             .apply();
@@ -218,10 +243,23 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
             if(rawTrans[i].equals("0"))
                 rawTrans[i] = defTrans[i];
 
+        // Apply the filter to the COMP_LANG preference.
+        String compTrans = buildLanguageFilter(rawTrans);
+        if(!compTrans.equals(pref.getString(COMP_LANG, "")))
+            pref.edit()
+                .putString(COMP_LANG, compTrans)
+                .apply();
+    }
+
+
+    /** Build the language filter ({@link #COMP_LANG}) from the language of each set.
+     *  @param setLanguages The language of each set, by set id.
+     *  @return The SQL selection that picks the translation of each set. */
+    public static String buildLanguageFilter(String[] setLanguages) {
         // Group sets together by language
         HashMap<String, String> transMap = new HashMap<>(2);
-        for(int set=0; set<rawTrans.length; set++) {
-            String lang = rawTrans[set];
+        for(int set=0; set<setLanguages.length; set++) {
+            String lang = setLanguages[set];
             if(!transMap.containsKey(lang))
                 transMap.put(lang, "");
             transMap.put(lang, transMap.get(lang)+","+set);
@@ -238,12 +276,7 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
                      .append(transMap.get(lang).substring(1))
                      .append("))");
         compTrans.append(')');
-
-        // Apply that filter to the COMP_LANG preference.
-        if(!compTrans.toString().equals(pref.getString(COMP_LANG, "")))
-            pref.edit()
-                .putString(COMP_LANG, compTrans.toString())
-                .apply();
+        return compTrans.toString();
     }
 
 
@@ -292,23 +325,33 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
         Resources res = context.getResources();
         SharedPreferences pref = get(context);
 
-        String filter = "(uniqueToEdition is NULL";
-
         String editions[] = pref.getString(Pref.EXPANSION_EDITIONS, "").split(",");
+        String filter = buildEditionFilter(editions,
+                                           res.getInteger(R.integer.expansion_editions_all));
+
+        SharedPreferences.Editor edit = pref.edit();
+        edit.putString(Pref.FILT_EDITION, filter);
+        edit.commit();
+
+    }
+
+
+    /** Build the edition filter ({@link #FILT_EDITION}) from the edition chosen for each set.
+     *  @param editions The edition of each set, by set id.
+     *  @param allEditions The value of a set that uses every edition.
+     *  @return The SQL selection that hides cards from the other editions. */
+    public static String buildEditionFilter(String[] editions, int allEditions) {
+        String filter = "(uniqueToEdition is NULL";
         for (int set_id = 0; set_id < editions.length; set_id++) {
             //Need to look for all sets, even if it's set to all editions, otherwise it will only return cards that are in all editions of that set.
             //But wee only need to look at the UNIQUE_TO_EDITION value if the user chose a specific edition.
             filter += " OR (" + TableCard._SET_ID + '=' + set_id;
-            if (Integer.parseInt(editions[set_id]) != res.getInteger(R.integer.expansion_editions_all))
+            if (Integer.parseInt(editions[set_id]) != allEditions)
                 filter += " AND " + TableCard._UNIQUE_TO_EDITION + '=' + editions[set_id];
             filter +=  ")";
         }
         filter += " ) ";
-
-        SharedPreferences.Editor edit = pref.edit();
-        edit.putString(Pref.FILT_EDITION, filter);
-        edit.commit();
-
+        return filter;
     }
 
 
@@ -338,6 +381,22 @@ public abstract class Pref implements OnSharedPreferenceChangeListener {
             edit.putString(FILT_CARD, "");
         if(!prefs.contains(REQ_CARDS))
             edit.putString(REQ_CARDS, "");
+        if(!prefs.contains(WEIGHT_SET))
+            edit.putString(WEIGHT_SET, "");
+        if(!prefs.contains(WEIGHT_CARD))
+            edit.putString(WEIGHT_CARD, "");
+        if(!prefs.contains(RULE_BUY))
+            edit.putBoolean(RULE_BUY, false);
+        if(!prefs.contains(RULE_VILLAGE))
+            edit.putBoolean(RULE_VILLAGE, false);
+        if(!prefs.contains(RULE_ATTACKS))
+            edit.putBoolean(RULE_ATTACKS, false);
+        if(!prefs.contains(RULE_COST_SPREAD))
+            edit.putBoolean(RULE_COST_SPREAD, false);
+        if(!prefs.contains(RULE_COST_CURVE))
+            edit.putBoolean(RULE_COST_CURVE, false);
+        if(!prefs.contains(RULE_ANTI_REPEAT))
+            edit.putBoolean(RULE_ANTI_REPEAT, false);
         if (!prefs.contains(EXPANSION_EDITIONS))
             edit.putString(EXPANSION_EDITIONS, res.getString(R.string.expansion_editions_def));
         if(!prefs.contains(ACTIVE_TAB))
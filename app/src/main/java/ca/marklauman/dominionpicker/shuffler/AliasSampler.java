@@ -0,0 +1,185 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Random;
+
+/** Draws weighted entrants using Vose's alias method. Use this instead of a
+ *  {@link RafflePool} when the weights do not change during a draw session
+ *  (per-set weights, for example). Building the sampler takes O(n) time, and each
+ *  draw takes O(1) time no matter how many entrants there are.
+ *
+ *  <p>Entrants are identified by their position in the weight array given to the
+ *  constructor. {@link #sample()} draws with replacement. {@link #draw()} draws without
+ *  replacement: drawn entrants are rejected if they come up again, and once half of
+ *  the weight in the table has been drawn the table is rebuilt without them. This keeps
+ *  the expected number of tries per draw below 2. {@link #reset()} puts every entrant
+ *  back into the pool.</p>
+ *
+ *  <p>This class is not thread safe.</p>
+ *  @author Mark Lauman */
+@SuppressWarnings("unused")
+public class AliasSampler {
+
+    /** Random instance used to draw entrants. */
+    private final Random random;
+    /** The weight of each entrant. */
+    private final int[] weights;
+    /** True for each entrant that has been drawn by {@link #draw()}. */
+    private final boolean[] drawn;
+    /** The entrants drawn since the last reset, in the order they were drawn. */
+    private final int[] drawnList;
+    /** Number of entries in {@link #drawnList}. */
+    private int numDrawn = 0;
+
+    /** The entrant in each slot of the table. */
+    private final int[] members;
+    /** The chance of keeping each slot's own entrant instead of its alias. */
+    private final double[] prob;
+    /** The slot to use when a slot's own entrant is not kept. */
+    private final int[] alias;
+    /** Scratch space for building the table. */
+    private final int[] work;
+    /** Number of slots in the table. */
+    private int tableSize;
+    /** Total weight of the entrants in the table. */
+    private long tableWeight;
+    /** Weight of the entrants that are in the table, but have been drawn. */
+    private long rejectedWeight;
+    /** True if the table was last built with every entrant in it. */
+    private boolean fullTable;
+
+
+    /** Create a new sampler and build its table.
+     *  @param weights The weight of each entrant. Entrants with a weight of 0 are never drawn.
+     *                 This array is copied, so changes to it do not affect the sampler.
+     *  @param random The random number generator used for draws. */
+    public AliasSampler(int[] weights, Random random) {
+        this.random = random;
+        this.weights = weights.clone();
+        for(int weight : weights) {
+            if(weight < 0)
+                throw new IllegalArgumentException("weights must not be negative");
+        }
+        int n = weights.length;
+        drawn = new boolean[n];
+        drawnList = new int[n];
+        members = new int[n];
+        prob = new double[n];
+        alias = new int[n];
+        work = new int[n];
+        build();
+    }
+
+
+    /** Get the number of entrants given to this sampler. */
+    public int size() {
+        return weights.length;
+    }
+
+    /** Get the number of entrants drawn since the last reset. */
+    public int numDrawn() {
+        return numDrawn;
+    }
+
+    /** Get the weight of the entrants that can still be drawn with {@link #draw()}. */
+    public long remainingWeight() {
+        return tableWeight - rejectedWeight;
+    }
+
+    /** Check if an entrant has been drawn since the last reset. */
+    public boolean isDrawn(int entrant) {
+        return drawn[entrant];
+    }
+
+
+    /** Draw an entrant at random, weighted by their weights. The entrant is not removed,
+     *  so it may be drawn again. Entrants drawn with {@link #draw()} are not returned
+     *  until the sampler is {@link #reset()}.
+     *  @return The entrant's position in the weight array, or -1 if there are none. */
+    public int sample() {
+        if(remainingWeight() == 0) return -1;
+        int entrant;
+        do {
+            entrant = sampleTable();
+        } while(drawn[entrant]);
+        return entrant;
+    }
+
+
+    /** Draw an entrant at random, weighted by their weights, and remove it from the pool.
+     *  @return The entrant's position in the weight array,
+     *  or -1 if there are no entrants left to draw. */
+    public int draw() {
+        int entrant = sample();
+        if(entrant == -1) return -1;
+        drawn[entrant] = true;
+        drawnList[numDrawn++] = entrant;
+        rejectedWeight += weights[entrant];
+
+        // Rebuild without the drawn entrants once they make up half the table
+        if(tableWeight <= 2 * rejectedWeight)
+            build();
+        return entrant;
+    }
+
+
+    /** Put every drawn entrant back into the pool. If the table has not been rebuilt
+     *  since the last reset, this only takes as long as the number of entrants drawn. */
+    public void reset() {
+        for(int i=0; i<numDrawn; i++)
+            drawn[drawnList[i]] = false;
+        numDrawn = 0;
+        if(fullTable) rejectedWeight = 0;
+        else build();
+    }
+
+
+    /** Draw a slot from the table, and return the entrant it picked. */
+    private int sampleTable() {
+        int slot = random.nextInt(tableSize);
+        if(prob[slot] <= random.nextDouble())
+            slot = alias[slot];
+        return members[slot];
+    }
+
+
+    /** Build the alias table from all entrants that have not been drawn (Vose's method). */
+    private void build() {
+        // Find the entrants that go in the table
+        int n = 0;
+        long sum = 0;
+        for(int i=0; i<weights.length; i++) {
+            if(drawn[i] || weights[i] == 0) continue;
+            members[n++] = i;
+            sum += weights[i];
+        }
+        tableSize = n;
+        tableWeight = sum;
+        rejectedWeight = 0;
+        fullTable = numDrawn == 0;
+        if(n == 0) return;
+
+        // Sort the slots into small (prob < 1) and large (prob >= 1).
+        // The small stack grows up from the start of work, the large stack down from the end.
+        int small = 0, large = n;
+        for(int slot=0; slot<n; slot++) {
+            prob[slot] = (double) weights[members[slot]] * n / sum;
+            alias[slot] = slot;
+            if(prob[slot] < 1.0) work[small++] = slot;
+            else work[--large] = slot;
+        }
+
+        // Fill each small slot with part of a large slot
+        while(0 < small && large < n) {
+            int less = work[--small];
+            int more = work[large++];
+            alias[less] = more;
+            prob[more] = (prob[more] + prob[less]) - 1.0;
+            if(prob[more] < 1.0) work[small++] = more;
+            else work[--large] = more;
+        }
+
+        // Anything left over is full (rounding error aside)
+        while(large < n) prob[work[large++]] = 1.0;
+        while(0 < small) prob[work[--small]] = 1.0;
+    }
+}
@@ -0,0 +1,287 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/** An immutable, in-memory snapshot of the card data table.
+ *  Each attribute is stored in its own primitive column, and each card is referred to
+ *  by its position (index) in the catalog. Indexes are ordered by card id.
+ *
+ *  <p>For fast set operations, the cards with each flag and each coin cost are also
+ *  stored as bitsets (one bit per card index). These are built once, with the catalog.</p>
+ *
+ *  <p>Catalogs are built with a {@link CardCatalog.Builder}. They contain no android
+ *  classes, so they can be used off-device.</p>
+ *  @author Mark Lauman */
+public class CardCatalog {
+
+    /** Flag for event cards. */
+    public static final int FLAG_EVENT = 1;
+    /** Flag for landmark cards. */
+    public static final int FLAG_LANDMARK = 1 << 1;
+    /** Flag for cards that give out curses. */
+    public static final int FLAG_CURSER = 1 << 2;
+    /** Flag for attack cards. */
+    public static final int FLAG_ATTACK = 1 << 3;
+    /** Flag for cards whose printed cost is a plain number (like "2" but not "2+" or "8*"). */
+    public static final int FLAG_PLAIN_COST = 1 << 4;
+    /** Flag for cards that give +Buy. */
+    public static final int FLAG_PLUS_BUY = 1 << 5;
+    /** Flag for villages (cards that give +2 Actions or more). */
+    public static final int FLAG_VILLAGE = 1 << 6;
+    /** Number of flags defined above. */
+    private static final int NUM_FLAGS = 7;
+    /** Flags that mark a card as something other than a kingdom card. */
+    private static final int FLAGS_SPECIAL = FLAG_EVENT | FLAG_LANDMARK;
+
+    /** The id of each card. Sorted from lowest to highest. */
+    private final long[] ids;
+    /** The set id of each card. */
+    private final int[] setIds;
+    /** The cost of each card (in coins). */
+    private final int[] costVals;
+    /** The debt cost of each card. */
+    private final int[] debts;
+    /** The number of potions needed to buy each card. */
+    private final int[] potions;
+    /** The flags set on each card. A combination of the FLAG values in this class. */
+    private final int[] flags;
+    /** The only edition of its set that each card is in (0 if it is in every edition). */
+    private final int[] editions;
+    /** The cards with each flag, indexed by the flag's bit position. */
+    private final BitSet[] flagSets;
+    /** The cards with each coin cost, indexed by cost. */
+    private final BitSet[] costSets;
+    /** The kingdom cards (cards that are not events or landmarks). */
+    private final BitSet kingdomSet;
+
+
+    /** Constructor used by the {@link Builder}. The arrays are not copied. */
+    private CardCatalog(long[] ids, int[] setIds, int[] costVals,
+                        int[] debts, int[] potions, int[] flags, int[] editions) {
+        this.ids = ids;
+        this.setIds = setIds;
+        this.costVals = costVals;
+        this.debts = debts;
+        this.potions = potions;
+        this.flags = flags;
+        this.editions = editions;
+
+        // Build the bitsets
+        int maxCost = 0;
+        for(int cost : costVals)
+            maxCost = Math.max(maxCost, cost);
+        flagSets = new BitSet[NUM_FLAGS];
+        for(int bit=0; bit<NUM_FLAGS; bit++)
+            flagSets[bit] = new BitSet(ids.length);
+        costSets = new BitSet[maxCost+1];
+        for(int cost=0; cost<=maxCost; cost++)
+            costSets[cost] = new BitSet(ids.length);
+        kingdomSet = new BitSet(ids.length);
+        for(int card=0; card<ids.length; card++) {
+            for(int bit=0; bit<NUM_FLAGS; bit++)
+                if((flags[card] & (1 << bit)) != 0) flagSets[bit].set(card);
+            if(0 <= costVals[card]) costSets[costVals[card]].set(card);
+            if(!isSpecial(card)) kingdomSet.set(card);
+        }
+    }
+
+
+    /** Get the number of cards in the catalog. */
+    public int size() {
+        return ids.length;
+    }
+
+    /** Find the index of a card in this catalog.
+     *  @param id The id of the card.
+     *  @return The index of that card, or -1 if it is not in the catalog. */
+    public int indexOf(long id) {
+        int res = Arrays.binarySearch(ids, id);
+        return res < 0 ? -1 : res;
+    }
+
+    /** Get the id of the card at this index. */
+    public long getId(int card) {
+        return ids[card];
+    }
+
+    /** Get the set id of the card at this index. */
+    public int getSet(int card) {
+        return setIds[card];
+    }
+
+    /** Get the cost (in coins) of the card at this index. */
+    public int getCost(int card) {
+        return costVals[card];
+    }
+
+    /** Get the debt cost of the card at this index. */
+    public int getDebt(int card) {
+        return debts[card];
+    }
+
+    /** Get the potion cost of the card at this index. */
+    public int getPotion(int card) {
+        return potions[card];
+    }
+
+    /** Get the only edition of its set that the card at this index is in.
+     *  @return The edition, or 0 if the card is in every edition of its set. */
+    public int getEdition(int card) {
+        return editions[card];
+    }
+
+    /** Check if the card at this index has the given flag.
+     *  @param card The index of the card.
+     *  @param flag One of the FLAG values in this class. */
+    public boolean hasFlag(int card, int flag) {
+        return (flags[card] & flag) != 0;
+    }
+
+    /** Check if the card at this index is a special card (event or landmark)
+     *  rather than a kingdom card. */
+    public boolean isSpecial(int card) {
+        return (flags[card] & FLAGS_SPECIAL) != 0;
+    }
+
+
+    /** Get the cards that have a flag.
+     *  @param flag One of the FLAG values in this class.
+     *  @return The index of every card with that flag. This is a copy, and may be changed. */
+    public BitSet withFlag(int flag) {
+        return (BitSet) flagSets[Integer.numberOfTrailingZeros(flag)].clone();
+    }
+
+    /** Get the cards that cost a given number of coins.
+     *  @param cost The cost in coins.
+     *  @return The index of every card with that cost. This is a copy, and may be changed. */
+    public BitSet withCost(int cost) {
+        if(cost < 0 || costSets.length <= cost) return new BitSet();
+        return (BitSet) costSets[cost].clone();
+    }
+
+    /** Get the kingdom cards (every card that is not an event or landmark).
+     *  @return The index of every kingdom card. This is a copy, and may be changed. */
+    public BitSet kingdomCards() {
+        return (BitSet) kingdomSet.clone();
+    }
+
+
+    @Override
+    public String toString() {
+        return "CardCatalog{" + ids.length + " cards}";
+    }
+
+
+    /** Used to build a {@link CardCatalog} one card at a time.
+     *  Cards may be added in any order. */
+    public static class Builder {
+        /** Number of cards added so far. */
+        private int size = 0;
+        /** Card ids, in the order they were added. */
+        private long[] ids;
+        /** Set ids, in the order they were added. */
+        private int[] setIds;
+        /** Coin costs, in the order they were added. */
+        private int[] costVals;
+        /** Debt costs, in the order they were added. */
+        private int[] debts;
+        /** Potion costs, in the order they were added. */
+        private int[] potions;
+        /** Card flags, in the order they were added. */
+        private int[] flags;
+        /** Unique editions, in the order they were added. */
+        private int[] editions;
+
+        /** Create a builder for a catalog of roughly the given size.
+         *  @param capacity The expected number of cards. */
+        public Builder(int capacity) {
+            if(capacity < 1) capacity = 1;
+            ids = new long[capacity];
+            setIds = new int[capacity];
+            costVals = new int[capacity];
+            debts = new int[capacity];
+            potions = new int[capacity];
+            flags = new int[capacity];
+            editions = new int[capacity];
+        }
+
+        /** Add a card to the catalog.
+         *  @param id The card's id.
+         *  @param setId The id of the card's expansion.
+         *  @param costVal The card's cost in coins.
+         *  @param debt The card's debt cost.
+         *  @param potion The card's potion cost.
+         *  @param cardFlags A combination of the FLAG values in {@link CardCatalog}.
+         *  @return This builder. */
+        public Builder add(long id, int setId, int costVal, int debt, int potion, int cardFlags) {
+            return add(id, setId, costVal, debt, potion, cardFlags, 0);
+        }
+
+        /** Add a card that is only in one edition of its set to the catalog.
+         *  @param id The card's id.
+         *  @param setId The id of the card's expansion.
+         *  @param costVal The card's cost in coins.
+         *  @param debt The card's debt cost.
+         *  @param potion The card's potion cost.
+         *  @param cardFlags A combination of the FLAG values in {@link CardCatalog}.
+         *  @param edition The only edition of the set with this card (0 for every edition).
+         *  @return This builder. */
+        public Builder add(long id, int setId, int costVal, int debt, int potion,
+                           int cardFlags, int edition) {
+            if(size == ids.length) grow();
+            ids[size] = id;
+            setIds[size] = setId;
+            costVals[size] = costVal;
+            debts[size] = debt;
+            potions[size] = potion;
+            flags[size] = cardFlags;
+            editions[size] = edition;
+            size++;
+            return this;
+        }
+
+        /** Double the capacity of the builder. */
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            setIds = Arrays.copyOf(setIds, capacity);
+            costVals = Arrays.copyOf(costVals, capacity);
+            debts = Arrays.copyOf(debts, capacity);
+            potions = Arrays.copyOf(potions, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            editions = Arrays.copyOf(editions, capacity);
+        }
+
+        /** Build the catalog. The builder should not be used after this is called. */
+        public CardCatalog build() {
+            // Sort the cards by id so they can be found with a binary search.
+            Integer[] order = new Integer[size];
+            for(int i=0; i<size; i++) order[i] = i;
+            final long[] unsorted = ids;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    long idA = unsorted[a], idB = unsorted[b];
+                    return idA < idB ? -1 : (idA == idB ? 0 : 1);
+                }
+            });
+
+            long[] sIds = new long[size];
+            int[] sSets = new int[size], sCosts = new int[size], sDebts = new int[size],
+                  sPotions = new int[size], sFlags = new int[size], sEditions = new int[size];
+            for(int i=0; i<size; i++) {
+                int from = order[i];
+                sIds[i] = ids[from];
+                sSets[i] = setIds[from];
+                sCosts[i] = costVals[from];
+                sDebts[i] = debts[from];
+                sPotions[i] = potions[from];
+                sFlags[i] = flags[from];
+                sEditions[i] = editions[from];
+            }
+            return new CardCatalog(sIds, sSets, sCosts, sDebts, sPotions, sFlags, sEditions);
+        }
+    }
+}
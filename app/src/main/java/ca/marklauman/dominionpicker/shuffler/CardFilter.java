@@ -0,0 +1,108 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.BitSet;
+
+/** The filters that hide cards from the picker (by set, cost, debt, potions, curse givers
+ *  and edition), read from their preference strings. This is the same filter that the
+ *  picker applies in SQL, but it can be checked against the {@link CardCatalog} without
+ *  querying the database.
+ *  @author Mark Lauman */
+public class CardFilter {
+
+    /** Value in the editions list that allows every edition of a set. */
+    public static final int EDITION_ALL = -1;
+
+    /** Ids of the sets that are allowed. */
+    private final BitSet sets;
+    /** Coin costs that are filtered out. */
+    private final BitSet costs;
+    /** Debt costs that are filtered out. */
+    private final BitSet debts;
+    /** True if cards with potions are allowed. */
+    private final boolean potions;
+    /** True if curse givers are allowed. */
+    private final boolean cursers;
+    /** The edition chosen for each set (by set id), or {@link #EDITION_ALL}. */
+    private final int[] editions;
+
+
+    /** Read a filter from its preference strings.
+     *  @param sets Comma separated ids of the sets that are allowed.
+     *  @param costs Comma separated coin costs that are filtered out.
+     *  @param debts Comma separated debt costs that are filtered out.
+     *  @param potions True if cards with potions are allowed.
+     *  @param cursers True if curse givers are allowed.
+     *  @param editions Comma separated list of the edition chosen for each set,
+     *                  in order of set id ({@link #EDITION_ALL} for every edition). */
+    public CardFilter(String sets, String costs, String debts,
+                      boolean potions, boolean cursers, String editions) {
+        this.sets = parseSet(sets);
+        this.costs = parseSet(costs);
+        this.debts = parseSet(debts);
+        this.potions = potions;
+        this.cursers = cursers;
+        String[] raw = editions.length() == 0 ? new String[0] : editions.split(",");
+        this.editions = new int[raw.length];
+        for(int set=0; set<raw.length; set++) {
+            try { this.editions[set] = Integer.parseInt(raw[set].trim());
+            } catch(NumberFormatException e) {
+                this.editions[set] = EDITION_ALL;
+            }
+        }
+    }
+
+
+    /** Parse a comma separated list of small positive numbers into a bitset.
+     *  Invalid entries are ignored. */
+    private static BitSet parseSet(String list) {
+        BitSet res = new BitSet();
+        if(list.length() == 0) return res;
+        for(String val : list.split(",")) {
+            try {
+                int num = Integer.parseInt(val.trim());
+                if(0 <= num) res.set(num);
+            } catch(NumberFormatException ignored) {}
+        }
+        return res;
+    }
+
+
+    /** Find every card in a catalog that passes this filter.
+     *  @param catalog The catalog to check.
+     *  @return The index of every card that passes. */
+    public BitSet compile(CardCatalog catalog) {
+        BitSet res = new BitSet(catalog.size());
+        for(int card=0; card<catalog.size(); card++)
+            if(passes(catalog, card)) res.set(card);
+        return res;
+    }
+
+
+    /** Check if a card passes this filter.
+     *  @param catalog The catalog the card comes from.
+     *  @param card The index of the card in the catalog. */
+    public boolean passes(CardCatalog catalog, int card) {
+        return passes(catalog.getSet(card), catalog.getCost(card), catalog.getDebt(card),
+                      catalog.getPotion(card), catalog.hasFlag(card, CardCatalog.FLAG_CURSER),
+                      catalog.getEdition(card));
+    }
+
+
+    /** Check if a card with these properties passes this filter.
+     *  @param set The id of the card's set.
+     *  @param cost The card's cost in coins.
+     *  @param debt The card's debt cost.
+     *  @param potion The card's potion cost.
+     *  @param curser True if the card gives curses.
+     *  @param edition The only edition of its set the card is in (0 for every edition). */
+    public boolean passes(int set, int cost, int debt, int potion, boolean curser, int edition) {
+        if(set < 0 || !sets.get(set)) return false;
+        if(0 < potion && !potions) return false;
+        if(0 <= cost && costs.get(cost)) return false;
+        if(0 <= debt && debts.get(debt)) return false;
+        if(curser && !cursers) return false;
+        if(edition == 0) return true;
+        return set < editions.length
+               && (editions[set] == EDITION_ALL || editions[set] == edition);
+    }
+}
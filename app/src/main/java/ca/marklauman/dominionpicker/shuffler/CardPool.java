@@ -0,0 +1,528 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/** The cards that a supply may be shuffled from, split into cards that must be in the
+ *  supply and cards that may be drawn into it. The optional cards may be given weights,
+ *  in which case they are drawn from an {@link IntRafflePool} instead of being shuffled.
+ *  If the pool has a {@link ConstraintSolver}, the kingdom cards are picked by the solver
+ *  so that they meet its rules. A weighted pool may also be given {@link RecencyScores},
+ *  which lower the weight of cards seen in recent supplies.
+ *
+ *  <p>{@link #fill(ShuffleSupply, Random)} shuffles the pool in place and puts it back
+ *  in its original order afterwards, so the same random seed always gives the same
+ *  supply. Because of this, a pool is not thread safe. Threads that shuffle at the same
+ *  time should each use their own {@link #copy()}.</p>
+ *  @author Mark Lauman */
+public class CardPool {
+
+    /** The number of times the solver is run (each time with a new random order)
+     *  before a pool gives up on the shuffle rules. */
+    public static final int SOLVE_ATTEMPTS = 3;
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+    /** Catalog indexes of the cards that must be in the supply. */
+    private final int[] required;
+    /** Catalog indexes of the cards that may be drawn into the supply. */
+    private final int[] optional;
+    /** The weight of each optional card, or null if every card has the same weight. */
+    private final int[] weights;
+    /** Raffle holding the optional cards with weight. Only used for weighted pools. */
+    private final IntRafflePool raffle;
+    /** The tickets of each card in the raffle, by raffle handle. */
+    private final int[] raffleWeights;
+    /** The raffle handle of each optional card (-1 for cards without weight). */
+    private final int[] handles;
+    /** The position each card was swapped from during a draw (or the raffle handle of each
+     *  card drawn, for weighted pools). Used to undo the draw. */
+    private final int[] picks;
+    /** Picks the kingdom cards so they meet the shuffle rules. Null if there are no rules. */
+    private ConstraintSolver solver = null;
+    /** Draws the kingdom cards to a cost curve. Null if there is no cost curve. */
+    private StratifiedSampler sampler = null;
+    /** The cards that may fill each side pile. */
+    private final SidePile.Index sidePiles;
+    /** Lowers the weight of recently seen cards. Null if weights are used as they are. */
+    private RecencyScores recency = null;
+    /** The {@link RecencyScores#version()} that the raffle tickets were set from. */
+    private long recencyVersion = -1L;
+
+
+    /** Create a new pool.
+     *  @param catalog The catalog the cards come from.
+     *  @param required Catalog indexes of cards that must be in the supply.
+     *  @param optional Catalog indexes of cards that may be drawn into the supply. */
+    public CardPool(CardCatalog catalog, int[] required, int[] optional) {
+        this(catalog, required, optional, null);
+    }
+
+
+    /** Create a new weighted pool.
+     *  @param catalog The catalog the cards come from.
+     *  @param required Catalog indexes of cards that must be in the supply.
+     *  @param optional Catalog indexes of cards that may be drawn into the supply.
+     *  @param weights The weight of each optional card (see {@link CardWeights}),
+     *                 or null to give every card the same weight. */
+    public CardPool(CardCatalog catalog, int[] required, int[] optional, int[] weights) {
+        this.catalog = catalog;
+        this.required = required;
+        this.optional = optional;
+        this.weights = weights;
+        picks = new int[Math.max(required.length, optional.length)];
+
+        // Side piles may come from any card that can be drawn
+        BitSet drawable = new BitSet(catalog.size());
+        for(int card : required)
+            drawable.set(card);
+        for(int i=0; i<optional.length; i++)
+            if(weights == null || 0 < weights[i]) drawable.set(optional[i]);
+        sidePiles = new SidePile.Index(catalog, drawable);
+
+        if(weights == null) {
+            raffle = null;
+            raffleWeights = null;
+            handles = null;
+            return;
+        }
+
+        // Cards without weight are never drawn, so they are left out of the raffle.
+        // Draws always pass in their own random source, so the raffle does not get one.
+        raffle = new IntRafflePool(optional.length, null);
+        raffleWeights = new int[optional.length];
+        handles = new int[optional.length];
+        for(int i=0; i<optional.length; i++) {
+            handles[i] = -1;
+            if(0 < weights[i]) {
+                handles[i] = raffle.add(weights[i], optional[i]);
+                raffleWeights[handles[i]] = weights[i];
+            }
+        }
+    }
+
+
+    /** Constructor used by {@link #copy()}. The catalog, weights, raffle handles and side
+     *  pile index never change after a pool is made, so they are shared. Only the state
+     *  that a draw changes is copied. The raffle tickets are copied along with the
+     *  recency version they were set from, so a copy only sets them again if the
+     *  scores have changed since. */
+    private CardPool(CardPool other) {
+        catalog = other.catalog;
+        required = Arrays.copyOf(other.required, other.required.length);
+        optional = Arrays.copyOf(other.optional, other.optional.length);
+        weights = other.weights;
+        handles = other.handles;
+        sidePiles = other.sidePiles;
+        picks = new int[other.picks.length];
+        raffle = other.raffle == null ? null : other.raffle.copy();
+        raffleWeights = other.raffleWeights == null ? null
+                        : Arrays.copyOf(other.raffleWeights, other.raffleWeights.length);
+        if(other.solver != null) solver = other.solver.copy();
+        if(other.sampler != null) sampler = other.sampler.copy();
+        recency = other.recency;
+        recencyVersion = other.recencyVersion;
+    }
+
+
+    /** Get a copy of this pool that may be used on another thread. */
+    public CardPool copy() {
+        return new CardPool(this);
+    }
+
+
+    /** Set the solver used to pick kingdom cards that meet the shuffle rules.
+     *  @param solver The solver, or null to draw cards without rules. */
+    public void setSolver(ConstraintSolver solver) {
+        this.solver = solver;
+    }
+
+
+    /** Set the sampler used to draw kingdom cards to a cost curve.
+     *  The sampler is used instead of the solver, so it should only be set if
+     *  the cost curve is the only rule. It draws every card evenly, so it should
+     *  not be set on a weighted pool. The solver is still used to replace cards
+     *  (see {@link #newSession}), so it should include the cost curve.
+     *  @param sampler The sampler, or null to draw cards without a cost curve. */
+    public void setSampler(StratifiedSampler sampler) {
+        this.sampler = sampler;
+    }
+
+
+    /** Set the scores used to lower the weight of recently seen cards. The scores are
+     *  read again before each draw if they have changed since the last one.
+     *  Only weighted pools use the scores, and the {@link StratifiedSampler} ignores them.
+     *  @param recency The scores, or null to use the weights as they are. */
+    public void setRecency(RecencyScores recency) {
+        this.recency = recency;
+        recencyVersion = -1L;
+        if(recency == null) updateTickets();
+    }
+
+
+    /** Set the raffle tickets of every card from its weight and the recency scores.
+     *  This only happens if the scores have changed since the tickets were last set.
+     *  It costs the same no matter how many supplies the scores have seen. */
+    private void updateTickets() {
+        if(raffle == null) return;
+        long version = recency == null ? -1L : recency.version();
+        if(recency != null && version == recencyVersion) return;
+        for(int i=0; i<optional.length; i++) {
+            int handle = handles[i];
+            if(handle == -1) continue;
+            int tickets = recency == null ? weights[i]
+                          : recency.ticketsOf(weights[i], catalog.getId(optional[i]));
+            raffleWeights[handle] = tickets;
+            raffle.setTickets(handle, tickets);
+        }
+        recencyVersion = version;
+    }
+
+
+    /** Start a session for a supply shuffled from this pool. The session holds the cards
+     *  that were not drawn, so cards can be replaced without shuffling again.
+     *  @param supply The ids of the cards in the supply.
+     *  @param bane The id of the supply's bane card, or -1 if there isn't one.
+     *  @param random The source of randomness for replacements.
+     *  @return The new session. */
+    public ShuffleSession newSession(long[] supply, long bane, Random random) {
+        // Replacements are drawn with the same tickets as the supply
+        int[] tickets = weights;
+        if(recency != null && raffle != null) {
+            updateTickets();
+            tickets = new int[optional.length];
+            for(int i=0; i<optional.length; i++)
+                if(handles[i] != -1) tickets[i] = raffleWeights[handles[i]];
+        }
+        return new ShuffleSession(catalog, optional, tickets, sidePiles,
+                                  solver == null ? null : solver.copy(), supply, bane, random);
+    }
+
+
+    /** Get the catalog the cards in this pool come from. */
+    public CardCatalog getCatalog() {
+        return catalog;
+    }
+
+
+    /** Fill a supply with the cards from this pool. All required cards are added first,
+     *  then the other cards are drawn until the supply has enough kingdom cards.
+     *  @param supply The supply to fill.
+     *  @param random The source of randomness for the draw. */
+    public void fill(ShuffleSupply supply, Random random) {
+        fill(supply, new int[0], random);
+    }
+
+
+    /** Fill a supply with the cards from this pool, starting from cards that have
+     *  already been chosen (like the picks of a draft). The required cards are added
+     *  first, then the chosen cards, then the other cards are drawn until the supply
+     *  has enough kingdom cards. The chosen cards count towards the shuffle rules.
+     *  @param supply The supply to fill.
+     *  @param chosen Catalog indexes of the cards that must also be in the supply.
+     *  @param random The source of randomness for the draw. */
+    public void fill(ShuffleSupply supply, int[] chosen, Random random) {
+        if(recency != null) updateTickets();
+        supply.setSidePiles(sidePiles, random);
+        draw(supply, required, true, random);
+        for(int card : chosen) {
+            if(catalog.isSpecial(card)) supply.addSpecial(card, true);
+            else supply.addKingdom(card, true);
+        }
+        if(!supply.needsKingdom()) return;
+
+        // The kingdom cards already in the supply
+        int[] inSupply = kingdomOnly(required);
+        if(chosen.length != 0) inSupply = concat(inSupply, kingdomOnly(chosen));
+
+        if(sampler != null) sampler.fill(supply, inSupply, random);
+        // Side piles already drawn count towards the rules
+        else if(solver != null) solve(supply, concat(inSupply, supply.getSidePiles()), random);
+        else if(raffle == null) draw(supply, optional, false, random);
+        else drawWeighted(supply, random);
+    }
+
+
+    /** Deal kingdom cards from the pool without replacement, such as the hands of a draft.
+     *  Every kingdom card that may be drawn (with weight, if the pool is weighted) is
+     *  equally likely, and no card is dealt twice. Cards whose side pile can't be filled
+     *  are not dealt, as they could never be in a supply. The deal is a single partial
+     *  Fisher-Yates shuffle of the positions of the optional cards, so the pool itself
+     *  is not changed.
+     *  @param count The number of cards to deal.
+     *  @param random The source of randomness for the deal.
+     *  @return Catalog indexes of the dealt cards, in the order they were dealt.
+     *  If the pool does not have enough kingdom cards, all of them are dealt. */
+    public int[] deal(int count, Random random) {
+        int[] order = new int[optional.length];
+        for(int i=0; i<order.length; i++)
+            order[i] = i;
+
+        int[] res = new int[Math.max(count, 0)];
+        int dealt = 0;
+        for(int drawn=0; drawn<order.length && dealt<res.length; drawn++) {
+            swap(order, drawn, drawn + random.nextInt(order.length - drawn));
+            int pos = order[drawn];
+            int card = optional[pos];
+            if(catalog.isSpecial(card) || (weights != null && weights[pos] < 1)) continue;
+            int pile = sidePiles.pileOf(card);
+            if(pile != -1 && !sidePiles.isFeasible(pile)) continue;
+            res[dealt++] = card;
+        }
+        return Arrays.copyOf(res, dealt);
+    }
+
+
+    /** Fill the supply with kingdom cards picked by the solver.
+     *  The optional cards are put in a random order first (by weight, for weighted pools),
+     *  and the solver picks the first combination in that order that meets its rules.
+     *  Cards already in the supply (as side piles) and cards whose side pile can't be
+     *  filled are left out. Events and landmarks that come up before the last kingdom card
+     *  are added too, just like in an ordinary draw.
+     *  If the solver gives up, it is tried again with a new order, up to
+     *  {@link #SOLVE_ATTEMPTS} times. If there are too few kingdom cards to fill the
+     *  supply at all, they are drawn without the rules, so the supply reports the
+     *  shortfall instead of unmet rules.
+     *  <p>Side piles count towards the rules too. A side pile is only drawn from the
+     *  cards that keep the supply within the rules. If there are none, each candidate is
+     *  tried as the side pile in turn, and the rest of the supply is solved around it.
+     *  If that fails too, the card that needs the side pile is left out.</p>
+     *  @param s The supply object that you want to add to.
+     *  @param chosen The kingdom cards already in the supply (including side piles).
+     *  @param random The source of randomness for the draw. */
+    private void solve(ShuffleSupply s, int[] chosen, Random random) {
+        BitSet skip = new BitSet(catalog.size());
+        int[] order = solveOrder(s, skip, random);
+        if(kingdomOnly(order).length < s.getShortfall()) {
+            if(raffle == null) draw(s, optional, false, random);
+            else drawWeighted(s, random);
+            return;
+        }
+
+        BitSet pileExclude = new BitSet(catalog.size());
+        int[] kingdom;
+        int attempt = 0;
+        while(true) {
+            kingdom = solver.solve(chosen, s.getShortfall(), order);
+            if(kingdom == null) {
+                if(!solver.gaveUp() || SOLVE_ATTEMPTS <= ++attempt) break;
+                order = solveOrder(s, skip, random);
+                continue;
+            }
+            int trigger = limitSidePiles(s, chosen, kingdom, pileExclude);
+            if(trigger == -1) break;
+
+            // Its side pile can't be filled within the rules.
+            // Pick the side pile first, then solve the rest of the supply.
+            skip.set(trigger);
+            kingdom = null;
+            int[] candidates = sidePiles.candidates(sidePiles.pileOf(trigger));
+            for(int i=candidates.length-1; 0<i; i--)
+                swap(candidates, i, random.nextInt(i+1));
+            int[] withPile = concat(chosen, new int[]{trigger, -1});
+            for(int card : candidates) {
+                if(s.contains(card)) continue;
+                withPile[withPile.length-1] = card;
+                skip.set(card);
+                order = solveOrder(s, skip, random);
+                int[] picks = solver.solve(withPile, s.getShortfall() - 1, order);
+                skip.clear(card);
+                if(picks == null) continue;
+                kingdom = concat(picks, new int[]{trigger});
+                pileExclude.clear();
+                for(int other : candidates)
+                    if(other != card) pileExclude.set(other);
+                break;
+            }
+            if(kingdom != null) break;
+            // No side pile works, so the card is left out
+            order = solveOrder(s, skip, random);
+        }
+        if(kingdom == null) {
+            if(solver.gaveUp()) s.rulesGaveUp = true;
+            else s.rulesUnmet = true;
+            return;
+        }
+
+        // Add the specials that came up before the last kingdom card
+        BitSet picked = new BitSet(catalog.size());
+        for(int card : kingdom)
+            picked.set(card);
+        int left = 0;
+        for(int card : order)
+            if(picked.get(card)) left++;
+        for(int i=0; i<order.length && 0 < left; i++) {
+            if(picked.get(order[i])) left--;
+            else if(catalog.isSpecial(order[i])) s.addSpecial(order[i], false);
+        }
+
+        // The solver has checked these cards, so they are all added.
+        // Cards with side piles go last, so their side piles are not drawn from the picks.
+        s.excludeFromSidePiles(pileExclude);
+        for(int card : kingdom)
+            if(sidePiles.pileOf(card) == -1) s.addKingdom(card, true);
+        for(int card : kingdom)
+            if(sidePiles.pileOf(card) != -1) s.addKingdom(card, true);
+    }
+
+
+    /** Find the side pile candidates that would break the rules if they were added to
+     *  the solver's picks. Each side pile is checked on its own.
+     *  @param s The supply being filled.
+     *  @param chosen The kingdom cards already in the supply.
+     *  @param kingdom The cards picked by the solver.
+     *  @param exclude Set to the candidates that break the rules.
+     *  @return The catalog index of a picked card whose side pile has no candidates
+     *  left within the rules, or -1 if every side pile can be filled. */
+    private int limitSidePiles(ShuffleSupply s, int[] chosen, int[] kingdom, BitSet exclude) {
+        exclude.clear();
+        int[] cards = null;
+        BitSet picked = null;
+        for(int trigger : kingdom) {
+            int pile = sidePiles.pileOf(trigger);
+            if(pile == -1) continue;
+            if(cards == null) {
+                cards = concat(concat(chosen, kingdom), new int[1]);
+                picked = new BitSet(catalog.size());
+                for(int card : kingdom)
+                    picked.set(card);
+            }
+
+            boolean fillable = false;
+            for(int card : sidePiles.candidates(pile)) {
+                if(s.contains(card) || picked.get(card)) continue;
+                cards[cards.length-1] = card;
+                if(solver.meets(cards)) fillable = true;
+                else exclude.set(card);
+            }
+            if(!fillable) return trigger;
+        }
+        return -1;
+    }
+
+
+    /** Put the cards the solver may pick from in a random order.
+     *  Cards already in the supply and cards whose side pile can't be filled are left out.
+     *  @param s The supply being filled.
+     *  @param skip Other cards to leave out.
+     *  @param random The source of randomness for the order. */
+    private int[] solveOrder(ShuffleSupply s, BitSet skip, Random random) {
+        int[] order = randomOrder(random);
+        int size = 0;
+        for(int card : order) {
+            int pile = sidePiles.pileOf(card);
+            if(!s.contains(card) && !skip.get(card)
+               && (pile == -1 || sidePiles.isFeasible(pile)))
+                order[size++] = card;
+        }
+        return Arrays.copyOf(order, size);
+    }
+
+
+    /** Put the optional cards in a random order. For weighted pools,
+     *  cards with a higher weight tend to come first, and cards without weight are left out.
+     *  @param random The source of randomness for the order.
+     *  @return The catalog indexes of the optional cards, in a random order. */
+    private int[] randomOrder(Random random) {
+        if(raffle == null) {
+            int[] order = Arrays.copyOf(optional, optional.length);
+            for(int i=order.length-1; 0<i; i--)
+                swap(order, i, random.nextInt(i+1));
+            return order;
+        }
+
+        // Draw every card from the raffle, then give them their tickets back
+        int[] order = new int[raffle.numEntries()];
+        for(int i=0; i<order.length; i++) {
+            int handle = raffle.pick(random);
+            picks[i] = handle;
+            raffle.setTickets(handle, 0);
+            order[i] = raffle.get(handle);
+        }
+        for(int i=0; i<order.length; i++)
+            raffle.setTickets(picks[i], raffleWeights[picks[i]]);
+        return order;
+    }
+
+
+    /** Draw cards at random and add them to the supply. The draw is a partial
+     *  Fisher-Yates shuffle, so only the cards that are drawn are ever shuffled.
+     *  @param s The supply object that you want to add to.
+     *  @param cards The catalog indexes of the cards to draw from.
+     *               They are shuffled during the draw, then put back in order.
+     *  @param cardsRequired True if all the cards must be in the supply.
+     *  If this is false, cards will be added to the supply until it has enough kingdom cards.
+     *  @param random The source of randomness for the draw. */
+    private void draw(ShuffleSupply s, int[] cards, boolean cardsRequired, Random random) {
+        int drawn = 0;
+        for(; drawn<cards.length && (cardsRequired || s.needsKingdom()); drawn++) {
+            // Swap a random card from the rest of the pool into this position
+            int pick = drawn + random.nextInt(cards.length - drawn);
+            picks[drawn] = pick;
+            swap(cards, drawn, pick);
+
+            // We handle special and kingdom cards differently (specials first)
+            int card = cards[drawn];
+            if(catalog.isSpecial(card))
+                s.addSpecial(card, cardsRequired);
+            else s.addKingdom(card, cardsRequired);
+        }
+
+        // Undo the swaps (in reverse) to put the pool back in its original order
+        for(int i=drawn-1; 0<=i; i--)
+            swap(cards, i, picks[i]);
+    }
+
+
+    /** Draw optional cards from the raffle until the supply has enough kingdom cards.
+     *  Drawn cards have their tickets taken away instead of being removed, so the raffle
+     *  keeps its shape and the same random seed always gives the same supply.
+     *  @param s The supply object that you want to add to.
+     *  @param random The source of randomness for the draw. */
+    private void drawWeighted(ShuffleSupply s, Random random) {
+        int drawn = 0;
+        for(; s.needsKingdom(); drawn++) {
+            int handle = raffle.pick(random);
+            if(handle == -1) break;
+            picks[drawn] = handle;
+            raffle.setTickets(handle, 0);
+
+            int card = raffle.get(handle);
+            if(catalog.isSpecial(card))
+                s.addSpecial(card, false);
+            else s.addKingdom(card, false);
+        }
+
+        // Give the drawn cards their tickets back
+        for(int i=0; i<drawn; i++)
+            raffle.setTickets(picks[i], raffleWeights[picks[i]]);
+    }
+
+
+    /** Get the kingdom cards from a list of cards (keeping the order). */
+    private int[] kingdomOnly(int[] cards) {
+        int[] res = new int[cards.length];
+        int size = 0;
+        for(int card : cards)
+            if(!catalog.isSpecial(card)) res[size++] = card;
+        return Arrays.copyOf(res, size);
+    }
+
+
+    /** Join two arrays of cards. */
+    private static int[] concat(int[] a, int[] b) {
+        if(b.length == 0) return a;
+        int[] res = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, res, a.length, b.length);
+        return res;
+    }
+
+
+    /** Swap two entries in an array. */
+    private static void swap(int[] cards, int a, int b) {
+        int card = cards[a];
+        cards[a] = cards[b];
+        cards[b] = card;
+    }
+}
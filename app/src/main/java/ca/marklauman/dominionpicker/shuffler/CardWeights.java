@@ -0,0 +1,225 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+
+/** The weight given to each card during a weighted shuffle. Cards are given the weight
+ *  of their set, unless the card has a weight of its own. A card with a weight of 2 is
+ *  twice as likely to be drawn as a card with a weight of 1, and a card with a weight
+ *  of 0 is never drawn.
+ *
+ *  <p>Weights are stored in the preferences as strings (see {@link #parse(String, String)}).</p>
+ *  @author Mark Lauman */
+public class CardWeights {
+
+    /** The weight of any card or set that is not given a weight. */
+    public static final int DEFAULT = 1;
+    /** The largest weight allowed. Larger weights are lowered to this. */
+    public static final int MAX = 100;
+
+    /** The weight of each set, by set id. */
+    private final int[] setWeights;
+    /** Ids of the cards that have their own weight. Sorted from lowest to highest. */
+    private final long[] cardIds;
+    /** The weight of each card in {@link #cardIds}. */
+    private final int[] cardWeights;
+
+
+    /** Constructor used by {@link #parse(String, String)}. The arrays are not copied. */
+    private CardWeights(int[] setWeights, long[] cardIds, int[] cardWeights) {
+        this.setWeights = setWeights;
+        this.cardIds = cardIds;
+        this.cardWeights = cardWeights;
+    }
+
+
+    /** Read the weights from their preference strings. Invalid entries are ignored.
+     *  @param setWeights A comma separated list of weights, one per set, in order of set id.
+     *                    Empty entries use the {@link #DEFAULT} weight.
+     *                    For example {@code "1,,3"} gives set 2 a weight of 3.
+     *  @param cardWeights A comma separated list of {@code id:weight} pairs.
+     *                     For example {@code "12:0,40:5"} means card 12 is never drawn
+     *                     and card 40 has a weight of 5.
+     *  @return The parsed weights. */
+    public static CardWeights parse(String setWeights, String cardWeights) {
+        // Set weights
+        String[] rawSets = setWeights.length() == 0 ? new String[0] : setWeights.split(",");
+        int[] sets = new int[rawSets.length];
+        for(int set=0; set<rawSets.length; set++)
+            sets[set] = parseWeight(rawSets[set]);
+
+        // Card weights, sorted by card id
+        String[] rawCards = cardWeights.length() == 0 ? new String[0] : cardWeights.split(",");
+        long[] ids = new long[rawCards.length];
+        int[] weights = new int[rawCards.length];
+        int size = 0;
+        for(String raw : rawCards) {
+            int split = raw.indexOf(':');
+            if(split == -1) continue;
+            try {
+                ids[size] = Long.parseLong(raw.substring(0, split).trim());
+            } catch(NumberFormatException e) {
+                continue;
+            }
+            weights[size] = parseWeight(raw.substring(split+1));
+            size++;
+        }
+        sortByCard(ids, weights, size);
+        return new CardWeights(sets, Arrays.copyOf(ids, size), Arrays.copyOf(weights, size));
+    }
+
+
+    /** Parse one weight. Blank or invalid weights are the {@link #DEFAULT} weight. */
+    private static int parseWeight(String raw) {
+        try {
+            int weight = Integer.parseInt(raw.trim());
+            return Math.max(0, Math.min(weight, MAX));
+        } catch(NumberFormatException e) {
+            return DEFAULT;
+        }
+    }
+
+
+    /** Sort the first {@code size} card weights by card id (insertion sort - these
+     *  lists are short). If a card is listed twice, the last weight given is kept. */
+    private static void sortByCard(long[] ids, int[] weights, int size) {
+        for(int i=1; i<size; i++) {
+            long id = ids[i];
+            int weight = weights[i];
+            int j = i-1;
+            for(; 0 <= j && id < ids[j]; j--) {
+                ids[j+1] = ids[j];
+                weights[j+1] = weights[j];
+            }
+            ids[j+1] = id;
+            weights[j+1] = weight;
+        }
+        // Duplicates are next to each other. Give them all the last weight listed.
+        for(int i=size-1; 0 < i; i--) {
+            if(ids[i] == ids[i-1])
+                weights[i-1] = weights[i];
+        }
+    }
+
+
+    /** Check if every card has the same weight.
+     *  Uniform weights do not need a weighted shuffle. */
+    public boolean isUniform() {
+        for(int weight : setWeights)
+            if(weight != DEFAULT) return false;
+        for(int weight : cardWeights)
+            if(weight != DEFAULT) return false;
+        return true;
+    }
+
+
+    /** Get the weight of a card.
+     *  @param catalog The catalog the card comes from.
+     *  @param card The index of the card in the catalog. */
+    public int weightOf(CardCatalog catalog, int card) {
+        int own = cardWeight(catalog.getId(card));
+        if(own != -1) return own;
+        return setWeight(catalog.getSet(card));
+    }
+
+
+    /** Get the weight of a set.
+     *  @param set The id of the set. */
+    public int setWeight(int set) {
+        if(0 <= set && set < setWeights.length) return setWeights[set];
+        return DEFAULT;
+    }
+
+
+    /** Get the weight a card was given of its own.
+     *  @param id The id of the card.
+     *  @return The card's weight, or -1 if it has the weight of its set. */
+    public int cardWeight(long id) {
+        int pos = Arrays.binarySearch(cardIds, id);
+        return pos < 0 ? -1 : cardWeights[pos];
+    }
+
+
+    /** Get a copy of these weights with the weight of one set changed.
+     *  @param set The id of the set.
+     *  @param weight The new weight of the set. */
+    public CardWeights withSet(int set, int weight) {
+        int[] sets = Arrays.copyOf(setWeights, Math.max(setWeights.length, set + 1));
+        for(int i=setWeights.length; i<sets.length; i++)
+            sets[i] = DEFAULT;
+        sets[set] = Math.max(0, Math.min(weight, MAX));
+        return new CardWeights(sets, cardIds, cardWeights);
+    }
+
+
+    /** Get a copy of these weights with the weight of one card changed.
+     *  @param id The id of the card.
+     *  @param weight The new weight of the card, or -1 to give it the weight of its set. */
+    public CardWeights withCard(long id, int weight) {
+        int pos = Arrays.binarySearch(cardIds, id);
+        if(weight < 0) {
+            if(pos < 0) return this;
+            long[] ids = new long[cardIds.length - 1];
+            int[] weights = new int[ids.length];
+            System.arraycopy(cardIds, 0, ids, 0, pos);
+            System.arraycopy(cardIds, pos+1, ids, pos, ids.length - pos);
+            System.arraycopy(cardWeights, 0, weights, 0, pos);
+            System.arraycopy(cardWeights, pos+1, weights, pos, ids.length - pos);
+            return new CardWeights(setWeights, ids, weights);
+        }
+
+        weight = Math.min(weight, MAX);
+        if(0 <= pos) {
+            int[] weights = Arrays.copyOf(cardWeights, cardWeights.length);
+            weights[pos] = weight;
+            return new CardWeights(setWeights, cardIds, weights);
+        }
+        pos = -pos - 1;
+        long[] ids = new long[cardIds.length + 1];
+        int[] weights = new int[ids.length];
+        System.arraycopy(cardIds, 0, ids, 0, pos);
+        System.arraycopy(cardIds, pos, ids, pos+1, cardIds.length - pos);
+        System.arraycopy(cardWeights, 0, weights, 0, pos);
+        System.arraycopy(cardWeights, pos, weights, pos+1, cardIds.length - pos);
+        ids[pos] = id;
+        weights[pos] = weight;
+        return new CardWeights(setWeights, ids, weights);
+    }
+
+
+    /** Get the set weights as a preference string (see {@link #parse(String, String)}).
+     *  Default weights are left blank. */
+    public String setString() {
+        int size = setWeights.length;
+        while(0 < size && setWeights[size-1] == DEFAULT)
+            size--;
+        StringBuilder res = new StringBuilder();
+        for(int set=0; set<size; set++) {
+            if(0 < set) res.append(',');
+            if(setWeights[set] != DEFAULT) res.append(setWeights[set]);
+        }
+        return res.toString();
+    }
+
+
+    /** Get the card weights as a preference string (see {@link #parse(String, String)}). */
+    public String cardString() {
+        StringBuilder res = new StringBuilder();
+        for(int i=0; i<cardIds.length; i++) {
+            if(0 < i) res.append(',');
+            res.append(cardIds[i]).append(':').append(cardWeights[i]);
+        }
+        return res.toString();
+    }
+
+
+    /** Get the weight of many cards at once.
+     *  @param catalog The catalog the cards come from.
+     *  @param cards The indexes of the cards in the catalog.
+     *  @return The weight of each card, in the same order. */
+    public int[] weightsOf(CardCatalog catalog, int[] cards) {
+        int[] res = new int[cards.length];
+        for(int i=0; i<cards.length; i++)
+            res[i] = weightOf(catalog, cards[i]);
+        return res;
+    }
+}
@@ -0,0 +1,288 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Picks kingdom cards that meet a set of {@link Rule}s, such as "at least one +Buy"
+ *  or "at most 2 attacks". Each rule is a bitset of the cards it counts (from the
+ *  {@link CardCatalog}) with a minimum and maximum count.
+ *
+ *  <p>The solver takes the candidate cards in a random order and searches for a
+ *  combination that meets every rule. Unmet rules are dealt with first, starting with
+ *  the one that has the fewest cards left to pick from. The rest of the supply is then
+ *  filled in candidate order. The search backtracks, and stops early whenever the
+ *  remaining candidates can no longer meet a rule. Rules that cannot be met by any
+ *  combination are found before the search starts. The search gives up after
+ *  {@link #SEARCH_LIMIT} cards; {@link #gaveUp()} tells this apart from rules that
+ *  cannot be met.</p>
+ *
+ *  <p>Side piles (like the Young Witch's bane) are drawn after the solver has picked
+ *  its cards. They count towards the rules, so the {@link CardPool} only draws them
+ *  from the cards that {@link #meets(int[])} allows. See {@link SidePile}.</p>
+ *  @author Mark Lauman */
+public class ConstraintSolver {
+
+    /** Most cards the search may try before it gives up, unless another limit is given. */
+    public static final int SEARCH_LIMIT = 100000;
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+    /** The rules to meet. */
+    private final Rule[] rules;
+    /** Most cards the search may try before it gives up. */
+    private final int searchLimit;
+
+    // Search state (reset on every solve)
+    /** Current count of each rule. */
+    private final int[] counts;
+    /** The candidates, in the order they are tried. */
+    private int[] candidates;
+    /** True for each candidate that has been picked. */
+    private boolean[] picked;
+    /** Number of candidates tried so far. */
+    private int tried;
+    /** The rule that could not be met by the last solve (null if it was met). */
+    private Rule failure;
+    /** True if the last solve stopped at the search limit. */
+    private boolean gaveUp;
+
+
+    /** A rule that a supply must meet.
+     *  The number of kingdom cards in the supply from {@link #cards} must
+     *  be between {@link #min} and {@link #max}. */
+    public static class Rule {
+        /** The cards counted by this rule. */
+        public final BitSet cards;
+        /** The minimum number of cards from {@link #cards}. */
+        public final int min;
+        /** The maximum number of cards from {@link #cards}. */
+        public final int max;
+        /** Name used when reporting this rule. */
+        public final String name;
+
+        /** Create a new rule.
+         *  @param name Name used when reporting this rule.
+         *  @param cards The catalog indexes of the cards counted by this rule.
+         *  @param min The minimum number of cards from {@code cards}.
+         *  @param max The maximum number of cards from {@code cards}. */
+        public Rule(String name, BitSet cards, int min, int max) {
+            this.name = name;
+            this.cards = cards;
+            this.min = min;
+            this.max = max;
+        }
+
+        /** A rule that needs at least {@code min} cards from {@code cards}. */
+        public static Rule atLeast(String name, BitSet cards, int min) {
+            return new Rule(name, cards, min, Integer.MAX_VALUE);
+        }
+
+        /** A rule that allows no more than {@code max} cards from {@code cards}. */
+        public static Rule atMost(String name, BitSet cards, int max) {
+            return new Rule(name, cards, 0, max);
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + min + ".." + (max == Integer.MAX_VALUE ? "" : max) + "]";
+        }
+    }
+
+
+    /** Create a solver for the given rules.
+     *  @param catalog The catalog the cards come from.
+     *  @param rules The rules that every supply must meet. */
+    public ConstraintSolver(CardCatalog catalog, Rule[] rules) {
+        this(catalog, rules, SEARCH_LIMIT);
+    }
+
+
+    /** Create a solver for the given rules, with its own search limit.
+     *  @param catalog The catalog the cards come from.
+     *  @param rules The rules that every supply must meet.
+     *  @param searchLimit Most cards the search may try before it gives up. */
+    public ConstraintSolver(CardCatalog catalog, Rule[] rules, int searchLimit) {
+        this.catalog = catalog;
+        this.rules = rules;
+        this.searchLimit = searchLimit;
+        counts = new int[rules.length];
+    }
+
+
+    /** Get a copy of this solver that may be used on another thread. */
+    public ConstraintSolver copy() {
+        return new ConstraintSolver(catalog, rules, searchLimit);
+    }
+
+
+    /** Check if the last solve gave up before it finished searching.
+     *  If it did, a supply that meets the rules may still exist,
+     *  and another solve with the candidates in a different order may find it. */
+    public boolean gaveUp() {
+        return gaveUp;
+    }
+
+
+    /** Get the rule that could not be met during the last solve. This is null if the
+     *  last solve succeeded, or if it failed without any one rule being to blame. */
+    public Rule getFailure() {
+        return failure;
+    }
+
+
+    /** Pick kingdom cards that meet every rule.
+     *  @param chosen Kingdom cards that are already in the supply.
+     *  @param slots The number of kingdom cards to pick.
+     *  @param candidates Cards that may be picked, in the order they should be tried.
+     *                    Non-kingdom cards are skipped.
+     *  @return The cards picked, in the order they appear in {@code candidates}.
+     *  Returns null if the rules cannot be met, if the search gave up
+     *  (see {@link #gaveUp()}), or if there are fewer candidates than slots. */
+    public int[] solve(int[] chosen, int slots, int[] candidates) {
+        failure = null;
+        gaveUp = false;
+        tried = 0;
+        this.candidates = kingdomOnly(candidates);
+        picked = new boolean[this.candidates.length];
+
+        // Count the cards already chosen.
+        Arrays.fill(counts, 0);
+        for(int card : chosen)
+            count(card, 1);
+
+        // Check if the rules can be met before searching.
+        for(int r=0; r<rules.length; r++) {
+            int deficit = rules[r].min - counts[r];
+            if(rules[r].max < counts[r] || available(r) < deficit || slots < deficit) {
+                failure = rules[r];
+                return null;
+            }
+        }
+        if(this.candidates.length < slots) return null;
+
+        if(!search(slots, 0)) return null;
+        int size = 0;
+        int[] res = new int[this.candidates.length];
+        for(int pos=0; pos<res.length; pos++)
+            if(picked[pos]) res[size++] = this.candidates[pos];
+        return Arrays.copyOf(res, size);
+    }
+
+
+    /** Check if a finished supply meets every rule.
+     *  @param kingdom The kingdom cards in the supply.
+     *  @return True if every rule is met. */
+    public boolean meets(int[] kingdom) {
+        Arrays.fill(counts, 0);
+        for(int card : kingdom)
+            count(card, 1);
+        for(int r=0; r<rules.length; r++)
+            if(counts[r] < rules[r].min || rules[r].max < counts[r]) return false;
+        return true;
+    }
+
+
+    /** Search for picks that meet every rule (depth first).
+     *  While a rule's minimum is unmet, the search branches on the cards that count towards
+     *  the rule with the fewest cards left to pick from. Once every minimum is met, the
+     *  remaining slots are filled in candidate order.
+     *  @param slots The number of kingdom cards still needed.
+     *  @param fillPos The first candidate that may be used to fill the remaining slots.
+     *  @return True if the picks meet every rule. */
+    private boolean search(int slots, int fillPos) {
+        if(searchLimit <= ++tried) {
+            gaveUp = true;
+            return false;
+        }
+
+        // Find the unmet rule with the fewest cards to pick from
+        int target = -1, fewest = Integer.MAX_VALUE;
+        for(int r=0; r<rules.length; r++) {
+            int deficit = rules[r].min - counts[r];
+            if(deficit <= 0) continue;
+            // Prune: not enough room or cards left for this rule
+            if(slots < deficit) return false;
+            int left = available(r);
+            if(left < deficit) return false;
+            if(left < fewest) {
+                target = r;
+                fewest = left;
+            }
+        }
+
+        // Every minimum is met. Fill the rest of the slots.
+        if(target == -1) {
+            if(slots == 0) return true;
+            for(int pos=fillPos; pos<candidates.length; pos++) {
+                if(picked[pos] || !fits(candidates[pos])) continue;
+                if(tryPick(pos, slots, pos+1)) return true;
+                if(gaveUp) return false;
+            }
+            return false;
+        }
+
+        // Try each card that counts towards the target rule
+        BitSet cards = rules[target].cards;
+        for(int pos=0; pos<candidates.length; pos++) {
+            int card = candidates[pos];
+            if(picked[pos] || !cards.get(card) || !fits(card)) continue;
+            if(tryPick(pos, slots, fillPos)) return true;
+            if(gaveUp) return false;
+        }
+        return false;
+    }
+
+
+    /** Pick a candidate and continue the search. If the search fails, the pick is undone.
+     *  @return True if the search succeeded with this pick. */
+    private boolean tryPick(int pos, int slots, int fillPos) {
+        if(slots == 0) return false;
+        int card = candidates[pos];
+        picked[pos] = true;
+        count(card, 1);
+        if(search(slots-1, fillPos))
+            return true;
+
+        // That didn't work. Take it back.
+        count(card, -1);
+        picked[pos] = false;
+        return false;
+    }
+
+
+    /** Count the candidates that could still be picked towards a rule. */
+    private int available(int rule) {
+        BitSet cards = rules[rule].cards;
+        int res = 0;
+        for(int pos=0; pos<candidates.length; pos++) {
+            int card = candidates[pos];
+            if(!picked[pos] && cards.get(card) && fits(card)) res++;
+        }
+        return res;
+    }
+
+
+    /** Check if a card can be picked without breaking the maximum of any rule. */
+    private boolean fits(int card) {
+        for(int r=0; r<rules.length; r++)
+            if(counts[r] == rules[r].max && rules[r].cards.get(card)) return false;
+        return true;
+    }
+
+
+    /** Add to the count of every rule that counts this card. */
+    private void count(int card, int diff) {
+        for(int r=0; r<rules.length; r++)
+            if(rules[r].cards.get(card)) counts[r] += diff;
+    }
+
+
+    /** Remove all non-kingdom cards from a list of cards (keeping the order). */
+    private int[] kingdomOnly(int[] cards) {
+        int[] res = new int[cards.length];
+        int size = 0;
+        for(int card : cards)
+            if(!catalog.isSpecial(card)) res[size++] = card;
+        return Arrays.copyOf(res, size);
+    }
+}
@@ -0,0 +1,166 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/** Counts the cards that may be shuffled into a supply, without querying the database.
+ *  This is used to warn about a shortfall before the shuffle is started.
+ *
+ *  <p>Cards that look the same to the {@link CardFilter} (same set, cost, debt, potions,
+ *  curse giving and edition) are grouped into buckets when the counter is made. A new
+ *  filter only needs to check each bucket once, and there are far fewer buckets than cards.
+ *  Cards that are deselected or required in the picker are counted separately,
+ *  so changing them does not recount the buckets.</p>
+ *  @author Mark Lauman */
+public class EligibilityCounter {
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+
+    // One entry per bucket
+    /** The set id of the cards in each bucket. */
+    private final int[] bSet;
+    /** The coin cost of the cards in each bucket. */
+    private final int[] bCost;
+    /** The debt cost of the cards in each bucket. */
+    private final int[] bDebt;
+    /** The potion cost of the cards in each bucket. */
+    private final int[] bPotion;
+    /** True if the cards in each bucket give curses. */
+    private final boolean[] bCurser;
+    /** The unique edition of the cards in each bucket (0 for every edition). */
+    private final int[] bEdition;
+    /** Number of kingdom cards in each bucket. */
+    private final int[] bKingdom;
+    /** Number of events and landmarks in each bucket. */
+    private final int[] bSpecial;
+
+    /** The filter in use. */
+    private CardFilter filter = null;
+    /** Kingdom cards that pass the filter. */
+    private int filtKingdom = 0;
+    /** Events and landmarks that pass the filter. */
+    private int filtSpecial = 0;
+    /** Catalog indexes of the cards deselected in the picker. */
+    private int[] excluded = new int[0];
+    /** Kingdom cards that pass the filter, but have been deselected. */
+    private int exclKingdom = 0;
+    /** Events and landmarks that pass the filter, but have been deselected. */
+    private int exclSpecial = 0;
+
+
+    /** Sort the cards of a catalog into buckets.
+     *  @param catalog The catalog the cards come from. */
+    public EligibilityCounter(CardCatalog catalog) {
+        this.catalog = catalog;
+        HashMap<Long, Integer> buckets = new HashMap<>();
+        int[] bucketOf = new int[catalog.size()];
+        int[] first = new int[catalog.size()];
+        for(int card=0; card<catalog.size(); card++) {
+            long key = ((long) catalog.getSet(card) << 40)
+                       ^ ((long) (catalog.getCost(card) & 0xFF) << 32)
+                       ^ ((long) (catalog.getDebt(card) & 0xFF) << 24)
+                       ^ ((catalog.getPotion(card) & 0xFF) << 16)
+                       ^ ((catalog.getEdition(card) & 0xFF) << 8)
+                       ^ (catalog.hasFlag(card, CardCatalog.FLAG_CURSER) ? 1 : 0);
+            Integer bucket = buckets.get(key);
+            if(bucket == null) {
+                bucket = buckets.size();
+                buckets.put(key, bucket);
+                first[bucket] = card;
+            }
+            bucketOf[card] = bucket;
+        }
+
+        int size = buckets.size();
+        bSet = new int[size];
+        bCost = new int[size];
+        bDebt = new int[size];
+        bPotion = new int[size];
+        bCurser = new boolean[size];
+        bEdition = new int[size];
+        bKingdom = new int[size];
+        bSpecial = new int[size];
+        for(int bucket=0; bucket<size; bucket++) {
+            int card = first[bucket];
+            bSet[bucket] = catalog.getSet(card);
+            bCost[bucket] = catalog.getCost(card);
+            bDebt[bucket] = catalog.getDebt(card);
+            bPotion[bucket] = catalog.getPotion(card);
+            bCurser[bucket] = catalog.hasFlag(card, CardCatalog.FLAG_CURSER);
+            bEdition[bucket] = catalog.getEdition(card);
+        }
+        for(int card=0; card<catalog.size(); card++) {
+            if(catalog.isSpecial(card)) bSpecial[bucketOf[card]]++;
+            else bKingdom[bucketOf[card]]++;
+        }
+    }
+
+
+    /** Change the filter. This checks every bucket once.
+     *  @param filter The new filter. */
+    public void setFilter(CardFilter filter) {
+        this.filter = filter;
+        filtKingdom = 0;
+        filtSpecial = 0;
+        for(int bucket=0; bucket<bSet.length; bucket++) {
+            if(!filter.passes(bSet[bucket], bCost[bucket], bDebt[bucket],
+                              bPotion[bucket], bCurser[bucket], bEdition[bucket]))
+                continue;
+            filtKingdom += bKingdom[bucket];
+            filtSpecial += bSpecial[bucket];
+        }
+        countExcluded();
+    }
+
+
+    /** Change the cards deselected in the picker. Required cards are always counted,
+     *  even if they are deselected (this is how the shuffler treats them).
+     *  @param excluded Ids of the deselected cards.
+     *  @param required Ids of the required cards. */
+    public void setExcluded(Set<Long> excluded, Set<Long> required) {
+        int[] res = new int[excluded.size()];
+        int size = 0;
+        for(long id : excluded) {
+            int card = catalog.indexOf(id);
+            if(card != -1 && !required.contains(id)) res[size++] = card;
+        }
+        this.excluded = Arrays.copyOf(res, size);
+        countExcluded();
+    }
+
+
+    /** Count the deselected cards that pass the filter. */
+    private void countExcluded() {
+        exclKingdom = 0;
+        exclSpecial = 0;
+        if(filter == null) return;
+        for(int card : excluded) {
+            if(!filter.passes(catalog, card)) continue;
+            if(catalog.isSpecial(card)) exclSpecial++;
+            else exclKingdom++;
+        }
+    }
+
+
+    /** Get the number of kingdom cards that may be shuffled into the supply. */
+    public int numKingdom() {
+        return filtKingdom - exclKingdom;
+    }
+
+
+    /** Get the number of kingdom cards a supply would be short by.
+     *  This is what the picker warns about before a shuffle.
+     *  @param needed The number of kingdom cards in a supply.
+     *  @return The number of kingdom cards missing, or 0 if there are enough. */
+    public int shortfall(int needed) {
+        return Math.max(0, needed - numKingdom());
+    }
+
+
+    /** Get the number of events and landmarks that may be shuffled into the supply. */
+    public int numSpecial() {
+        return filtSpecial - exclSpecial;
+    }
+}
@@ -0,0 +1,122 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** A {@link RafflePool} specialized for {@code int} values (such as catalog indexes).
+ *  The pool is stored in growable primitive arrays, so adding and drawing entrants
+ *  does not box any values, and {@link #draw()} does not allocate at all.
+ *
+ *  <p>Entrants can be added to the pool with {@link #add(int, int)} and removed with
+ *  {@link #withdraw(int)}. A random entrant can be drawn (and removed from the pool) with
+ *  {@link #draw()}.</p>
+ *
+ *  @author Mark Lauman */
+@SuppressWarnings("unused")
+public class IntRafflePool extends RaffleTree {
+
+    /** The value returned by {@link #draw()} when the pool is empty. */
+    public static final int EMPTY = -1;
+
+    /** The value attached to each entrant in the raffle. */
+    private int[] values;
+
+
+    /** Create an IntRafflePool of unknown size.
+     *  {@link #IntRafflePool(int)} is preferred, as resizing the pool is expensive. */
+    public IntRafflePool() {
+        this(10);
+    }
+
+    /** Create an IntRafflePool of known size. The pool can grow beyond this size later,
+     *  but resizing the pool is an expensive operation.
+     *  @param numEntrants The expected number of entrants into the raffle.
+     *                     (Not the amount of tickets they own) */
+    public IntRafflePool(int numEntrants) {
+        this(numEntrants, new Random());
+    }
+
+    /** Create an IntRafflePool of known size that draws with the given random source.
+     *  @param numEntrants The expected number of entrants into the raffle.
+     *  @param random The random number generator used for draws. */
+    public IntRafflePool(int numEntrants, Random random) {
+        super(numEntrants, random);
+        values = new int[Math.max(numEntrants, 1)];
+    }
+
+    /** Constructor used by {@link #copy()}. */
+    private IntRafflePool(IntRafflePool other) {
+        super(other);
+        values = Arrays.copyOf(other.values, other.values.length);
+    }
+
+
+    /** Get a copy of this pool, with the same entrants, tickets and handles.
+     *  This copies the pool as it is (in O(n) time) instead of adding every entrant again. */
+    public IntRafflePool copy() {
+        return new IntRafflePool(this);
+    }
+
+
+    @Override
+    void growValues(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+
+    /** Add an entrant to the raffle, paired to the given value. If you call this method twice
+     *  with the same value, then each call will be treated as a different entrant in the draw.
+     *  @param numTickets Number of raffle tickets for this entrant.
+     *  @param value Value to be returned when this entrant is drawn.
+     *  @return A handle to the new entrant, for use with {@link #setTickets(int, int)}. */
+    public int add(int numTickets, int value) {
+        // addEntry may grow the value array, so it must be called first
+        int position = addEntry(numTickets);
+        values[position] = value;
+        return handleAt(position);
+    }
+
+
+    /** Get the value of an entrant.
+     *  @param handle The handle returned when the entrant was added. */
+    public int get(int handle) {
+        return values[positionOf(handle)];
+    }
+
+
+    /** Draw an entrant from the pool at random, then remove it from the pool.
+     *  @return The drawn entry, or {@link #EMPTY} if the pool is empty. */
+    public int draw() {
+        int position = drawPosition();
+        if(position == -1) return EMPTY;
+        int value = values[position];
+        removeEntry(position);
+        return value;
+    }
+
+
+    /** Remove the first entrant tied to this value.
+     *  This is a linear search. Use {@link #withdraw(int)} where possible. */
+    public boolean remove(int value) {
+        final int size = numEntries();
+        for(int pos=0; pos<size; pos++) {
+            if(values[pos] == value) {
+                removeEntry(pos);
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    public String toString() {
+        return "IntRafflePool{values  "+Arrays.toString(Arrays.copyOf(values, numEntries()))
+               +treeString();
+    }
+}
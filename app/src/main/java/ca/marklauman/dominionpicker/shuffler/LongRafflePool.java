@@ -0,0 +1,167 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** A {@link RafflePool} specialized for {@code long} values (such as card ids).
+ *  The pool is stored in growable primitive arrays, so adding and drawing entrants
+ *  does not box any values, and {@link #draw()} does not allocate at all.
+ *
+ *  <p>Entrants can be added to the pool with {@link #add(int, long)} and removed with
+ *  {@link #withdraw(int)}. A random entrant can be drawn (and removed from the pool) with
+ *  {@link #draw()}.</p>
+ *
+ *  <p>The tickets are held by an {@link IntRafflePool}, and the values are kept beside it
+ *  by handle. Handles don't change while entrants move around the pool,
+ *  so the values never have to move.</p>
+ *
+ *  @author Mark Lauman */
+@SuppressWarnings("unused")
+public class LongRafflePool {
+
+    /** The value returned by {@link #draw()} when the pool is empty. */
+    public static final long EMPTY = -1L;
+
+    /** The tickets of each entrant. Its own values are not used. */
+    private final IntRafflePool raffle;
+    /** The value attached to each entrant, by handle. */
+    private long[] values;
+
+
+    /** Create a LongRafflePool of unknown size.
+     *  {@link #LongRafflePool(int)} is preferred, as resizing the pool is expensive. */
+    public LongRafflePool() {
+        this(10);
+    }
+
+    /** Create a LongRafflePool of known size. The pool can grow beyond this size later,
+     *  but resizing the pool is an expensive operation.
+     *  @param numEntrants The expected number of entrants into the raffle.
+     *                     (Not the amount of tickets they own) */
+    public LongRafflePool(int numEntrants) {
+        this(numEntrants, new Random());
+    }
+
+    /** Create a LongRafflePool of known size that draws with the given random source.
+     *  @param numEntrants The expected number of entrants into the raffle.
+     *  @param random The random number generator used for draws. */
+    public LongRafflePool(int numEntrants, Random random) {
+        raffle = new IntRafflePool(numEntrants, random);
+        values = new long[Math.max(numEntrants, 1)];
+    }
+
+
+    /** Ensures that after this operation the pool can hold the specified
+     *  number of entrants without growing further.
+     *  @param minimumCapacity  The minimum capacity asked for. */
+    public void ensureCapacity(int minimumCapacity) {
+        raffle.ensureCapacity(minimumCapacity);
+        if(values.length < minimumCapacity)
+            values = Arrays.copyOf(values, minimumCapacity);
+    }
+
+    /** Clears the pool, allowing new entries to be added.
+     *  All handles given out before this call become invalid. */
+    public void clear() {
+        raffle.clear();
+    }
+
+    /** Get the total number of entries in this pool. */
+    public int numEntries() {
+        return raffle.numEntries();
+    }
+
+    /** Get the total amount of tickets in the pool. */
+    public int numTickets() {
+        return raffle.numTickets();
+    }
+
+    /** Check if the entrant with this handle is still in the pool. */
+    public boolean isEntered(int handle) {
+        return raffle.isEntered(handle);
+    }
+
+    /** Get the number of tickets held by an entrant.
+     *  @param handle The handle returned when the entrant was added. */
+    public int getTickets(int handle) {
+        return raffle.getTickets(handle);
+    }
+
+    /** Change the number of tickets held by an entrant. See
+     *  {@link IntRafflePool#setTickets(int, int)}. */
+    public void setTickets(int handle, int numTickets) {
+        raffle.setTickets(handle, numTickets);
+    }
+
+    /** Add to (or take from) the number of tickets held by an entrant. See
+     *  {@link IntRafflePool#adjustTickets(int, int)}. */
+    public void adjustTickets(int handle, int ticketDiff) {
+        raffle.adjustTickets(handle, ticketDiff);
+    }
+
+    /** Remove the entrant with this handle from the pool.
+     *  @param handle The handle returned when the entrant was added.
+     *  @return True if the entrant was removed, false if it was not in the pool. */
+    public boolean withdraw(int handle) {
+        return raffle.withdraw(handle);
+    }
+
+    /** Pick an entrant at random without removing it. See {@link IntRafflePool#pick(Random)}.
+     *  @return The handle of the entrant, or -1 if the pool has no tickets. */
+    public int pick(Random random) {
+        return raffle.pick(random);
+    }
+
+
+    /** Add an entrant to the raffle, paired to the given value. If you call this method twice
+     *  with the same value, then each call will be treated as a different entrant in the draw.
+     *  @param numTickets Number of raffle tickets for this entrant.
+     *  @param value Value to be returned when this entrant is drawn.
+     *  @return A handle to the new entrant, for use with {@link #setTickets(int, int)}. */
+    public int add(int numTickets, long value) {
+        int handle = raffle.add(numTickets, 0);
+        if(values.length <= handle)
+            values = Arrays.copyOf(values, Math.max(2 * values.length, handle + 1));
+        values[handle] = value;
+        return handle;
+    }
+
+
+    /** Get the value of an entrant.
+     *  @param handle The handle returned when the entrant was added. */
+    public long get(int handle) {
+        if(!raffle.isEntered(handle))
+            throw new IllegalArgumentException("No entrant with handle " + handle);
+        return values[handle];
+    }
+
+
+    /** Draw an entrant from the pool at random, then remove it from the pool.
+     *  @return The drawn entry, or {@link #EMPTY} if the pool is empty. */
+    public long draw() {
+        int handle = raffle.drawHandle();
+        return handle == -1 ? EMPTY : values[handle];
+    }
+
+
+    /** Remove the first entrant tied to this value.
+     *  This is a linear search. Use {@link #withdraw(int)} where possible. */
+    public boolean remove(long value) {
+        final int size = raffle.numEntries();
+        for(int pos=0; pos<size; pos++) {
+            int handle = raffle.handleAt(pos);
+            if(values[handle] == value)
+                return raffle.withdraw(handle);
+        }
+        return false;
+    }
+
+
+    @Override
+    public String toString() {
+        long[] res = new long[raffle.numEntries()];
+        for(int pos=0; pos<res.length; pos++)
+            res[pos] = values[raffle.handleAt(pos)];
+        return "LongRafflePool{values  "+Arrays.toString(res)+raffle.treeString();
+    }
+}
@@ -0,0 +1,324 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** The ticket tree shared by all raffle pools. The tree is stored in growable
+ *  {@code int[]} arrays so that no boxing happens while entrants are added, drawn or removed.
+ *  Subclasses store the value of each entrant in an array of their own, and keep it in
+ *  step with the tree through {@link #growValues(int)} and {@link #moveValue(int, int)}.
+ *
+ *  <p>Every entrant is given a handle when it is added. The handle stays the same while
+ *  other entrants move around the tree, so it can be used to change the entrant's tickets
+ *  with {@link #setTickets(int, int)} or to remove it with {@link #withdraw(int)}.
+ *  The handles of removed entrants are reused.</p>
+ *  @author Mark Lauman */
+abstract class RaffleTree {
+
+    /** Random instance used to draw items. */
+    private final Random random;
+    /** The number of entrants in the pool. */
+    private int size = 0;
+    /** The total number of tickets in the pool. */
+    private int total = 0;
+    /** The number of tickets given to each entrant. */
+    private int[] tickets;
+    /** The sum of all tickets owned by left-children of each entrant. */
+    private int[] ticketSums;
+    /** The handle of the entrant at each position. */
+    private int[] handles;
+    /** The position of the entrant with each handle, or -1 if the handle is not in use. */
+    private int[] positions;
+    /** Number of handles that have ever been given out (since the last clear). */
+    private int numHandles = 0;
+    /** Handles freed by removed entrants, ready for reuse. */
+    private int[] freeHandles;
+    /** Number of entries in {@link #freeHandles}. */
+    private int numFree = 0;
+
+
+    /** Create a tree with room for the given number of entrants.
+     *  @param numEntrants The expected number of entrants.
+     *  @param random The random number generator used for draws. */
+    RaffleTree(int numEntrants, Random random) {
+        if(numEntrants < 1) numEntrants = 1;
+        this.random = random;
+        tickets = new int[numEntrants];
+        ticketSums = new int[numEntrants];
+        handles = new int[numEntrants];
+        positions = new int[numEntrants];
+        freeHandles = new int[numEntrants];
+    }
+
+    /** Copy the tickets and handles of another tree. The copy draws with the same
+     *  random source, and changes to one tree do not affect the other.
+     *  @param other The tree to copy. */
+    RaffleTree(RaffleTree other) {
+        random = other.random;
+        size = other.size;
+        total = other.total;
+        tickets = Arrays.copyOf(other.tickets, other.tickets.length);
+        ticketSums = Arrays.copyOf(other.ticketSums, other.ticketSums.length);
+        handles = Arrays.copyOf(other.handles, other.handles.length);
+        positions = Arrays.copyOf(other.positions, other.positions.length);
+        numHandles = other.numHandles;
+        freeHandles = Arrays.copyOf(other.freeHandles, other.freeHandles.length);
+        numFree = other.numFree;
+    }
+
+    /** Grow the value array to the given capacity. */
+    abstract void growValues(int capacity);
+
+    /** Copy the value at one position in the pool to another. */
+    abstract void moveValue(int from, int to);
+
+
+    /** Ensures that after this operation the pool can hold the specified
+     *  number of entrants without growing further.
+     *  @param minimumCapacity  The minimum capacity asked for. */
+    public void ensureCapacity(int minimumCapacity) {
+        if(minimumCapacity <= tickets.length) return;
+        tickets = Arrays.copyOf(tickets, minimumCapacity);
+        ticketSums = Arrays.copyOf(ticketSums, minimumCapacity);
+        handles = Arrays.copyOf(handles, minimumCapacity);
+        positions = Arrays.copyOf(positions, minimumCapacity);
+        freeHandles = Arrays.copyOf(freeHandles, minimumCapacity);
+        growValues(minimumCapacity);
+    }
+
+    /** Clears the pool, allowing new entries to be added.
+     *  All handles given out before this call become invalid. */
+    public void clear() {
+        size = 0;
+        total = 0;
+        numHandles = 0;
+        numFree = 0;
+    }
+
+    /** Get the total number of entries in this pool. */
+    public int numEntries() {
+        return size;
+    }
+
+    /** Get the total amount of tickets in the pool. */
+    public int numTickets() {
+        return total;
+    }
+
+
+    /** Check if the entrant with this handle is still in the pool. */
+    public boolean isEntered(int handle) {
+        return 0 <= handle && handle < numHandles && positions[handle] != -1;
+    }
+
+    /** Get the number of tickets held by an entrant.
+     *  @param handle The handle returned when the entrant was added. */
+    public int getTickets(int handle) {
+        return tickets[positionOf(handle)];
+    }
+
+    /** Change the number of tickets held by an entrant. This takes O(log n) time.
+     *  @param handle The handle returned when the entrant was added.
+     *  @param numTickets The new number of tickets. An entrant with 0 tickets stays
+     *                    in the pool, but will never be drawn. */
+    public void setTickets(int handle, int numTickets) {
+        if(numTickets < 0)
+            throw new IllegalArgumentException("numTickets must not be negative");
+        int position = positionOf(handle);
+        int diff = numTickets - tickets[position];
+        tickets[position] = numTickets;
+        total += diff;
+        updateParentSums(position, diff);
+    }
+
+    /** Add to (or take from) the number of tickets held by an entrant.
+     *  This takes O(log n) time.
+     *  @param handle The handle returned when the entrant was added.
+     *  @param ticketDiff The number of tickets to add. May be negative, but the entrant
+     *                    may not be left with less than 0 tickets. */
+    public void adjustTickets(int handle, int ticketDiff) {
+        setTickets(handle, tickets[positionOf(handle)] + ticketDiff);
+    }
+
+    /** Remove the entrant with this handle from the pool.
+     *  @param handle The handle returned when the entrant was added.
+     *  @return True if the entrant was removed, false if it was not in the pool. */
+    public boolean withdraw(int handle) {
+        if(!isEntered(handle)) return false;
+        removeEntry(positions[handle]);
+        return true;
+    }
+
+
+    /** Get the position of the entrant with this handle.
+     *  @throws IllegalArgumentException If the entrant is not in the pool. */
+    int positionOf(int handle) {
+        if(!isEntered(handle))
+            throw new IllegalArgumentException("No entrant with handle " + handle);
+        return positions[handle];
+    }
+
+    /** Get the handle of the entrant at a given position. */
+    int handleAt(int position) {
+        return handles[position];
+    }
+
+
+    /** Get the parent of the entry at the given position. */
+    private static int getParent(int entry) {
+        return (entry-1) / 2;
+    }
+
+    /** Get the left child of this entry */
+    private static int getLeftChild(int entry) {
+        return 2*entry + 1;
+    }
+
+    /** Get the right child of this entry */
+    private static int getRightChild(int entry) {
+        return 2*entry + 2;
+    }
+
+
+    /** Add an entrant to the end of the tree.
+     *  The caller must store the entrant's value at the returned position.
+     *  @param numTickets Number of raffle tickets for this entrant.
+     *  @return The position of the new entrant. Its handle is {@link #handleAt(int)}. */
+    int addEntry(int numTickets) {
+        if(numTickets < 1)
+            throw new IllegalArgumentException("numTickets must be a positive integer bigger than 0");
+        if(size == tickets.length)
+            ensureCapacity(2 * size);
+
+        // Reuse a free handle if there is one.
+        int handle = 0 < numFree ? freeHandles[--numFree] : numHandles++;
+
+        int position = size;
+        tickets[position] = numTickets;
+        ticketSums[position] = 0;
+        handles[position] = handle;
+        positions[handle] = position;
+        size++;
+        total += numTickets;
+        updateParentSums(position, numTickets);
+        return position;
+    }
+
+
+    /** Pick an entrant at random, weighted by their tickets, without removing it.
+     *  To draw without replacement, set the entrant's tickets to 0 with
+     *  {@link #setTickets(int, int)} and restore them later. Unlike removing the entrant,
+     *  this leaves the tree in the same shape, so later draws are reproducible.
+     *  @param random The random number generator to draw with.
+     *  @return The handle of the entrant, or -1 if the pool has no tickets. */
+    public int pick(Random random) {
+        if(total == 0) return -1;
+        return handles[findEntry(random.nextInt(total))];
+    }
+
+
+    /** Pick a random ticket from the pool.
+     *  @return The ticket, or -1 if the pool has no tickets. */
+    int drawTicket() {
+        if(total == 0) return -1;
+        return random.nextInt(total);
+    }
+
+
+    /** Pick a random entrant, weighted by their tickets.
+     *  @return The position of the entrant, or -1 if the pool has no tickets. */
+    int drawPosition() {
+        if(total == 0) return -1;
+        if(size == 1) return 0;
+        return findEntry(random.nextInt(total));
+    }
+
+
+    /** Draw a random entrant, weighted by their tickets, and remove it from the pool.
+     *  Used by pools that keep their values by handle, like {@link LongRafflePool}.
+     *  @return The handle the entrant had, or -1 if the pool has no tickets. */
+    int drawHandle() {
+        int position = drawPosition();
+        if(position == -1) return -1;
+        int handle = handles[position];
+        removeEntry(position);
+        return handle;
+    }
+
+
+    /** Update the ticketSum for all the parents of {@code position}.
+     * @param position The position of the node that has been changed.
+     * @param ticketDiff The difference between the old number of tickets for this entry
+     *                   and the new number of tickets for this entry. */
+    private void updateParentSums(int position, int ticketDiff) {
+        if(ticketDiff == 0) return;
+        int child = position;
+        while(child != 0) {
+            int parent = getParent(child);
+            if(child == getLeftChild(parent))
+                ticketSums[parent] += ticketDiff;
+            child = parent;
+        }
+    }
+
+
+    /** Find the first entry with {@code findSum} tickets before it.
+     *  @param findSum The sum of all entries before this one.
+     *  @return The position of that entry in the pool. */
+    int findEntry(int findSum) {
+        int sum = 0, pos = 0;
+        while(pos < size) {
+            // The total number of tickets before this node
+            int nodeSum = sum + ticketSums[pos];
+            // The number of tickets owned by this node
+            int nodeTickets = tickets[pos];
+
+            // Iterate based off of the contents of this node
+            if(findSum < nodeSum)                  // This node has a larger sum
+                pos = getLeftChild(pos);
+            else if(findSum < nodeSum+nodeTickets) // This node matches our sum
+                return pos;
+            else {                                 // This node has a smaller sum
+                sum = nodeSum + nodeTickets;
+                pos = getRightChild(pos);
+            }
+        }
+        throw new InternalError("FindEntry exceeded the bounds of the pool");
+    }
+
+
+    /** Removes the entry at the given position. The last entry in the pool is moved
+     *  into its place, so callers must read the entry's value before calling this.
+     *  Subclasses that index their values may override this to keep the index up to date.
+     *  @param position Position of the entry in the pool. */
+    void removeEntry(int position) {
+        final int lastItem = size-1;
+        if(lastItem == -1) return;
+
+        // Free the handle of the removed entry
+        final int handle = handles[position];
+        positions[handle] = -1;
+        freeHandles[numFree++] = handle;
+        total -= tickets[position];
+
+        // Swap the last item in the raffle pool into this position (less updates that way)
+        final int lastTickets = tickets[lastItem];
+        updateParentSums(position, lastTickets - tickets[position]);
+        updateParentSums(lastItem, -lastTickets);
+        if(position != lastItem) {
+            tickets[position] = lastTickets;
+            handles[position] = handles[lastItem];
+            positions[handles[position]] = position;
+            moveValue(lastItem, position);
+            // ticketSum is already correct, no need to overwrite
+        }
+        size--;
+    }
+
+
+    /** Get the tickets and sums of this tree as a string (for toString). */
+    String treeString() {
+        return "\n           tickets "+Arrays.toString(Arrays.copyOf(tickets, size))
+              +"\n           sum     "+Arrays.toString(Arrays.copyOf(ticketSums, size))+"}";
+    }
+}
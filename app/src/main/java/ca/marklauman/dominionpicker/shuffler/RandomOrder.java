@@ -0,0 +1,30 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/** Puts a set of cards in a random order in a single pass.
+ *
+ *  <p>This is the "inside-out" Fisher-Yates shuffle: each card is placed at a random
+ *  position among the cards streamed so far, and the card that was there moves to the
+ *  end. It is reservoir sampling with a reservoir as large as the stream, so every
+ *  order is equally likely. The cards are shuffled as they are read from the bitset,
+ *  so there is no separate copy or sort.</p>
+ *  @author Mark Lauman */
+public abstract class RandomOrder {
+
+    /** Put the cards in a bitset in a random order.
+     *  @param cards The catalog indexes of the cards.
+     *  @param random The source of randomness for the order.
+     *  @return The catalog indexes, in a random order. */
+    public static int[] of(BitSet cards, Random random) {
+        int[] res = new int[cards.cardinality()];
+        int i = 0;
+        for(int card = cards.nextSetBit(0); 0 <= card; card = cards.nextSetBit(card+1)) {
+            int pos = random.nextInt(i+1);
+            res[i++] = res[pos];
+            res[pos] = card;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,154 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+
+/** Keeps a "recency score" for each card, so that cards seen in recent supplies can be
+ *  drawn less often. Each supply recorded adds 1 to the score of its cards, and every
+ *  score decays by {@link #DECAY} with each supply recorded after that.
+ *
+ *  <p>Scores are kept up to date one supply at a time. Instead of decaying every score on
+ *  each supply, scores are stored relative to the first supply recorded and scaled when
+ *  they are read. A supply only touches the scores of its own cards, so recording
+ *  one costs the same no matter how many supplies came before it.</p>
+ *
+ *  <p>The scores are kept in a hash table of primitive arrays (card ids and their stored
+ *  scores, found by linear probing), so recording a supply or reading a score does not
+ *  box any values.</p>
+ *
+ *  <p>All methods are synchronized, so the scores may be shared between threads.</p>
+ *  @author Mark Lauman */
+public class RecencyScores {
+
+    /** How much of a card's score is left after each supply. */
+    public static final double DECAY = 0.8;
+    /** The number of supplies after which a score is too small to matter
+     *  (it has decayed to less than 1%). Older supplies do not need to be recorded. */
+    public static final int HORIZON = 21;
+    /** How strongly a score lowers a card's weight. A card in the last supply has its
+     *  weight divided by {@code 1 + PENALTY}. */
+    public static final double PENALTY = 3.0;
+    /** The number of tickets given for each point of weight.
+     *  This leaves room to lower a weight without rounding it down to nothing. */
+    public static final int SCALE = 16;
+
+    /** Stored scores are rescaled once they grow past this, so they never overflow. */
+    private static final double RESCALE = 1e100;
+    /** Marks an empty slot in {@link #ids}. Card ids are never negative. */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /** The card id in each slot of the hash table, or {@link #EMPTY}.
+     *  The length is always a power of two. */
+    private long[] ids = newTable(64);
+    /** The stored score of the card in each slot. The real score is the stored score
+     *  times {@link #factor}. */
+    private double[] scores = new double[ids.length];
+    /** The number of cards in the table. */
+    private int size = 0;
+    /** The amount added to a stored score when a card is recorded. */
+    private double step = 1.0;
+    /** Turns a stored score into a real score ({@code 1 / step}). */
+    private double factor = 1.0;
+    /** The number of supplies recorded so far. */
+    private long version = 0L;
+
+
+    /** Record a supply. Each card in it has its score raised by 1,
+     *  after every score has decayed by one supply.
+     *  @param cards The ids of the cards in the supply. */
+    public synchronized void record(long[] cards) {
+        step /= DECAY;
+        factor = 1.0 / step;
+        for(long id : cards) {
+            int slot = slotOf(id);
+            if(ids[slot] == EMPTY) {
+                ids[slot] = id;
+                scores[slot] = 0.0;
+                size++;
+            }
+            scores[slot] += step;
+            // Keep the table at most half full, so probes stay short
+            if(ids.length < 2 * size) rebuild(ids.length * 2, 1.0);
+        }
+        version++;
+        if(RESCALE < step) {
+            rebuild(ids.length, factor);
+            step = 1.0;
+            factor = 1.0;
+        }
+    }
+
+
+    /** Get a hash table with every slot empty. */
+    private static long[] newTable(int length) {
+        long[] res = new long[length];
+        Arrays.fill(res, EMPTY);
+        return res;
+    }
+
+
+    /** Find the slot of a card: the slot that holds it,
+     *  or the empty slot it would go in. */
+    private int slotOf(long id) {
+        int mask = ids.length - 1;
+        // Mix the bits of the id, as the ids of a set are close together
+        long hash = id * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while(ids[slot] != EMPTY && ids[slot] != id)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+
+    /** Move every card into a new table, with its stored score multiplied by
+     *  {@code scale}. Scores too small to matter are dropped. When called with
+     *  {@link #factor}, this turns every stored score into a real score, so {@link #step}
+     *  can start again at 1. That is rare (about once every thousand supplies), so
+     *  recording a supply still costs the same on average.
+     *  @param length The length of the new table (a power of two).
+     *  @param scale The amount to multiply each stored score by. */
+    private void rebuild(int length, double scale) {
+        long[] oldIds = ids;
+        double[] oldScores = scores;
+        ids = newTable(length);
+        scores = new double[length];
+        size = 0;
+        for(int i=0; i<oldIds.length; i++) {
+            if(oldIds[i] == EMPTY) continue;
+            if(oldScores[i] * factor < 1e-6) continue;
+            int slot = slotOf(oldIds[i]);
+            ids[slot] = oldIds[i];
+            scores[slot] = oldScores[i] * scale;
+            size++;
+        }
+    }
+
+
+    /** Get the recency score of a card.
+     *  @param id The id of the card.
+     *  @return The score. This is 0 for cards that have never been recorded,
+     *  1 for a card that was only in the last supply,
+     *  and approaches {@code 1/(1-DECAY)} for a card that is in every supply. */
+    public synchronized double scoreOf(long id) {
+        int slot = slotOf(id);
+        return ids[slot] == EMPTY ? 0.0 : scores[slot] * factor;
+    }
+
+
+    /** Get the number of raffle tickets a card should have.
+     *  @param weight The weight of the card (see {@link CardWeights}).
+     *  @param id The id of the card.
+     *  @return The weight times {@link #SCALE}, lowered by the card's score.
+     *  A card with weight always keeps at least 1 ticket. */
+    public synchronized int ticketsOf(int weight, long id) {
+        if(weight < 1) return 0;
+        double tickets = weight * SCALE / (1.0 + PENALTY * scoreOf(id));
+        return Math.max(1, (int) Math.round(tickets));
+    }
+
+
+    /** Get the number of supplies recorded so far. This changes whenever the scores do,
+     *  so it can be used to tell if the scores have changed. */
+    public synchronized long version() {
+        return version;
+    }
+}
@@ -0,0 +1,235 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.marklauman.dominionpicker.shuffler.ConstraintSolver.Rule;
+
+/** Shuffles supplies from a {@link CardCatalog} and a {@link ShuffleRequest}.
+ *  Nothing here reads the preferences or the database, so the same catalog, request
+ *  and seed always give the same supply, on any thread and on any JVM.
+ *  @author Mark Lauman */
+public abstract class ShuffleEngine {
+
+    /** Name of the +Buy rule. */
+    public static final String RULE_BUY = "rule_buy";
+    /** Name of the village rule. */
+    public static final String RULE_VILLAGE = "rule_village";
+    /** Name of the attack rule. */
+    public static final String RULE_ATTACKS = "rule_attacks";
+    /** Name of the cost spread rules (followed by the cost). */
+    public static final String RULE_COST_SPREAD = "rule_cost_spread";
+    /** Name of the cost curve rules (followed by the stratum). */
+    public static final String RULE_COST_CURVE = "rule_cost_curve";
+
+    /** The cost ranges of the cost curve: 2-3, 4-5 and 6 or more
+     *  (coins plus debt, see {@link StratifiedSampler}). */
+    public static final int[] COST_CURVE = {2, 4, 6};
+    /** The minimum number of kingdom cards from each range of the {@link #COST_CURVE}. */
+    public static final int[] COST_CURVE_QUOTAS = {2, 4, 1};
+
+
+    /** Shuffle a supply.
+     *  @param catalog The catalog the cards come from.
+     *  @param request The settings of the shuffle.
+     *  @param seed The random seed of the supply.
+     *  @return The supply. If it could not be completed,
+     *  {@link ShuffleSupply#isComplete()} is false. */
+    public static ShuffleSupply shuffle(CardCatalog catalog, ShuffleRequest request, long seed) {
+        Random random = new Random(seed);
+        ShuffleSupply supply = newSupply(catalog, request, random);
+        if(supply.needsKingdom())
+            newPool(catalog, request).fill(supply, random);
+        return supply;
+    }
+
+
+    /** Shuffle a batch of supplies, split into one contiguous chunk per thread.
+     *  Every supply has its own seed derived from the master seed
+     *  (see {@link #seedFor(long, int)}), so a batch is the same no matter how many
+     *  threads it is split between.
+     *  @param catalog The catalog the cards come from.
+     *  @param request The settings of the shuffle.
+     *  @param pool The pool built from the request. Each thread draws from its own copy.
+     *  @param count The number of supplies to shuffle.
+     *  @param masterSeed The seed of the batch.
+     *  @param threads The most threads to use.
+     *  @return The supplies, in order. If a supply could not be completed,
+     *  {@link ShuffleSupply#isComplete()} is false.
+     *  @throws InterruptedException If the thread is interrupted while waiting. */
+    public static ShuffleSupply[] shuffleBatch(final CardCatalog catalog,
+                                               final ShuffleRequest request,
+                                               final CardPool pool, int count,
+                                               final long masterSeed, int threads)
+            throws InterruptedException {
+        final ShuffleSupply[] res = new ShuffleSupply[Math.max(count, 0)];
+        if(res.length == 0) return res;
+
+        // Split the batch into one contiguous chunk per thread.
+        threads = Math.max(1, Math.min(res.length, threads));
+        final int chunk = (res.length + threads - 1) / threads;
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(threads);
+        for(int start=0; start<res.length; start+=chunk) {
+            final int first = start;
+            final int last = Math.min(start+chunk, res.length);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    // Each thread draws from its own copy of the pool
+                    CardPool threadPool = pool.copy();
+                    for(int i=first; i<last; i++) {
+                        Random random = new Random(seedFor(masterSeed, i));
+                        ShuffleSupply supply = newSupply(catalog, request, random);
+                        if(supply.needsKingdom()) threadPool.fill(supply, random);
+                        res[i] = supply;
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // Run the tasks and wait for them to finish.
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for(Future<Void> task : executor.invokeAll(tasks))
+                task.get();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return res;
+    }
+
+
+    /** Derive the seed for one supply in a batch. This is the SplitMix64 mixing function,
+     *  so neighbouring supplies get unrelated seeds.
+     *  @param masterSeed The seed of the batch.
+     *  @param index The position of the supply in the batch. */
+    public static long seedFor(long masterSeed, int index) {
+        long z = masterSeed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /** Create an empty supply of the size given by a request.
+     *  @param catalog The catalog the cards will come from.
+     *  @param request The settings of the shuffle.
+     *  @param random Source of randomness for the supply. */
+    public static ShuffleSupply newSupply(CardCatalog catalog, ShuffleRequest request,
+                                          Random random) {
+        return new ShuffleSupply(catalog, request.minKingdom, request.maxSpecial, random);
+    }
+
+
+    /** Build the pool of cards allowed by a request. The cards that pass the filter are
+     *  split into required cards and the rest. Deselected cards are left out.
+     *  If the request has weights, the pool is weighted. If it has rules,
+     *  the pool is given a solver for them. If the cost curve is the only rule and the
+     *  pool is not weighted, the pool draws with a {@link StratifiedSampler} instead.
+     *  The sampler draws every card evenly, so weighted pools leave the cost curve to
+     *  the solver, which tries the cards in a weighted order.
+     *  If the request asks for anti-repeat, the pool is always weighted (and so never uses
+     *  the sampler), so that {@link CardPool#setRecency} can lower the weight of recent
+     *  cards. The scores themselves are not part of the request, so they are left to the
+     *  caller.
+     *  @param catalog The catalog the cards come from.
+     *  @param request The settings of the shuffle. */
+    public static CardPool newPool(CardCatalog catalog, ShuffleRequest request) {
+        BitSet visible = request.getFilter().compile(catalog);
+        BitSet required = toBits(catalog, request.getRequired());
+        required.and(visible);
+        BitSet optional = visible;
+        optional.andNot(toBits(catalog, request.getDeselected()));
+        optional.andNot(required);
+
+        int[] pool = toArray(optional);
+        CardWeights weights = request.getWeights();
+        int[] cardWeights = weights.isUniform() && !request.antiRepeat
+                            ? null : weights.weightsOf(catalog, pool);
+        CardPool res = new CardPool(catalog, toArray(required), pool, cardWeights);
+        res.setSolver(newSolver(catalog, request));
+        if(request.ruleCostCurve && !request.ruleBuy && !request.ruleVillage
+           && !request.ruleAttacks && !request.ruleCostSpread && cardWeights == null)
+            res.setSampler(new StratifiedSampler(catalog, pool, COST_CURVE,
+                                                 curveQuotas(request.minKingdom)));
+        return res;
+    }
+
+
+    /** Build a solver for the rules of a request.
+     *  @return The solver, or null if the request has no rules. */
+    public static ConstraintSolver newSolver(CardCatalog catalog, ShuffleRequest request) {
+        if(!request.hasRules()) return null;
+        ArrayList<Rule> rules = new ArrayList<>();
+        if(request.ruleBuy)
+            rules.add(Rule.atLeast(RULE_BUY, catalog.withFlag(CardCatalog.FLAG_PLUS_BUY), 1));
+        if(request.ruleVillage)
+            rules.add(Rule.atLeast(RULE_VILLAGE, catalog.withFlag(CardCatalog.FLAG_VILLAGE), 1));
+        if(request.ruleAttacks)
+            rules.add(Rule.atMost(RULE_ATTACKS, catalog.withFlag(CardCatalog.FLAG_ATTACK), 2));
+        if(request.ruleCostSpread) {
+            for(int cost=2; cost<=5; cost++) {
+                BitSet cards = catalog.withCost(cost);
+                cards.and(catalog.kingdomCards());
+                rules.add(Rule.atLeast(RULE_COST_SPREAD + cost, cards, 1));
+            }
+        }
+        if(request.ruleCostCurve) {
+            int[] quotas = curveQuotas(request.minKingdom);
+            BitSet[] strata = new BitSet[COST_CURVE.length];
+            for(int s=0; s<strata.length; s++)
+                strata[s] = new BitSet(catalog.size());
+            for(int card=0; card<catalog.size(); card++) {
+                int s = StratifiedSampler.stratumOf(catalog, card, COST_CURVE);
+                if(0 <= s && !catalog.isSpecial(card)) strata[s].set(card);
+            }
+            for(int s=0; s<strata.length; s++)
+                rules.add(Rule.atLeast(RULE_COST_CURVE + s, strata[s], quotas[s]));
+        }
+        return new ConstraintSolver(catalog, rules.toArray(new Rule[rules.size()]));
+    }
+
+
+    /** Get the quotas of the {@link #COST_CURVE} for a supply. If the supply is too small
+     *  for all of them, the cheaper ranges are filled first.
+     *  @param minKingdom The number of kingdom cards in the supply. */
+    public static int[] curveQuotas(int minKingdom) {
+        int[] res = new int[COST_CURVE_QUOTAS.length];
+        int left = Math.max(minKingdom, 0);
+        for(int s=0; s<res.length; s++) {
+            res[s] = Math.min(COST_CURVE_QUOTAS[s], left);
+            left -= res[s];
+        }
+        return res;
+    }
+
+
+    /** Turn a list of card ids into a bitset of catalog indexes. Unknown ids are skipped. */
+    private static BitSet toBits(CardCatalog catalog, long[] ids) {
+        BitSet res = new BitSet(catalog.size());
+        for(long id : ids) {
+            int card = catalog.indexOf(id);
+            if(card != -1) res.set(card);
+        }
+        return res;
+    }
+
+
+    /** Turn a bitset of catalog indexes into an array. */
+    private static int[] toArray(BitSet cards) {
+        int[] res = new int[cards.cardinality()];
+        int i = 0;
+        for(int card = cards.nextSetBit(0); 0 <= card; card = cards.nextSetBit(card+1))
+            res[i++] = card;
+        return res;
+    }
+}
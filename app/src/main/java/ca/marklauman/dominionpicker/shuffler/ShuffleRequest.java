@@ -0,0 +1,297 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** Everything that decides how a supply is shuffled: the size of the supply, the card
+ *  filters, the cards deselected or required in the picker, the shuffle weights and
+ *  the shuffle rules. A request is captured once (usually from the preferences) and
+ *  never changes, so it may be handed to other threads, used as a cache key
+ *  ({@link #equals(Object)} and {@link #hashCode()} compare every setting), or
+ *  serialized and shuffled somewhere else. See {@link ShuffleEngine}.
+ *
+ *  <p>Requests are made with a {@link Builder}.</p>
+ *  @author Mark Lauman */
+public final class ShuffleRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of kingdom cards in the supply. */
+    public final int minKingdom;
+    /** Maximum number of events and landmarks in the supply. */
+    public final int maxSpecial;
+
+    // The card filters (see CardFilter)
+    /** Comma separated ids of the sets that are allowed. */
+    private final String sets;
+    /** Comma separated coin costs that are filtered out. */
+    private final String costs;
+    /** Comma separated debt costs that are filtered out. */
+    private final String debts;
+    /** True if cards with potions are allowed. */
+    private final boolean potions;
+    /** True if curse givers are allowed. */
+    private final boolean cursers;
+    /** Comma separated edition chosen for each set. */
+    private final String editions;
+
+    /** Ids of the cards deselected in the picker. Sorted, with no repeats. */
+    private final long[] deselected;
+    /** Ids of the cards required by the picker. Sorted, with no repeats. */
+    private final long[] required;
+
+    /** The weight of each set (see {@link CardWeights#parse(String, String)}). */
+    private final String setWeights;
+    /** The weights of single cards (see {@link CardWeights#parse(String, String)}). */
+    private final String cardWeights;
+
+    /** True if the supply needs a +Buy. */
+    public final boolean ruleBuy;
+    /** True if the supply needs a village. */
+    public final boolean ruleVillage;
+    /** True if the supply may not have more than 2 attacks. */
+    public final boolean ruleAttacks;
+    /** True if the supply needs a card at each cost from 2 to 5. */
+    public final boolean ruleCostSpread;
+    /** True if the supply needs a cost curve (see {@link ShuffleEngine#COST_CURVE}). */
+    public final boolean ruleCostCurve;
+    /** True if cards from recent supplies should be drawn less often
+     *  (see {@link RecencyScores}). */
+    public final boolean antiRepeat;
+
+    /** The hash code, once it has been worked out (0 before that). */
+    private transient int hash = 0;
+
+
+    /** Constructor used by the {@link Builder}. */
+    private ShuffleRequest(Builder b) {
+        minKingdom = b.minKingdom;
+        maxSpecial = b.maxSpecial;
+        sets = b.sets;
+        costs = b.costs;
+        debts = b.debts;
+        potions = b.potions;
+        cursers = b.cursers;
+        editions = b.editions;
+        deselected = sortedIds(b.deselected);
+        required = sortedIds(b.required);
+        setWeights = b.setWeights;
+        cardWeights = b.cardWeights;
+        ruleBuy = b.ruleBuy;
+        ruleVillage = b.ruleVillage;
+        ruleAttacks = b.ruleAttacks;
+        ruleCostSpread = b.ruleCostSpread;
+        ruleCostCurve = b.ruleCostCurve;
+        antiRepeat = b.antiRepeat;
+    }
+
+
+    /** Sort a list of ids and remove any repeats. The list is not changed. */
+    private static long[] sortedIds(long[] ids) {
+        long[] res = Arrays.copyOf(ids, ids.length);
+        Arrays.sort(res);
+        int size = 0;
+        for(int i=0; i<res.length; i++)
+            if(i == 0 || res[i] != res[i-1]) res[size++] = res[i];
+        return Arrays.copyOf(res, size);
+    }
+
+
+    /** Get the filter that hides cards from the picker. */
+    public CardFilter getFilter() {
+        return new CardFilter(sets, costs, debts, potions, cursers, editions);
+    }
+
+
+    /** Get the weight of each card. */
+    public CardWeights getWeights() {
+        return CardWeights.parse(setWeights, cardWeights);
+    }
+
+
+    /** Get the ids of the cards deselected in the picker (sorted).
+     *  @return A copy of the ids, which may be changed. */
+    public long[] getDeselected() {
+        return Arrays.copyOf(deselected, deselected.length);
+    }
+
+
+    /** Get the ids of the cards required by the picker (sorted).
+     *  @return A copy of the ids, which may be changed. */
+    public long[] getRequired() {
+        return Arrays.copyOf(required, required.length);
+    }
+
+
+    /** Check if a card has been deselected in the picker. */
+    public boolean isDeselected(long id) {
+        return 0 <= Arrays.binarySearch(deselected, id);
+    }
+
+
+    /** Check if a card is required by the picker. */
+    public boolean isRequired(long id) {
+        return 0 <= Arrays.binarySearch(required, id);
+    }
+
+
+    /** Check if any shuffle rules are active. */
+    public boolean hasRules() {
+        return ruleBuy || ruleVillage || ruleAttacks || ruleCostSpread || ruleCostCurve;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof ShuffleRequest)) return false;
+        ShuffleRequest r = (ShuffleRequest) o;
+        return minKingdom == r.minKingdom && maxSpecial == r.maxSpecial
+               && potions == r.potions && cursers == r.cursers
+               && ruleBuy == r.ruleBuy && ruleVillage == r.ruleVillage
+               && ruleAttacks == r.ruleAttacks && ruleCostSpread == r.ruleCostSpread
+               && ruleCostCurve == r.ruleCostCurve && antiRepeat == r.antiRepeat
+               && sets.equals(r.sets) && costs.equals(r.costs) && debts.equals(r.debts)
+               && editions.equals(r.editions)
+               && setWeights.equals(r.setWeights) && cardWeights.equals(r.cardWeights)
+               && Arrays.equals(deselected, r.deselected)
+               && Arrays.equals(required, r.required);
+    }
+
+
+    @Override
+    public int hashCode() {
+        if(hash != 0) return hash;
+        int res = minKingdom;
+        res = 31*res + maxSpecial;
+        res = 31*res + (potions ? 1 : 0);
+        res = 31*res + (cursers ? 1 : 0);
+        res = 31*res + (ruleBuy ? 1 : 0);
+        res = 31*res + (ruleVillage ? 1 : 0);
+        res = 31*res + (ruleAttacks ? 1 : 0);
+        res = 31*res + (ruleCostSpread ? 1 : 0);
+        res = 31*res + (ruleCostCurve ? 1 : 0);
+        res = 31*res + (antiRepeat ? 1 : 0);
+        res = 31*res + sets.hashCode();
+        res = 31*res + costs.hashCode();
+        res = 31*res + debts.hashCode();
+        res = 31*res + editions.hashCode();
+        res = 31*res + setWeights.hashCode();
+        res = 31*res + cardWeights.hashCode();
+        res = 31*res + Arrays.hashCode(deselected);
+        res = 31*res + Arrays.hashCode(required);
+        hash = res;
+        return res;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ShuffleRequest[" + minKingdom + " kingdom, " + maxSpecial + " special, "
+               + "sets=" + sets + ", " + deselected.length + " deselected, "
+               + required.length + " required]";
+    }
+
+
+    /** Collects the settings of a {@link ShuffleRequest}.
+     *  Any setting that is not given keeps the app's default. */
+    public static class Builder {
+        private int minKingdom = 10;
+        private int maxSpecial = 2;
+        private String sets = "";
+        private String costs = "";
+        private String debts = "";
+        private boolean potions = true;
+        private boolean cursers = true;
+        private String editions = "";
+        private long[] deselected = new long[0];
+        private long[] required = new long[0];
+        private String setWeights = "";
+        private String cardWeights = "";
+        private boolean ruleBuy = false;
+        private boolean ruleVillage = false;
+        private boolean ruleAttacks = false;
+        private boolean ruleCostSpread = false;
+        private boolean ruleCostCurve = false;
+        private boolean antiRepeat = false;
+
+        /** Set the size of the supply.
+         *  @param minKingdom Number of kingdom cards in the supply.
+         *  @param maxSpecial Maximum number of events and landmarks in the supply.
+         *  @return This builder. */
+        public Builder setLimits(int minKingdom, int maxSpecial) {
+            this.minKingdom = minKingdom;
+            this.maxSpecial = maxSpecial;
+            return this;
+        }
+
+        /** Set the card filters. The arguments are the same as
+         *  {@link CardFilter#CardFilter(String, String, String, boolean, boolean, String)}.
+         *  @return This builder. */
+        public Builder setFilter(String sets, String costs, String debts,
+                                 boolean potions, boolean cursers, String editions) {
+            this.sets = sets;
+            this.costs = costs;
+            this.debts = debts;
+            this.potions = potions;
+            this.cursers = cursers;
+            this.editions = editions;
+            return this;
+        }
+
+        /** Set the cards deselected and required in the picker.
+         *  A card that is both is treated as required.
+         *  @param deselected Ids of the deselected cards.
+         *  @param required Ids of the required cards.
+         *  @return This builder. */
+        public Builder setCards(long[] deselected, long[] required) {
+            this.deselected = deselected;
+            this.required = required;
+            return this;
+        }
+
+        /** Set the shuffle weights. The arguments are the same as
+         *  {@link CardWeights#parse(String, String)}.
+         *  @return This builder. */
+        public Builder setWeights(String setWeights, String cardWeights) {
+            this.setWeights = setWeights;
+            this.cardWeights = cardWeights;
+            return this;
+        }
+
+        /** Set which shuffle rules are active.
+         *  @param buy The supply needs a +Buy.
+         *  @param village The supply needs a village.
+         *  @param attacks The supply may not have more than 2 attacks.
+         *  @param costSpread The supply needs a card at each cost from 2 to 5.
+         *  @return This builder. */
+        public Builder setRules(boolean buy, boolean village, boolean attacks,
+                                boolean costSpread) {
+            ruleBuy = buy;
+            ruleVillage = village;
+            ruleAttacks = attacks;
+            ruleCostSpread = costSpread;
+            return this;
+        }
+
+        /** Set if the supply needs a cost curve (see {@link ShuffleEngine#COST_CURVE}).
+         *  @return This builder. */
+        public Builder setCostCurve(boolean costCurve) {
+            ruleCostCurve = costCurve;
+            return this;
+        }
+
+        /** Set if cards from recent supplies should be drawn less often
+         *  (see {@link RecencyScores}).
+         *  @return This builder. */
+        public Builder setAntiRepeat(boolean antiRepeat) {
+            this.antiRepeat = antiRepeat;
+            return this;
+        }
+
+        /** Make the request. */
+        public ShuffleRequest build() {
+            return new ShuffleRequest(this);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** What is left over after a supply has been shuffled: the cards that were not drawn
+ *  and the shuffle rules that still apply. It is kept after the shuffle so that a card
+ *  dismissed from the supply can be replaced without shuffling again.
+ *
+ *  <p>Undrawn cards are held in two raffles (kingdom cards and specials) using the same
+ *  weights as the {@link CardPool}, and draw with the session's source of randomness.
+ *  Each card drawn takes O(log n) time. A dismissed card is never drawn again.
+ *  A replacement must keep the supply within the rules of the {@link ConstraintSolver}
+ *  (if there is one), and cards that would break them are set aside until one is found.
+ *  So a replacement under strict rules (or for the bane) may draw every card left in the
+ *  pool, which is O(n log n). The bane counts towards the rules like any other kingdom
+ *  card, and a replacement for the bane is drawn from the cards that fit its
+ *  {@link SidePile}.
+ *  Cards that need a side pile (like the Young Witch) are never drawn as a replacement.</p>
+ *
+ *  <p>All methods are synchronized, so a session may be shared between threads.</p>
+ *  @author Mark Lauman */
+public class ShuffleSession {
+
+    /** Returned by {@link #replace(long)} if no card could replace the dismissed one. */
+    public static final long NO_CARD = -1L;
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+    /** Undrawn kingdom cards. */
+    private final IntRafflePool kingdom;
+    /** Undrawn events and landmarks. */
+    private final IntRafflePool special;
+    /** Checks the shuffle rules. Null if there are no rules. */
+    private final ConstraintSolver solver;
+    /** The source of randomness for replacements. */
+    private final Random random;
+    /** The cards that may fill each side pile. */
+    private final SidePile.Index sidePiles;
+
+    /** The cards in the supply (catalog indexes), in supply order. */
+    private int[] cards;
+    /** Catalog index of the bane card, or -1 if there isn't one. */
+    private int bane;
+    /** Cards set aside during a replacement, stored as pairs of raffle handle and tickets. */
+    private int[] rejected = new int[8];
+
+
+    /** Create a session for a supply.
+     *  @param catalog The catalog the cards come from.
+     *  @param optional The cards that could have been drawn into the supply.
+     *  @param weights The weight of each optional card, or null to give every card
+     *                 the same weight.
+     *  @param sidePiles The cards that may fill each side pile.
+     *  @param solver Checks the shuffle rules, or null if there are none.
+     *                The session keeps this solver, so it should be a copy.
+     *  @param supply The ids of the cards in the supply.
+     *  @param bane The id of the bane card, or -1 if there isn't one.
+     *  @param random The source of randomness for replacements. */
+    ShuffleSession(CardCatalog catalog, int[] optional, int[] weights,
+                   SidePile.Index sidePiles, ConstraintSolver solver,
+                   long[] supply, long bane, Random random) {
+        this.catalog = catalog;
+        this.solver = solver;
+        this.random = random;
+        this.sidePiles = sidePiles;
+
+        // The supply, in catalog indexes. Unknown cards are dropped.
+        cards = new int[supply.length];
+        int size = 0;
+        for(long id : supply) {
+            int card = catalog.indexOf(id);
+            if(card != -1) cards[size++] = card;
+        }
+        cards = Arrays.copyOf(cards, size);
+        this.bane = bane == -1L ? -1 : catalog.indexOf(bane);
+
+        // Every optional card not in the supply goes into a raffle.
+        kingdom = new IntRafflePool(optional.length, random);
+        special = new IntRafflePool(8, random);
+        for(int i=0; i<optional.length; i++) {
+            int card = optional[i];
+            int weight = weights == null ? CardWeights.DEFAULT : weights[i];
+            if(weight < 1 || sidePiles.pileOf(card) != -1 || indexOf(card) != -1) continue;
+            if(catalog.isSpecial(card)) special.add(weight, card);
+            else kingdom.add(weight, card);
+        }
+    }
+
+
+    /** Replace a card in the supply with a card drawn from the rest of the pool.
+     *  The dismissed card is never drawn again. If the card that needs the bane (the
+     *  young witch) is dismissed, the bane becomes an ordinary kingdom card in her slot
+     *  and nothing is drawn to replace her.
+     *  @param id The id of the dismissed card.
+     *  @return The id of the card that replaced it.
+     *  {@link #NO_CARD} if no card replaced it, in which case it is removed from the supply. */
+    public synchronized long replace(long id) {
+        int dismissed = catalog.indexOf(id);
+        int pos = dismissed == -1 ? -1 : indexOf(dismissed);
+        if(pos == -1) return NO_CARD;
+
+        int card = -1;
+        if(dismissed != bane && sidePiles.pileOf(dismissed) != -1) bane = -1;
+        else if(catalog.isSpecial(dismissed)) card = drawSpecial();
+        else card = drawKingdom(pos, dismissed == bane ? banePile() : -1);
+
+        // Put the new card in the dismissed card's place
+        if(card == -1) {
+            int[] res = new int[cards.length - 1];
+            System.arraycopy(cards, 0, res, 0, pos);
+            System.arraycopy(cards, pos+1, res, pos, res.length - pos);
+            cards = res;
+            if(dismissed == bane) bane = -1;
+            return NO_CARD;
+        }
+        cards[pos] = card;
+        if(dismissed == bane) bane = card;
+        return catalog.getId(card);
+    }
+
+
+    /** Draw an event or landmark from the pool.
+     *  @return The catalog index of the card, or -1 if there are none left. */
+    private int drawSpecial() {
+        int handle = special.pick(random);
+        if(handle == IntRafflePool.EMPTY) return -1;
+        int card = special.get(handle);
+        special.withdraw(handle);
+        return card;
+    }
+
+
+    /** Get the side pile that the bane belongs to (the pile of the first card in the
+     *  supply that needs one), or -1 if there is none. */
+    private int banePile() {
+        for(int card : cards) {
+            int pile = sidePiles.pileOf(card);
+            if(pile != -1) return pile;
+        }
+        return -1;
+    }
+
+
+    /** Draw a kingdom card that keeps the supply within the rules.
+     *  Cards that would break a rule are set aside (their tickets are taken away),
+     *  and are put back in the pool once a card is found. If no card keeps the supply
+     *  within the rules, the first card set aside is used.
+     *  @param pos The position of the dismissed card in the supply.
+     *  @param pile The side pile the card must fit, or -1 if it is an ordinary kingdom
+     *              card.
+     *  @return The catalog index of the card, or -1 if there are none left. */
+    private int drawKingdom(int pos, int pile) {
+        int[] kingdomCards = solver == null ? null : kingdomCards(pos);
+
+        int numRejected = 0;
+        int found = IntRafflePool.EMPTY;
+        int fallback = IntRafflePool.EMPTY;
+        while(true) {
+            int handle = kingdom.pick(random);
+            if(handle == IntRafflePool.EMPTY) break;
+            int card = kingdom.get(handle);
+            boolean allowed = pile == -1 || sidePiles.fits(pile, card);
+            if(allowed && kingdomCards == null) {
+                found = handle;
+                break;
+            }
+            if(allowed) {
+                kingdomCards[kingdomCards.length-1] = card;
+                if(solver.meets(kingdomCards)) {
+                    found = handle;
+                    break;
+                }
+                if(fallback == IntRafflePool.EMPTY) fallback = handle;
+            }
+
+            // Set the card aside
+            if(rejected.length <= 2*numRejected+1)
+                rejected = Arrays.copyOf(rejected, 4*numRejected+2);
+            rejected[2*numRejected] = handle;
+            rejected[2*numRejected+1] = kingdom.getTickets(handle);
+            numRejected++;
+            kingdom.setTickets(handle, 0);
+        }
+        if(found == IntRafflePool.EMPTY) found = fallback;
+
+        // Put back the cards that were set aside
+        for(int i=0; i<numRejected; i++)
+            kingdom.setTickets(rejected[2*i], rejected[2*i+1]);
+        if(found == IntRafflePool.EMPTY) return -1;
+        int card = kingdom.get(found);
+        kingdom.withdraw(found);
+        return card;
+    }
+
+
+    /** Get the kingdom cards in the supply (including the bane), leaving out the card
+     *  at {@code skip}. The last entry is left free for a replacement card. */
+    private int[] kingdomCards(int skip) {
+        int[] res = new int[cards.length];
+        int size = 0;
+        for(int i=0; i<cards.length; i++)
+            if(i != skip && !catalog.isSpecial(cards[i]))
+                res[size++] = cards[i];
+        return Arrays.copyOf(res, size+1);
+    }
+
+
+    /** Get the position of a card in the supply, or -1 if it isn't there. */
+    private int indexOf(int card) {
+        for(int i=0; i<cards.length; i++)
+            if(cards[i] == card) return i;
+        return -1;
+    }
+
+
+    /** Get the ids of the cards in the supply, in supply order. */
+    public synchronized long[] getCards() {
+        long[] res = new long[cards.length];
+        for(int i=0; i<cards.length; i++)
+            res[i] = catalog.getId(cards[i]);
+        return res;
+    }
+
+
+    /** Get the id of the bane card, or -1 if there isn't one. */
+    public synchronized long getBane() {
+        return bane == -1 ? -1L : catalog.getId(bane);
+    }
+
+
+    /** Get the number of undrawn cards left in the session (kingdom cards and specials). */
+    public synchronized int remaining() {
+        return kingdom.numEntries() + special.numEntries();
+    }
+}
@@ -0,0 +1,217 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.database.TableCard;
+
+/** Represents a supply in the process of being shuffled.
+ *  Cards are added to it by catalog index, usually by a {@link CardPool}.
+ *
+ *  <p>Cards that need a {@link SidePile} (like the Young Witch) have it drawn from the
+ *  pool's {@link SidePile.Index} as soon as they are added. A card can only be in the
+ *  supply once, so a card that has been drawn as a side pile is skipped if it comes up
+ *  again in the draw.</p>
+ *  @author Mark Lauman */
+public class ShuffleSupply {
+
+    /** Minimum amount of kingdom cards needed for this supply to be complete. */
+    public final int minKingdom;
+    /** Maximum amount of special cards allowed. */
+    public final int maxSpecial;
+    /** If this is a high cost game or not. */
+    public boolean high_cost = false;
+    /** If this game uses shelters or not. */
+    public boolean shelters = false;
+    /** True if the supply could not be completed because of the shuffle rules
+     *  (see {@link ConstraintSolver}). */
+    public boolean rulesUnmet = false;
+    /** True if the supply could not be completed because the {@link ConstraintSolver}
+     *  gave up. A supply that meets the shuffle rules may still exist. */
+    public boolean rulesGaveUp = false;
+
+    /** The catalog that the cards come from. */
+    private final CardCatalog catalog;
+    /** Position of the kingdom card that determines if this is a high cost game. */
+    private final int costCard;
+    /** Position of the kingdom card that determines if this game uses shelters. */
+    private final int shelterCard;
+
+    /** Kingdom cards in this supply */
+    private final ArrayList<Long> kingdom;
+    /** Special cards in this supply that are not kingdom cards. */
+    private final ArrayList<Long> special;
+    /** Catalog indexes of every card in this supply. */
+    private final BitSet inSupply;
+    /** The side piles that may be drawn, or null if no side piles are drawn. */
+    private SidePile.Index sidePiles = null;
+    /** Source of randomness for side piles. */
+    private Random random = null;
+    /** Catalog index of the bane card (the first side pile), or -1 if there isn't one. */
+    private int bane = -1;
+    /** Side piles after the first one. These are only kept as part of the supply. */
+    private final ArrayList<Long> otherPiles = new ArrayList<>(0);
+    /** Cards that may not be drawn as side piles, or null if any card may be. */
+    private BitSet pileExclude = null;
+    /** True if a required card needed a side pile, but there was none to draw. */
+    private boolean pileMissing = false;
+
+
+    /** Create an empty supply.
+     *  @param catalog The catalog that cards will be drawn from.
+     *  @param minKingdom The number of kingdom cards needed to complete the supply.
+     *  @param maxSpecial The maximum number of events and landmarks in the supply.
+     *  @param random Used to pick which cards decide on colonies and shelters. */
+    public ShuffleSupply(CardCatalog catalog, int minKingdom, int maxSpecial, Random random) {
+        this.catalog = catalog;
+        this.minKingdom = minKingdom;
+        this.maxSpecial = maxSpecial;
+        kingdom = new ArrayList<>(minKingdom);
+        special = new ArrayList<>(maxSpecial);
+        inSupply = new BitSet(catalog.size());
+        costCard = random.nextInt(Math.max(minKingdom, 1))+1;
+        shelterCard = random.nextInt(Math.max(minKingdom, 1))+1;
+    }
+
+
+    /** Set the side piles that may be drawn for this supply.
+     *  @param sidePiles The side piles of the pool, or null to draw no side piles.
+     *  @param random The source of randomness for side piles. */
+    public void setSidePiles(SidePile.Index sidePiles, Random random) {
+        this.sidePiles = sidePiles;
+        this.random = random;
+    }
+
+
+    /** Keep some cards out of the side piles drawn from now on
+     *  (like cards that would break the shuffle rules).
+     *  @param cards Catalog indexes of the cards that may not be drawn as side piles. */
+    public void excludeFromSidePiles(BitSet cards) {
+        pileExclude = cards;
+    }
+
+
+    /** Add an event to the supply
+     *  @param card The catalog index of the event. */
+    public void addSpecial(int card, boolean required) {
+        if(inSupply.get(card)) return;
+        if(required || special.size() < maxSpecial) {
+            special.add(catalog.getId(card));
+            inSupply.set(card);
+        }
+    }
+
+
+    /** Check if this shuffler needs a kingdom card */
+    public boolean needsKingdom() {
+        return kingdom.size() < minKingdom;
+    }
+
+
+    /** Add a kingdom card to the supply. If the card needs a side pile, it is drawn now.
+     *  If an optional card needs a side pile and there is none left to draw,
+     *  the card is skipped.
+     *  @param card The catalog index of the card.
+     *  @param required True if the card must be in the supply. */
+    public void addKingdom(int card, boolean required) {
+        if(inSupply.get(card)) return;
+        if(!required && minKingdom <= kingdom.size())
+            return;
+
+        // Draw the side pile, if this card needs one
+        int pile = sidePiles == null ? -1 : sidePiles.pileOf(card);
+        if(pile != -1) {
+            inSupply.set(card);
+            BitSet exclude = inSupply;
+            if(pileExclude != null) {
+                exclude = (BitSet) inSupply.clone();
+                exclude.or(pileExclude);
+            }
+            int extra = sidePiles.draw(pile, exclude, random);
+            if(extra == -1) {
+                inSupply.clear(card);
+                if(!required) return;
+                pileMissing = true;
+            } else if(bane == -1) {
+                bane = extra;
+                inSupply.set(extra);
+            } else {
+                otherPiles.add(catalog.getId(extra));
+                inSupply.set(extra);
+            }
+        }
+
+        kingdom.add(catalog.getId(card));
+        inSupply.set(card);
+
+        // determine if this is a high cost/shelters game
+        if(kingdom.size() == costCard)
+            high_cost = catalog.getSet(card) == TableCard.SET_PROSPERITY;
+        if(kingdom.size() == shelterCard)
+            shelters = catalog.getSet(card) == TableCard.SET_DARK_AGES;
+    }
+
+
+    /** Check if a card is in this supply (including side piles).
+     *  @param card The catalog index of the card. */
+    public boolean contains(int card) {
+        return inSupply.get(card);
+    }
+
+
+    /** Get all cards in this supply: the kingdom cards, then the side piles,
+     *  then the events and landmarks. */
+    public long[] getCards() {
+        long[] res = new long[kingdom.size() + (bane == -1 ? 0 : 1)
+                              + otherPiles.size() + special.size()];
+        int i = 0;
+        for(Long card : kingdom)
+            res[i++] = card;
+        if(bane != -1)
+            res[i++] = catalog.getId(bane);
+        for(Long card : otherPiles)
+            res[i++] = card;
+        for(Long card : special)
+            res[i++] = card;
+        return res;
+    }
+
+    /** Get the bane card of this supply */
+    public long getBane() {
+        if(bane == -1) return -1L;
+        return catalog.getId(bane);
+    }
+
+
+    /** Get the catalog indexes of the side piles in this supply, bane first. */
+    public int[] getSidePiles() {
+        int[] res = new int[(bane == -1 ? 0 : 1) + otherPiles.size()];
+        int i = 0;
+        if(bane != -1)
+            res[i++] = bane;
+        for(Long card : otherPiles)
+            res[i++] = catalog.indexOf(card);
+        return res;
+    }
+
+
+    /** Get how many more kingdom cards we need */
+    public int getShortfall() {
+        return minKingdom - kingdom.size();
+    }
+
+
+    /** Check if a required card is missing its side pile (there were no cards
+     *  that could be used for it). */
+    public boolean missingSidePile() {
+        return pileMissing;
+    }
+
+
+    /** Check if this supply is finished: it has enough kingdom cards,
+     *  and every card that needs a side pile has one. */
+    public boolean isComplete() {
+        return !needsKingdom() && !pileMissing;
+    }
+}
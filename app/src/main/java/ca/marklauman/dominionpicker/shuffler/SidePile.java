@@ -0,0 +1,154 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.database.TableCard;
+
+/** A card that brings an extra kingdom pile into the supply, like the Young Witch and
+ *  her bane. The card takes up a kingdom slot as usual, and the extra pile is another
+ *  kingdom card (not already in the supply) within a range of costs.
+ *
+ *  <p>Cards like this are listed in {@link #ALL}. A new one is added there,
+ *  without any changes to the shuffler.</p>
+ *  @author Mark Lauman */
+public class SidePile {
+
+    /** Every card that needs a side pile. */
+    public static final SidePile[] ALL = {
+            // The young witch's bane costs 2 or 3 coins
+            new SidePile(TableCard.ID_YOUNG_WITCH, 2, 3)
+    };
+
+    /** The id of the card that needs the side pile. */
+    public final long trigger;
+    /** The lowest coin cost of a card in the side pile. */
+    public final int minCost;
+    /** The highest coin cost of a card in the side pile. */
+    public final int maxCost;
+
+
+    /** Describe a side pile.
+     *  @param trigger The id of the card that needs the side pile.
+     *  @param minCost The lowest coin cost of a card in the side pile.
+     *  @param maxCost The highest coin cost of a card in the side pile. */
+    public SidePile(long trigger, int minCost, int maxCost) {
+        this.trigger = trigger;
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+    }
+
+
+    /** Check if a card may be used as this side pile. It must be a kingdom card with a
+     *  plain coin cost (no potions or debt) between {@link #minCost} and {@link #maxCost}.
+     *  @param catalog The catalog the card comes from.
+     *  @param card The index of the card in the catalog. */
+    public boolean fits(CardCatalog catalog, int card) {
+        int cost = catalog.getCost(card);
+        return !catalog.isSpecial(card) && catalog.hasFlag(card, CardCatalog.FLAG_PLAIN_COST)
+               && minCost <= cost && cost <= maxCost && catalog.getId(card) != trigger;
+    }
+
+
+    /** The cards that may fill each side pile, out of the cards that may be shuffled into
+     *  a supply. It is built once for each pool (and so once for each set of filters),
+     *  so that a side pile can be drawn straight from its candidates.
+     *
+     *  <p>Draws do not change the index, so it may be shared between threads.</p> */
+    public static class Index {
+        /** The catalog the cards come from. */
+        private final CardCatalog catalog;
+        /** The side piles whose card is in the catalog. */
+        private final SidePile[] piles;
+        /** Catalog index of the card that needs each side pile. */
+        private final int[] triggers;
+        /** Catalog indexes of the cards that may fill each side pile. */
+        private final int[][] candidates;
+
+
+        /** Build the index for the cards that may be shuffled into a supply.
+         *  @param catalog The catalog the cards come from.
+         *  @param cards The cards that may be shuffled into the supply. */
+        public Index(CardCatalog catalog, BitSet cards) {
+            this.catalog = catalog;
+            SidePile[] found = new SidePile[ALL.length];
+            int[] foundTriggers = new int[ALL.length];
+            int size = 0;
+            for(SidePile pile : ALL) {
+                int trigger = catalog.indexOf(pile.trigger);
+                if(trigger == -1) continue;
+                found[size] = pile;
+                foundTriggers[size++] = trigger;
+            }
+            piles = Arrays.copyOf(found, size);
+            triggers = Arrays.copyOf(foundTriggers, size);
+
+            candidates = new int[size][];
+            for(int p=0; p<size; p++) {
+                int[] res = new int[cards.cardinality()];
+                int num = 0;
+                for(int card = cards.nextSetBit(0); 0 <= card; card = cards.nextSetBit(card+1))
+                    if(piles[p].fits(catalog, card)) res[num++] = card;
+                candidates[p] = Arrays.copyOf(res, num);
+            }
+        }
+
+
+        /** Get the side pile needed by a card.
+         *  @param card The catalog index of the card.
+         *  @return The position of the side pile in this index, or -1 if the card
+         *  does not need one. */
+        public int pileOf(int card) {
+            for(int p=0; p<triggers.length; p++)
+                if(triggers[p] == card) return p;
+            return -1;
+        }
+
+
+        /** Check if a card may fill a side pile.
+         *  @param pile The position of the side pile in this index.
+         *  @param card The catalog index of the card. */
+        public boolean fits(int pile, int card) {
+            return piles[pile].fits(catalog, card);
+        }
+
+
+        /** Check if a side pile has any candidates at all. A card whose side pile
+         *  has no candidates can't be used in a supply. */
+        public boolean isFeasible(int pile) {
+            return candidates[pile].length != 0;
+        }
+
+
+        /** Get the cards that may fill a side pile.
+         *  @param pile The position of the side pile in this index.
+         *  @return Catalog indexes of the candidates. The array may be changed. */
+        public int[] candidates(int pile) {
+            return Arrays.copyOf(candidates[pile], candidates[pile].length);
+        }
+
+
+        /** Draw a card for a side pile. Every candidate that is not excluded is
+         *  equally likely.
+         *  @param pile The position of the side pile in this index.
+         *  @param exclude Catalog indexes of the cards that may not be drawn
+         *                 (the cards already in the supply).
+         *  @param random The source of randomness for the draw.
+         *  @return The catalog index of the card, or -1 if there are no candidates left. */
+        public int draw(int pile, BitSet exclude, Random random) {
+            int[] cards = candidates[pile];
+            int left = 0;
+            for(int card : cards)
+                if(!exclude.get(card)) left++;
+            if(left == 0) return -1;
+
+            int pick = random.nextInt(left);
+            for(int card : cards) {
+                if(exclude.get(card)) continue;
+                if(pick-- == 0) return card;
+            }
+            return -1;
+        }
+    }
+}
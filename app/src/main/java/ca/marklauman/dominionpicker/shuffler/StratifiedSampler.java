@@ -0,0 +1,227 @@
+package ca.marklauman.dominionpicker.shuffler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Draws kingdom cards so that the supply has a minimum number of cards in each cost
+ *  range (a cost curve), such as "2 cards at 2-3, 4 at 4-5 and 1 at 6 or more".
+ *
+ *  <p>The cards are split into strata by cost once, when the sampler is made. A card's
+ *  cost is its coin cost plus its debt (potions are not counted). Each stratum is drawn
+ *  with its own partial Fisher-Yates shuffle, so each quota is met with exactly as many
+ *  draws as it needs. Once the quotas are met, the rest of the supply is drawn evenly
+ *  from every card left (including cards in no stratum). Events and landmarks turn up
+ *  as often as they would in an ordinary draw.</p>
+ *
+ *  <p>Like the {@link CardPool}, the strata are put back in their original order after
+ *  each draw, so the same random seed always gives the same supply. A sampler is not
+ *  thread safe. Threads that draw at the same time should each use their own
+ *  {@link #copy()}.</p>
+ *  @author Mark Lauman */
+public class StratifiedSampler {
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+    /** The lowest cost of each stratum, in increasing order. */
+    private final int[] bounds;
+    /** The minimum number of kingdom cards from each stratum. */
+    private final int[] quotas;
+    /** The cards of each stratum, then the kingdom cards in no stratum,
+     *  then the events and landmarks. */
+    private final int[][] strata;
+    /** The position each card was swapped from during a draw, for each stratum.
+     *  Used to undo the draw. */
+    private final int[][] picks;
+    /** The number of cards drawn from each stratum during this draw. */
+    private final int[] drawn;
+
+
+    /** Sort cards into strata.
+     *  @param catalog The catalog the cards come from.
+     *  @param cards Catalog indexes of the cards that may be drawn.
+     *  @param bounds The lowest cost of each stratum, in increasing order. Each stratum
+     *                ends where the next begins, and the last stratum has no end.
+     *                Cards cheaper than the first stratum are in no stratum.
+     *  @param quotas The minimum number of kingdom cards from each stratum. */
+    public StratifiedSampler(CardCatalog catalog, int[] cards, int[] bounds, int[] quotas) {
+        this.catalog = catalog;
+        this.bounds = bounds;
+        this.quotas = quotas;
+
+        // Count the cards in each stratum, then fill them in
+        int[] sizes = new int[bounds.length + 2];
+        for(int card : cards)
+            sizes[indexOf(card)]++;
+        strata = new int[sizes.length][];
+        picks = new int[sizes.length][];
+        for(int s=0; s<sizes.length; s++) {
+            strata[s] = new int[sizes[s]];
+            picks[s] = new int[sizes[s]];
+        }
+        drawn = new int[sizes.length];
+        for(int card : cards) {
+            int s = indexOf(card);
+            strata[s][drawn[s]++] = card;
+        }
+        Arrays.fill(drawn, 0);
+    }
+
+
+    /** Constructor used by {@link #copy()}. */
+    private StratifiedSampler(StratifiedSampler other) {
+        catalog = other.catalog;
+        bounds = other.bounds;
+        quotas = other.quotas;
+        strata = new int[other.strata.length][];
+        picks = new int[other.strata.length][];
+        for(int s=0; s<strata.length; s++) {
+            strata[s] = Arrays.copyOf(other.strata[s], other.strata[s].length);
+            picks[s] = new int[strata[s].length];
+        }
+        drawn = new int[strata.length];
+    }
+
+
+    /** Get a copy of this sampler that may be used on another thread. */
+    public StratifiedSampler copy() {
+        return new StratifiedSampler(this);
+    }
+
+
+    /** Get the stratum of a card by its cost.
+     *  @param catalog The catalog the card comes from.
+     *  @param card The index of the card in the catalog.
+     *  @param bounds The lowest cost of each stratum, in increasing order.
+     *  @return The stratum, or -1 if the card is cheaper than every stratum. */
+    public static int stratumOf(CardCatalog catalog, int card, int[] bounds) {
+        int cost = Math.max(catalog.getCost(card), 0) + Math.max(catalog.getDebt(card), 0);
+        int res = -1;
+        for(int s=0; s<bounds.length && bounds[s] <= cost; s++)
+            res = s;
+        return res;
+    }
+
+
+    /** Get the position of a card's list in {@link #strata}. */
+    private int indexOf(int card) {
+        if(catalog.isSpecial(card)) return bounds.length + 1;
+        int s = stratumOf(catalog, card, bounds);
+        return s == -1 ? bounds.length : s;
+    }
+
+
+    /** Fill a supply with kingdom cards that meet the quotas. If a stratum does not have
+     *  enough cards for its quota, the supply is marked with
+     *  {@link ShuffleSupply#rulesUnmet} and left as it is.
+     *  @param s The supply to fill. Any cards already in it count towards the quotas.
+     *  @param chosen The kingdom cards already in the supply.
+     *  @param random The source of randomness for the draw. */
+    public void fill(ShuffleSupply s, int[] chosen, Random random) {
+        // What is left of each quota
+        int[] need = Arrays.copyOf(quotas, quotas.length);
+        for(int card : chosen) {
+            int stratum = stratumOf(catalog, card, bounds);
+            if(0 <= stratum && !catalog.isSpecial(card)) need[stratum]--;
+        }
+        for(int stratum=0; stratum<need.length; stratum++) {
+            if(strata[stratum].length < need[stratum]) {
+                s.rulesUnmet = true;
+                return;
+            }
+        }
+
+        drawSpecials(s, random);
+        if(meetQuotas(s, need, random)) fillRest(s, random);
+
+        // Undo the swaps (in reverse) to put the strata back in their original order
+        for(int stratum=0; stratum<strata.length; stratum++) {
+            for(int i=drawn[stratum]-1; 0<=i; i--)
+                swap(strata[stratum], i, picks[stratum][i]);
+            drawn[stratum] = 0;
+        }
+    }
+
+
+    /** Draw kingdom cards from each stratum until its quota is met. Cards that the supply
+     *  skips (because they are already in it as a side pile, or because their own side
+     *  pile can't be drawn) do not count towards a quota.
+     *  @param need What is left of each quota.
+     *  @return False if a stratum ran out of cards before its quota was met. */
+    private boolean meetQuotas(ShuffleSupply s, int[] need, Random random) {
+        for(int stratum=0; stratum<need.length; stratum++) {
+            while(0 < need[stratum] && s.needsKingdom()) {
+                if(drawn[stratum] == strata[stratum].length) {
+                    s.rulesUnmet = true;
+                    return false;
+                }
+                int shortfall = s.getShortfall();
+                s.addKingdom(draw(stratum, random), false);
+                if(s.getShortfall() < shortfall) need[stratum]--;
+            }
+        }
+        return true;
+    }
+
+
+    /** Fill the rest of the supply evenly from every kingdom card left. */
+    private void fillRest(ShuffleSupply s, Random random) {
+        int left = 0;
+        for(int stratum=0; stratum<=bounds.length; stratum++)
+            left += strata[stratum].length - drawn[stratum];
+        for(; s.needsKingdom() && 0 < left; left--) {
+            int pos = random.nextInt(left);
+            int stratum = 0;
+            while(strata[stratum].length - drawn[stratum] <= pos) {
+                pos -= strata[stratum].length - drawn[stratum];
+                stratum++;
+            }
+            s.addKingdom(draw(stratum, random), false);
+        }
+    }
+
+
+    /** Add events and landmarks to the supply. In an ordinary draw, the specials
+     *  that come up before the last kingdom card are added. The number of specials
+     *  is found the same way here, by walking through the order of an imaginary draw. */
+    private void drawSpecials(ShuffleSupply s, Random random) {
+        int special = bounds.length + 1;
+        int specials = strata[special].length;
+        int kingdom = 0;
+        for(int stratum=0; stratum<special; stratum++)
+            kingdom += strata[stratum].length;
+
+        int count = 0;
+        for(int need = s.getShortfall(); 0 < need && 0 < specials + kingdom; ) {
+            if(random.nextInt(specials + kingdom) < specials) {
+                specials--;
+                count++;
+            } else {
+                kingdom--;
+                need--;
+            }
+        }
+        for(int i=0; i<count; i++)
+            s.addSpecial(draw(special, random), false);
+    }
+
+
+    /** Draw a card from a stratum (partial Fisher-Yates).
+     *  There must be at least one card left in the stratum. */
+    private int draw(int stratum, Random random) {
+        int[] cards = strata[stratum];
+        int pos = drawn[stratum];
+        int pick = pos + random.nextInt(cards.length - pos);
+        picks[stratum][pos] = pick;
+        swap(cards, pos, pick);
+        drawn[stratum]++;
+        return cards[pos];
+    }
+
+
+    /** Swap two entries in an array. */
+    private static void swap(int[] cards, int a, int b) {
+        int card = cards[a];
+        cards[a] = cards[b];
+        cards[b] = card;
+    }
+}
@@ -0,0 +1,114 @@
+package ca.marklauman.dominionpicker.userinterface;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.SharedPreferences;
+import android.support.v7.app.AlertDialog;
+
+import ca.marklauman.dominionpicker.R;
+import ca.marklauman.dominionpicker.settings.Pref;
+import ca.marklauman.dominionpicker.shuffler.CardWeights;
+
+/** Dialog used to pick the shuffle weight of an expansion or a card
+ *  (see {@link CardWeights}). The weight is saved to the preferences as soon as
+ *  it is picked.
+ *  @author Mark Lauman */
+public abstract class WeightDialog {
+
+    /** The weights that can be picked, in the order of {@code R.array.weight_names}. */
+    private static final int[] WEIGHTS = {0, 1, 2, 3, 5};
+
+    /** Listens for a weight to be picked. */
+    public interface Listener {
+        /** Called once a weight is picked and saved.
+         *  @param weight The new weight, or -1 if a card was given the weight of its set. */
+        void onWeightPicked(int weight);
+    }
+
+
+    /** Read the shuffle weights from the preferences.
+     *  @param context A context within this app. */
+    public static CardWeights load(Context context) {
+        SharedPreferences pref = Pref.get(context);
+        return CardWeights.parse(pref.getString(Pref.WEIGHT_SET, ""),
+                                 pref.getString(Pref.WEIGHT_CARD, ""));
+    }
+
+
+    /** Get the name of a weight, as it is shown in the dialog.
+     *  @param context A context within this app.
+     *  @param weight The weight to name. */
+    public static String nameOf(Context context, int weight) {
+        String[] names = context.getResources().getStringArray(R.array.weight_names);
+        for(int i=0; i<WEIGHTS.length; i++)
+            if(WEIGHTS[i] == weight) return names[i];
+        return context.getString(R.string.weight_custom, weight);
+    }
+
+
+    /** Pick the weight of an expansion.
+     *  @param context A context within this app.
+     *  @param name The name of the expansion (the title of the dialog).
+     *  @param set The id of the expansion.
+     *  @param listener Told about the new weight, or null. */
+    public static void pickSet(final Context context, String name, final int set,
+                               final Listener listener) {
+        show(context, name, load(context).setWeight(set), false, new Listener() {
+            @Override
+            public void onWeightPicked(int weight) {
+                Pref.edit(context)
+                    .putString(Pref.WEIGHT_SET, load(context).withSet(set, weight).setString())
+                    .commit();
+                if(listener != null) listener.onWeightPicked(weight);
+            }
+        });
+    }
+
+
+    /** Pick the weight of a card. The card may also be given the weight of its set.
+     *  @param context A context within this app.
+     *  @param name The name of the card (the title of the dialog).
+     *  @param id The id of the card.
+     *  @param listener Told about the new weight, or null. */
+    public static void pickCard(final Context context, String name, final long id,
+                                final Listener listener) {
+        show(context, name, load(context).cardWeight(id), true, new Listener() {
+            @Override
+            public void onWeightPicked(int weight) {
+                Pref.edit(context)
+                    .putString(Pref.WEIGHT_CARD, load(context).withCard(id, weight).cardString())
+                    .commit();
+                if(listener != null) listener.onWeightPicked(weight);
+            }
+        });
+    }
+
+
+    /** Show the dialog.
+     *  @param current The weight to check, or -1 for the weight of the set.
+     *  @param sameAsSet True to offer the weight of the set as the first choice. */
+    private static void show(Context context, String title, int current, boolean sameAsSet,
+                             final Listener listener) {
+        String[] names = context.getResources().getStringArray(R.array.weight_names);
+        final int offset = sameAsSet ? 1 : 0;
+        String[] items = new String[names.length + offset];
+        if(sameAsSet) items[0] = context.getString(R.string.weight_same_as_set);
+        System.arraycopy(names, 0, items, offset, names.length);
+
+        int checked = current == -1 && sameAsSet ? 0 : -1;
+        for(int i=0; i<WEIGHTS.length; i++)
+            if(WEIGHTS[i] == current) checked = i + offset;
+
+        new AlertDialog.Builder(context)
+                .setTitle(title)
+                .setSingleChoiceItems(items, checked, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                        listener.onWeightPicked(which < offset ? -1 : WEIGHTS[which - offset]);
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+}
@@ -128,6 +128,14 @@ public class AdapterCards extends BasicTouchAdapter<AdapterCards.ViewHolder> {
 
     /** Change the cursor on display. This forces a rebind of all views. */
     public void changeCursor(Cursor cursor) {
+        setCursor(cursor);
+        if(cursor != null) notifyDataSetChanged();
+    }
+
+
+    /** Change the cursor on display without rebinding any views.
+     *  The caller must notify the adapter of what changed. */
+    void setCursor(Cursor cursor) {
         mCursor = cursor;
         if(cursor == null) return;
         colorFactory.changeCursor(cursor);
@@ -142,7 +150,6 @@ public class AdapterCards extends BasicTouchAdapter<AdapterCards.ViewHolder> {
         _type = cursor.getColumnIndex(TableCard._TYPE);
         _requires = cursor.getColumnIndex(TableCard._REQ);
         _type_landmark = cursor.getColumnIndex(TableCard._TYPE_LANDMARK);
-        notifyDataSetChanged();
     }
 
 
@@ -1,14 +1,16 @@
 package ca.marklauman.dominionpicker.userinterface.recyclerview;
 
+import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewGroup;
 
 import ca.marklauman.dominionpicker.R;
+import ca.marklauman.dominionpicker.database.CursorSnapshot;
 
 /** A variation to the basic {@link AdapterCards} that allows
- *  swipe to dismiss and setting a bane card.
+ *  swipe to dismiss, replacing single cards and setting a bane card.
  *  @author Mark Lauman */
 public class AdapterCardsDismiss extends AdapterCards
                                  implements AdapterCards.Listener {
@@ -17,10 +19,12 @@ public class AdapterCardsDismiss extends AdapterCards
     private long mBane = -1;
     /** A listener to be notified when an item is dismissed. */
     private Listener mListener = null;
+    /** The rows on display, once a card has been replaced (null until then).
+     *  {@link #mCursor} is a cursor over these rows. */
+    private CursorSnapshot mRows = null;
 
     public AdapterCardsDismiss(RecyclerView view) {
-        // TODO: enable swipe
-        super(view, false);
+        super(view, true);
         super.setListener(this);
     }
 
@@ -34,6 +38,36 @@ public class AdapterCardsDismiss extends AdapterCards
     }
 
 
+    @Override
+    public void changeCursor(Cursor cursor) {
+        mRows = null;
+        super.changeCursor(cursor);
+    }
+
+
+    /** Replace the card at one position with a new card. Only that position is rebound.
+     *  The rows on display are copied the first time a card is replaced. After that,
+     *  each replacement only swaps its own row.
+     *  @param position The position of the card to replace.
+     *  @param card A cursor holding the new card as its only row (with the same columns as
+     *              the cursor on display). If this is null or empty, the card at
+     *              {@code position} is removed from the list instead. */
+    public void replaceCard(int position, Cursor card) {
+        if(mCursor == null) return;
+        if(mRows == null) {
+            mRows = new CursorSnapshot(mCursor);
+            setCursor(mRows.newCursor());
+        }
+        if(card == null || !card.moveToFirst()) {
+            mRows.removeRow(position);
+            notifyItemRemoved(position);
+        } else {
+            mRows.setRow(position, card);
+            notifyItemChanged(position);
+        }
+    }
+
+
     @Override @NonNull
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         ViewHolder holder = super.onCreateViewHolder(parent, viewType);
@@ -0,0 +1,41 @@
+package ca.marklauman.dominionpicker.userinterface.recyclerview;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+
+import ca.marklauman.dominionpicker.DraftSession;
+import ca.marklauman.dominionpicker.R;
+
+/** Adapter used to show a hand in a draft. Cards picked from the hand are highlighted.
+ *  The picks themselves are made by the listener (see {@link DraftSession.Hand}).
+ *  @author Mark Lauman */
+public class AdapterCardsDraft extends AdapterCards {
+
+    /** The hand on display, or null if there isn't one. */
+    private DraftSession.Hand hand = null;
+
+
+    /** Basic constructor.
+     *  @param view The RecyclerView this adapter oversees. */
+    public AdapterCardsDraft(RecyclerView view) {
+        super(view);
+    }
+
+
+    /** Set the hand whose picks are highlighted. The cursor should hold its cards.
+     *  @param hand The hand on display. */
+    public void setHand(DraftSession.Hand hand) {
+        this.hand = hand;
+        notifyDataSetChanged();
+    }
+
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        super.onBindViewHolder(holder, position);
+        int pos = hand == null ? -1 : hand.indexOf(mCursor.getLong(_id));
+        holder.background.setBackgroundResource(pos != -1 && hand.isPicked(pos)
+                                                ? R.color.list_item_sel
+                                                : R.color.background);
+    }
+}
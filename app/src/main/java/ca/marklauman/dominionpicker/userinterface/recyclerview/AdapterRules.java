@@ -29,10 +29,11 @@ import ca.marklauman.dominionpicker.userinterface.recyclerview.rules.Rule;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.rules.RuleCheckbox;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.rules.RuleNumber;
 import ca.marklauman.dominionpicker.userinterface.recyclerview.rules.RuleSection;
+import ca.marklauman.dominionpicker.userinterface.recyclerview.rules.RuleWeight;
 import ca.marklauman.tools.Utils;
 
 /** The card filtration rules are displayed and loaded in this adapter.
- *  This is a basic filter - it does not set odds of cards.
+ *  The shuffle weight of each expansion is set at the end of the list.
  *  @author Mark Lauman. */
 public class AdapterRules extends Adapter<Rule>
                           implements LoaderManager.LoaderCallbacks<Cursor> {
@@ -43,6 +44,8 @@ public class AdapterRules extends Adapter<Rule>
     private static final int TYPE_NUMBER = 1;
     /** Type for a checkbox rule. */
     private static final int TYPE_CHECK = 2;
+    /** Type for a set weight rule. */
+    private static final int TYPE_WEIGHT = 3;
 
 
     /** Context used to construct this adapter */
@@ -62,6 +65,8 @@ public class AdapterRules extends Adapter<Rule>
     private final HashSet<String> filt_cost = new HashSet<>();
     /** Current value of the curse filter */
     private final HashSet<String> filt_debt = new HashSet<>();
+    /** The weight rules of the expansions, added after the shuffle rules. */
+    private final ArrayList<RuleWeight.Data> weights = new ArrayList<>();
 
     /** True if this adapter has a scrollbar */
     private boolean hasScroll = false;
@@ -127,6 +132,7 @@ public class AdapterRules extends Adapter<Rule>
             case TYPE_CHECK:   return new RuleCheckbox(recycler);
             case TYPE_SECTION: return new RuleSection(recycler);
             case TYPE_NUMBER:  return new RuleNumber(recycler);
+            case TYPE_WEIGHT:  return new RuleWeight(recycler);
             default: throw new UnsupportedOperationException("Invalid rule type");
         }
     }
@@ -164,6 +170,7 @@ public class AdapterRules extends Adapter<Rule>
         int oldSize = types.size();
         types.clear();
         values.clear();
+        weights.clear();
 
         // And the top few entries and the loading icon
         types.add(TYPE_NUMBER);
@@ -230,6 +237,7 @@ public class AdapterRules extends Adapter<Rule>
                     insertRule(start+inserted, TYPE_CHECK,
                                new RuleCheckbox.Data(icons[id], data.getString(_name),
                                                      false, ""+id, filt_set));
+                    weights.add(new RuleWeight.Data(icons[id], data.getString(_name), id));
                     inserted++;
                 } while(data.moveToNext() && data.getInt(_promo) == 0);
 
@@ -241,6 +249,7 @@ public class AdapterRules extends Adapter<Rule>
                     insertRule(start+inserted, TYPE_CHECK,
                                new RuleCheckbox.Data(icons[id], data.getString(_name),
                                                      false, ""+id, filt_set));
+                    weights.add(new RuleWeight.Data(icons[id], data.getString(_name), id));
                     inserted++;
                 } while(data.moveToNext());
 
@@ -292,8 +301,52 @@ public class AdapterRules extends Adapter<Rule>
                         new RuleCheckbox.Data(R.drawable.ic_dom_curse,
                                               mContext.getString(R.string.rules_curse),
                                               false, Pref.FILT_CURSE, null));
-                lastItem = start+inserted;
                 inserted++;
+
+                // Insert the shuffle rules
+                insertRule(start+inserted, TYPE_SECTION,
+                           mContext.getString(R.string.rules_shuffle));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_card,
+                                              mContext.getString(R.string.rules_buy),
+                                              false, Pref.RULE_BUY, null));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_card,
+                                              mContext.getString(R.string.rules_village),
+                                              false, Pref.RULE_VILLAGE, null));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_card,
+                                              mContext.getString(R.string.rules_attacks),
+                                              false, Pref.RULE_ATTACKS, null));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_cards,
+                                              mContext.getString(R.string.rules_cost_spread),
+                                              false, Pref.RULE_COST_SPREAD, null));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_cards,
+                                              mContext.getString(R.string.rules_cost_curve),
+                                              false, Pref.RULE_COST_CURVE, null));
+                inserted++;
+                insertRule(start+inserted, TYPE_CHECK,
+                        new RuleCheckbox.Data(R.drawable.ic_cards,
+                                              mContext.getString(R.string.rules_anti_repeat),
+                                              false, Pref.RULE_ANTI_REPEAT, null));
+                inserted++;
+
+                // Insert the weight of each expansion
+                insertRule(start+inserted, TYPE_SECTION,
+                           mContext.getString(R.string.rules_weights));
+                inserted++;
+                for(RuleWeight.Data weight : weights) {
+                    insertRule(start+inserted, TYPE_WEIGHT, weight);
+                    inserted++;
+                }
+                lastItem = start+inserted-1;
         }
 
         notifyItemRangeInserted(start, inserted);
@@ -0,0 +1,95 @@
+package ca.marklauman.dominionpicker.userinterface.recyclerview.rules;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.RequestOptions;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import ca.marklauman.dominionpicker.R;
+import ca.marklauman.dominionpicker.userinterface.WeightDialog;
+
+/** Rule for {@link ca.marklauman.dominionpicker.userinterface.recyclerview.AdapterRules}
+ *  that shows the shuffle weight of an expansion. Clicking it opens a {@link WeightDialog}.
+ *  The value set to a RuleWeight is an instance of {@link RuleWeight.Data}.
+ *  @author Mark Lauman */
+public class RuleWeight extends Rule
+                        implements View.OnClickListener {
+
+    /** View that displays the icon. */
+    @BindView(android.R.id.icon)  ImageView vIcon;
+    /** View that displays the name of the expansion. */
+    @BindView(android.R.id.text1) TextView vText;
+    /** View that displays the weight. */
+    @BindView(android.R.id.text2) TextView vWeight;
+    /** The data on display in this RuleWeight. */
+    private RuleWeight.Data data;
+
+
+    /** Construct a new RuleWeight for the parent.
+     *  @param parent The parent RecyclerView that this Rule will be inserted into. */
+    public RuleWeight(@NonNull RecyclerView parent) {
+        super(LayoutInflater.from(parent.getContext())
+                            .inflate(R.layout.rule_weight, parent, false));
+        ButterKnife.bind(this, itemView);
+        itemView.setOnClickListener(this);
+    }
+
+
+    /** Set the value on display in this RuleWeight.
+     *  @param newValue An instance of {@link RuleWeight.Data}. */
+    @Override
+    public void setValue(Object newValue) {
+        data = (Data)newValue;
+        Glide.with(vIcon)
+             .load(data.iconRes)
+             .apply(RequestOptions.noTransformation())
+             .into(vIcon);
+        vText.setText(data.name);
+        vWeight.setText(WeightDialog.nameOf(itemView.getContext(),
+                                            WeightDialog.load(itemView.getContext())
+                                                        .setWeight(data.set)));
+    }
+
+
+    /** Opens the dialog to change the weight. */
+    @Override
+    public void onClick(View v) {
+        final Data shown = data;
+        WeightDialog.pickSet(itemView.getContext(), shown.name, shown.set,
+                             new WeightDialog.Listener() {
+            @Override
+            public void onWeightPicked(int weight) {
+                // This rule may show another expansion by now
+                if(data == shown)
+                    vWeight.setText(WeightDialog.nameOf(itemView.getContext(), weight));
+            }
+        });
+    }
+
+
+    /** Defines the expansion shown by a {@link RuleWeight}. */
+    public static class Data {
+        /** Image resource id of the expansion's icon. */
+        final int iconRes;
+        /** The name of the expansion. */
+        final String name;
+        /** The id of the expansion. */
+        final int set;
+
+        /** @param iconRes Image resource id of the expansion's icon.
+         *  @param name The name of the expansion.
+         *  @param set The id of the expansion. */
+        public Data(int iconRes, @NonNull String name, int set) {
+            this.iconRes = iconRes;
+            this.name = name;
+            this.set = set;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ConstraintSolver;
+import ca.marklauman.dominionpicker.shuffler.ConstraintSolver.Rule;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the side piles drawn by a {@link CardPool} and its copies.
+ *  @author Mark Lauman */
+public class CardPoolTest {
+
+    /** The number of supplies shuffled by each test. */
+    private static final int SHUFFLES = 2000;
+    /** Flags of an ordinary kingdom card. */
+    private static final int PLAIN = CardCatalog.FLAG_PLAIN_COST;
+
+
+    /** Build a catalog with the young witch and 5 plain kingdom cards at each cost from
+     *  {@code minCost} to 6, plus a card with debt and an event at cost 2.
+     *  Card ids start at 1. */
+    private static CardCatalog catalog(int minCost) {
+        CardCatalog.Builder res = new CardCatalog.Builder(40);
+        res.add(TableCard.ID_YOUNG_WITCH, 0, 4, 0, 0, PLAIN);
+        long id = 1;
+        for(int cost=minCost; cost<=6; cost++)
+            for(int i=0; i<5; i++)
+                res.add(id++, 0, cost, 0, 0, PLAIN);
+        res.add(id++, 0, 2, 8, 0, 0);
+        res.add(id, 0, 2, 0, 0, CardCatalog.FLAG_EVENT | PLAIN);
+        return res.build();
+    }
+
+
+    /** Get the catalog indexes of every card but one.
+     *  @param skip The card to leave out, or -1 to leave out none. */
+    private static int[] allBut(CardCatalog catalog, int skip) {
+        int[] res = new int[catalog.size()];
+        int size = 0;
+        for(int card=0; card<catalog.size(); card++)
+            if(card != skip) res[size++] = card;
+        return Arrays.copyOf(res, size);
+    }
+
+
+    /** Get a weight for each card (1 to 3, so the pool is weighted). */
+    private static int[] weights(int size) {
+        int[] res = new int[size];
+        for(int i=0; i<size; i++)
+            res[i] = 1 + i % 3;
+        return res;
+    }
+
+
+    /** Shuffle a supply of 10 kingdom cards. */
+    private static ShuffleSupply fill(CardCatalog catalog, CardPool pool, long seed) {
+        Random random = new Random(seed);
+        ShuffleSupply supply = new ShuffleSupply(catalog, 10, 2, random);
+        pool.fill(supply, random);
+        return supply;
+    }
+
+
+    /** The bane is always a plain kingdom card that costs 2 or 3, and is not also
+     *  one of the kingdom cards. Copies draw the same supplies as the pool they came from. */
+    @Test
+    public void baneFromCostRange() {
+        CardCatalog catalog = catalog(2);
+        int witch = catalog.indexOf(TableCard.ID_YOUNG_WITCH);
+        int[] optional = allBut(catalog, witch);
+        CardPool[] pools = {new CardPool(catalog, new int[]{witch}, optional),
+                            new CardPool(catalog, new int[]{witch}, optional,
+                                         weights(optional.length))};
+        for(CardPool pool : pools) {
+            CardPool copy = pool.copy();
+            for(long seed=0; seed<SHUFFLES; seed++) {
+                ShuffleSupply supply = fill(catalog, copy, seed);
+                assertTrue(supply.isComplete());
+                long bane = supply.getBane();
+                assertNotEquals(-1L, bane);
+                int card = catalog.indexOf(bane);
+                assertTrue(2 <= catalog.getCost(card) && catalog.getCost(card) <= 3);
+                assertEquals(0, catalog.getDebt(card));
+                assertFalse(catalog.isSpecial(card));
+
+                long[] cards = supply.getCards();
+                int count = 0;
+                for(long id : cards)
+                    if(id == bane) count++;
+                assertEquals(1, count);
+                assertArrayEquals(fill(catalog, pool, seed).getCards(), cards);
+            }
+        }
+    }
+
+
+    /** If no card can be the bane, the young witch is never drawn,
+     *  and the supply is filled from the other cards. */
+    @Test
+    public void infeasibleTriggerNeverDrawn() {
+        CardCatalog catalog = catalog(4);
+        int witch = catalog.indexOf(TableCard.ID_YOUNG_WITCH);
+        int[] optional = allBut(catalog, -1);
+        CardPool[] pools = {new CardPool(catalog, new int[0], optional),
+                            new CardPool(catalog, new int[0], optional,
+                                         weights(optional.length))};
+        for(CardPool pool : pools) {
+            CardPool copy = pool.copy();
+            for(long seed=0; seed<SHUFFLES; seed++) {
+                ShuffleSupply supply = fill(catalog, copy, seed);
+                assertTrue(supply.isComplete());
+                assertEquals(-1L, supply.getBane());
+                assertFalse(Arrays.toString(supply.getCards()), supply.contains(witch));
+            }
+        }
+    }
+
+
+    /** The bane counts towards the shuffle rules. It is only drawn from the cards that
+     *  keep the supply within them, and if there are none, the young witch is left out
+     *  (or the rules are unmet, if she must be in the supply). */
+    @Test
+    public void baneWithinRules() {
+        CardCatalog catalog = catalog(2);
+        int witch = catalog.indexOf(TableCard.ID_YOUNG_WITCH);
+        BitSet cheap = new BitSet(catalog.size());
+        for(int card=0; card<catalog.size(); card++)
+            if(!catalog.isSpecial(card) && catalog.getCost(card) <= 3) cheap.set(card);
+        BitSet witches = new BitSet(catalog.size());
+        witches.set(witch);
+        int[] optional = allBut(catalog, -1);
+        CardPool pool = new CardPool(catalog, new int[0], optional);
+
+        // She must be in the supply, with at most one cheap card (her bane)
+        pool.setSolver(new ConstraintSolver(catalog, new Rule[]{
+                Rule.atLeast("witch", witches, 1), Rule.atMost("cheap", cheap, 1)}));
+        for(long seed=0; seed<SHUFFLES; seed++) {
+            ShuffleSupply supply = fill(catalog, pool, seed);
+            assertTrue(supply.isComplete());
+            assertTrue(supply.contains(witch));
+            int count = 0;
+            for(long id : supply.getCards())
+                if(cheap.get(catalog.indexOf(id))) count++;
+            assertEquals(1, count);
+            assertTrue(cheap.get(catalog.indexOf(supply.getBane())));
+        }
+
+        // No cheap cards: she can't have a bane, so she is left out
+        pool.setSolver(new ConstraintSolver(catalog, new Rule[]{
+                Rule.atMost("cheap", cheap, 0)}));
+        for(long seed=0; seed<SHUFFLES; seed++) {
+            ShuffleSupply supply = fill(catalog, pool, seed);
+            assertTrue(supply.isComplete());
+            assertFalse(supply.contains(witch));
+            assertEquals(-1L, supply.getBane());
+        }
+
+        // Unless she must be in the supply
+        pool.setSolver(new ConstraintSolver(catalog, new Rule[]{
+                Rule.atLeast("witch", witches, 1), Rule.atMost("cheap", cheap, 0)}));
+        ShuffleSupply supply = fill(catalog, pool, 0);
+        assertFalse(supply.isComplete());
+        assertTrue(supply.rulesUnmet);
+    }
+}
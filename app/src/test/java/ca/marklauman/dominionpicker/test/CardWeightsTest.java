@@ -0,0 +1,55 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import ca.marklauman.dominionpicker.shuffler.CardWeights;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the changes made to {@link CardWeights} by the weight editors,
+ *  and that they are saved as preference strings that read back the same.
+ *  @author Mark Lauman */
+public class CardWeightsTest {
+
+    /** Set weights are changed one at a time, and default weights are left blank. */
+    @Test
+    public void sets() {
+        CardWeights weights = CardWeights.parse("", "");
+        assertEquals("", weights.setString());
+        assertEquals(CardWeights.DEFAULT, weights.setWeight(4));
+
+        weights = weights.withSet(3, 2).withSet(1, 0);
+        assertEquals(",0,,2", weights.setString());
+        assertEquals(2, weights.setWeight(3));
+        assertEquals(0, weights.setWeight(1));
+        assertEquals(CardWeights.DEFAULT, weights.setWeight(2));
+
+        // Trailing default weights are dropped
+        weights = weights.withSet(3, CardWeights.DEFAULT);
+        assertEquals(",0", weights.setString());
+        assertEquals(",0", CardWeights.parse(weights.setString(), "").setString());
+        assertTrue(weights.withSet(1, CardWeights.DEFAULT).isUniform());
+    }
+
+
+    /** Card weights are kept in order of card id, and can be taken away again. */
+    @Test
+    public void cards() {
+        CardWeights weights = CardWeights.parse("", "40:5,12:0");
+        assertEquals("12:0,40:5", weights.cardString());
+        assertEquals(5, weights.cardWeight(40));
+        assertEquals(-1, weights.cardWeight(20));
+
+        weights = weights.withCard(20, 3).withCard(40, 2).withCard(5, 1);
+        assertEquals("5:1,12:0,20:3,40:2", weights.cardString());
+        assertEquals("5:1,12:0,20:3,40:2",
+                     CardWeights.parse("", weights.cardString()).cardString());
+
+        weights = weights.withCard(12, -1).withCard(5, -1);
+        assertEquals("20:3,40:2", weights.cardString());
+        assertSame(weights, weights.withCard(99, -1));
+        assertEquals("", weights.withCard(20, -1).withCard(40, -1).cardString());
+    }
+}
@@ -0,0 +1,166 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ConstraintSolver;
+import ca.marklauman.dominionpicker.shuffler.ConstraintSolver.Rule;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests that a {@link ConstraintSolver} tells rules that can't be met apart from
+ *  a search that gave up, and that a {@link CardPool} reports each one on the supply.
+ *  @author Mark Lauman */
+public class ConstraintSolverTest {
+
+    /** The number of cards in the test catalog. */
+    private static final int CARDS = 20;
+
+
+    /** Build a catalog of {@link #CARDS} plain kingdom cards. Card ids start at 1. */
+    private static CardCatalog catalog() {
+        CardCatalog.Builder res = new CardCatalog.Builder(CARDS);
+        for(long id=1; id<=CARDS; id++)
+            res.add(id, 0, 4, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        return res.build();
+    }
+
+
+    /** Get a bitset of the given catalog indexes. */
+    private static BitSet cards(int... indexes) {
+        BitSet res = new BitSet(CARDS);
+        for(int card : indexes)
+            res.set(card);
+        return res;
+    }
+
+
+    /** Get every catalog index, in order. */
+    private static int[] all() {
+        int[] res = new int[CARDS];
+        for(int i=0; i<CARDS; i++)
+            res[i] = i;
+        return res;
+    }
+
+
+    /** Rules that can be met: at least 2 of the first 4 cards, none of the next 4. */
+    private static Rule[] feasible() {
+        return new Rule[]{Rule.atLeast("some", cards(0, 1, 2, 3), 2),
+                          Rule.atMost("none", cards(4, 5, 6, 7), 0)};
+    }
+
+
+    /** Rules that pass the checks made before the search, but can't be met:
+     *  at least 2 of cards 0 and 1, but at most 1 of them. */
+    private static Rule[] infeasible() {
+        return new Rule[]{Rule.atLeast("both", cards(0, 1), 2),
+                          Rule.atMost("one", cards(0, 1), 1)};
+    }
+
+
+    /** A solve that meets the rules picks cards that meet them. */
+    @Test
+    public void meetsRules() {
+        ConstraintSolver solver = new ConstraintSolver(catalog(), feasible());
+        int[] picks = solver.solve(new int[0], 10, all());
+        assertNotNull(picks);
+        assertEquals(10, picks.length);
+        assertTrue(solver.meets(picks));
+        assertFalse(solver.gaveUp());
+        assertNull(solver.getFailure());
+    }
+
+
+    /** Rules that can't be met fail without giving up, whether they are caught before
+     *  the search or by it. */
+    @Test
+    public void unmetRules() {
+        CardCatalog catalog = catalog();
+        ConstraintSolver solver = new ConstraintSolver(catalog, infeasible());
+        assertNull(solver.solve(new int[0], 10, all()));
+        assertFalse(solver.gaveUp());
+
+        // Caught before the search: the rule is reported
+        solver = new ConstraintSolver(catalog, new Rule[]{Rule.atLeast("many", cards(0, 1), 3)});
+        assertNull(solver.solve(new int[0], 10, all()));
+        assertFalse(solver.gaveUp());
+        assertEquals("many", solver.getFailure().name);
+    }
+
+
+    /** A search that hits its limit gives up, and the next solve starts over. */
+    @Test
+    public void limitHit() {
+        CardCatalog catalog = catalog();
+        ConstraintSolver solver = new ConstraintSolver(catalog, feasible(), 1);
+        assertNull(solver.solve(new int[0], 10, all()));
+        assertTrue(solver.gaveUp());
+        assertNull(solver.getFailure());
+        // Copies keep the limit
+        ConstraintSolver copy = solver.copy();
+        assertNull(copy.solve(new int[0], 10, all()));
+        assertTrue(copy.gaveUp());
+
+        // With room to search, the same rules are met
+        solver = new ConstraintSolver(catalog, feasible(), ConstraintSolver.SEARCH_LIMIT);
+        assertNotNull(solver.solve(new int[0], 10, all()));
+        assertFalse(solver.gaveUp());
+    }
+
+
+    /** A pool marks each kind of failure on the supply. */
+    @Test
+    public void poolReportsFailure() {
+        CardCatalog catalog = catalog();
+        Random random = new Random(0);
+
+        CardPool pool = new CardPool(catalog, new int[0], all());
+        pool.setSolver(new ConstraintSolver(catalog, feasible(), 1));
+        ShuffleSupply supply = new ShuffleSupply(catalog, 10, 0, random);
+        pool.fill(supply, random);
+        assertFalse(supply.isComplete());
+        assertTrue(supply.rulesGaveUp);
+        assertFalse(supply.rulesUnmet);
+
+        pool.setSolver(new ConstraintSolver(catalog, infeasible()));
+        supply = new ShuffleSupply(catalog, 10, 0, random);
+        pool.fill(supply, random);
+        assertFalse(supply.isComplete());
+        assertFalse(supply.rulesGaveUp);
+        assertTrue(supply.rulesUnmet);
+
+        pool.setSolver(new ConstraintSolver(catalog, feasible()));
+        supply = new ShuffleSupply(catalog, 10, 0, random);
+        pool.fill(supply, random);
+        assertTrue(supply.isComplete());
+        assertFalse(supply.rulesGaveUp);
+        assertFalse(supply.rulesUnmet);
+    }
+
+
+    /** A pool with too few kingdom cards for a supply reports the shortfall,
+     *  not unmet rules, just like a pool without rules. */
+    @Test
+    public void shortPool() {
+        CardCatalog catalog = catalog();
+        Random random = new Random(0);
+        CardPool pool = new CardPool(catalog, new int[0], new int[]{0, 1, 2, 3, 4, 5, 6});
+        pool.setSolver(new ConstraintSolver(catalog, feasible()));
+        ShuffleSupply supply = new ShuffleSupply(catalog, 10, 0, random);
+        pool.fill(supply, random);
+        assertFalse(supply.isComplete());
+        assertFalse(supply.rulesUnmet);
+        assertFalse(supply.rulesGaveUp);
+        assertEquals(3, supply.getShortfall());
+    }
+}
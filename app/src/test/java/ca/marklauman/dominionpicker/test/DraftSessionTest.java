@@ -0,0 +1,121 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.DraftSession;
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the hands dealt by a {@link DraftSession}, and the supplies made from them.
+ *  @author Mark Lauman */
+public class DraftSessionTest {
+
+    /** The number of drafts dealt by each test. */
+    private static final int DRAFTS = 500;
+    /** The number of plain kingdom cards in the catalog. */
+    private static final int KINGDOM = 20;
+
+
+    /** Build a catalog with {@link #KINGDOM} plain kingdom cards that cost 4 (ids 1 and up),
+     *  the young witch (who can't have a bane, as nothing costs 2 or 3) and an event. */
+    private static CardCatalog catalog() {
+        CardCatalog.Builder res = new CardCatalog.Builder(KINGDOM + 2);
+        for(long id=1; id<=KINGDOM; id++)
+            res.add(id, 0, 4, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        res.add(TableCard.ID_YOUNG_WITCH, 0, 4, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        res.add(KINGDOM + 1, 0, 2, 0, 0, CardCatalog.FLAG_EVENT | CardCatalog.FLAG_PLAIN_COST);
+        return res.build();
+    }
+
+
+    /** A request for a supply of 10 kingdom cards from the catalog. */
+    private static ShuffleRequest request() {
+        return new ShuffleRequest.Builder()
+                .setLimits(10, 0)
+                .setFilter("0", "", "", true, true, "")
+                .build();
+    }
+
+
+    /** No card is in two hands, and only kingdom cards that could be in a supply
+     *  are dealt (no events, and no young witch without a bane). */
+    @Test
+    public void disjointHands() {
+        CardCatalog catalog = catalog();
+        ShuffleRequest request = request();
+        CardPool pool = ShuffleEngine.newPool(catalog, request);
+        for(long seed=0; seed<DRAFTS; seed++) {
+            DraftSession draft = DraftSession.deal(catalog, pool, request,
+                                                   4, 5, 2, new Random(seed));
+            assertNotNull(draft);
+            HashSet<Long> seen = new HashSet<>();
+            for(int player=0; player<draft.players; player++) {
+                DraftSession.Hand hand = draft.hand(player);
+                assertEquals(5, hand.size());
+                for(int pos=0; pos<hand.size(); pos++) {
+                    long id = hand.getCard(pos);
+                    assertTrue("Dealt twice: " + id, seen.add(id));
+                    assertNotEquals(TableCard.ID_YOUNG_WITCH, id);
+                    assertFalse(catalog.isSpecial(catalog.indexOf(id)));
+                    assertEquals(pos, hand.indexOf(id));
+                }
+            }
+        }
+    }
+
+
+    /** If there aren't enough cards for every hand, nothing is dealt. */
+    @Test
+    public void notEnoughCards() {
+        CardCatalog catalog = catalog();
+        ShuffleRequest request = request();
+        CardPool pool = ShuffleEngine.newPool(catalog, request);
+        assertNotNull(DraftSession.deal(catalog, pool, request, 4, 5, 2, new Random(0)));
+        assertNull(DraftSession.deal(catalog, pool, request, 3, 7, 2, new Random(0)));
+    }
+
+
+    /** A player can't pick more than their share, and every pick is in the supply. */
+    @Test
+    public void picksInSupply() {
+        CardCatalog catalog = catalog();
+        ShuffleRequest request = request();
+        CardPool pool = ShuffleEngine.newPool(catalog, request);
+        for(long seed=0; seed<DRAFTS; seed++) {
+            Random random = new Random(seed);
+            DraftSession draft = DraftSession.deal(catalog, pool, request, 3, 5, 3, random);
+            assertNotNull(draft);
+            for(int player=0; player<draft.players; player++) {
+                DraftSession.Hand hand = draft.hand(player);
+                for(int pos=0; pos<draft.picksEach; pos++)
+                    assertTrue(hand.setPicked(pos, true));
+                assertFalse(hand.setPicked(draft.picksEach, true));
+                assertEquals(draft.picksEach, hand.numPicked());
+            }
+            assertTrue(draft.isFinished());
+
+            ShuffleSupply supply = draft.assemble(catalog, pool, random);
+            assertTrue(supply.isComplete());
+            long[] cards = supply.getCards();
+            assertEquals(10, cards.length);
+            Arrays.sort(cards);
+            for(long pick : draft.getPicks())
+                assertTrue(0 <= Arrays.binarySearch(cards, pick));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardFilter;
+import ca.marklauman.dominionpicker.shuffler.EligibilityCounter;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests the kingdom shortfall that the picker warns about ({@link EligibilityCounter}).
+ *  @author Mark Lauman */
+public class EligibilityCounterTest {
+
+    /** Flags of an ordinary kingdom card. */
+    private static final int PLAIN = CardCatalog.FLAG_PLAIN_COST;
+
+
+    /** Build a catalog with 6 kingdom cards in set 0 (ids 1-6, costs 2-7), 6 in set 1
+     *  (ids 11-16, costs 2-7) and an event in set 0 (id 20). */
+    private static CardCatalog catalog() {
+        CardCatalog.Builder res = new CardCatalog.Builder(13);
+        for(int i=0; i<6; i++) {
+            res.add(1 + i, 0, 2 + i, 0, 0, PLAIN);
+            res.add(11 + i, 1, 2 + i, 0, 0, PLAIN);
+        }
+        res.add(20, 0, 2, 0, 0, CardCatalog.FLAG_EVENT | PLAIN);
+        return res.build();
+    }
+
+
+    /** A filter that allows the given sets and filters out the given costs. */
+    private static CardFilter filter(String sets, String costs) {
+        return new CardFilter(sets, costs, "", true, true, "");
+    }
+
+
+    /** A set of card ids. */
+    private static HashSet<Long> ids(Long... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+
+    /** The warning shows exactly when fewer kingdom cards pass the filter
+     *  than the supply needs. Events never count towards the kingdom. */
+    @Test
+    public void threshold() {
+        EligibilityCounter counter = new EligibilityCounter(catalog());
+        counter.setFilter(filter("0,1", ""));
+        assertEquals(12, counter.numKingdom());
+        assertEquals(1, counter.numSpecial());
+        assertEquals(0, counter.shortfall(10));
+        assertEquals(0, counter.shortfall(12));
+        assertEquals(1, counter.shortfall(13));
+
+        // One set: 6 cards
+        counter.setFilter(filter("0", ""));
+        assertEquals(4, counter.shortfall(10));
+        assertEquals(0, counter.shortfall(6));
+
+        // Both sets without the cards that cost 2 or 7: 8 cards
+        counter.setFilter(filter("0,1", "2,7"));
+        assertEquals(2, counter.shortfall(10));
+        assertEquals(0, counter.shortfall(8));
+
+        // No sets
+        counter.setFilter(filter("", ""));
+        assertEquals(10, counter.shortfall(10));
+    }
+
+
+    /** Deselected cards count against the kingdom, unless they are required.
+     *  Deselected cards that the filter already hides are not counted twice. */
+    @Test
+    public void deselected() {
+        EligibilityCounter counter = new EligibilityCounter(catalog());
+        counter.setFilter(filter("0,1", ""));
+        counter.setExcluded(ids(1L, 2L, 3L), ids());
+        assertEquals(9, counter.numKingdom());
+        assertEquals(1, counter.shortfall(10));
+
+        counter.setExcluded(ids(1L, 2L, 3L), ids(3L));
+        assertEquals(0, counter.shortfall(10));
+
+        // Card 11 costs 2, so it is already hidden by the filter
+        counter.setFilter(filter("0,1", "2"));
+        counter.setExcluded(ids(11L, 12L), ids());
+        assertEquals(9, counter.numKingdom());
+        assertEquals(1, counter.shortfall(10));
+
+        // The event is never a kingdom card
+        counter.setExcluded(ids(20L), ids());
+        assertEquals(10, counter.numKingdom());
+        assertEquals(0, counter.numSpecial());
+        assertEquals(0, counter.shortfall(10));
+    }
+}
@@ -0,0 +1,70 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import ca.marklauman.dominionpicker.database.InClause;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** Tests the bucketing and argument padding of {@link InClause}.
+ *  @author Mark Lauman */
+public class InClauseTest {
+
+    /** Lists are rounded up to the next power of two. */
+    @Test
+    public void bucket() {
+        assertEquals(1, InClause.bucket(0));
+        assertEquals(1, InClause.bucket(1));
+        assertEquals(2, InClause.bucket(2));
+        assertEquals(4, InClause.bucket(3));
+        assertEquals(8, InClause.bucket(8));
+        assertEquals(16, InClause.bucket(9));
+        assertEquals(16, InClause.bucket(16));
+        assertEquals(32, InClause.bucket(17));
+    }
+
+
+    /** The arguments are padded out to the bucket with the last value,
+     *  and an empty list is bound as {@link InClause#NONE}. */
+    @Test
+    public void padding() {
+        assertArrayEquals(new String[]{InClause.NONE}, InClause.args(new long[0]));
+        assertArrayEquals(new String[]{"7"}, InClause.args(new long[]{7}));
+        assertArrayEquals(new String[]{"1", "2", "3", "3"}, InClause.args(new long[]{1, 2, 3}));
+        assertArrayEquals(new String[]{"4", "5", "6", "7"}, InClause.args(new long[]{4, 5, 6, 7}));
+
+        long[] ten = new long[10];
+        for(int i=0; i<ten.length; i++)
+            ten[i] = 100 + i;
+        String[] args = InClause.args(ten);
+        assertEquals(16, args.length);
+        assertEquals("109", args[9]);
+        for(int i=10; i<args.length; i++)
+            assertEquals("109", args[i]);
+    }
+
+
+    /** Preference strings are split on commas, and entries that are not
+     *  whole numbers are left out. */
+    @Test
+    public void preferenceString() {
+        assertArrayEquals(new String[]{InClause.NONE}, InClause.args(""));
+        assertArrayEquals(new String[]{InClause.NONE}, InClause.args("x,,y"));
+        assertArrayEquals(new String[]{"1", "2", "3", "3"}, InClause.args("1, 2,x,3"));
+        assertArrayEquals(new String[]{"-4"}, InClause.args("-4"));
+    }
+
+
+    /** Each argument gets one placeholder, and lists are joined in order. */
+    @Test
+    public void selection() {
+        String[] args = InClause.args(new long[]{1, 2, 3});
+        assertEquals("_id IN (?,?,?,?)", InClause.in("_id", args));
+        assertEquals("set_id NOT IN (?)", InClause.notIn("set_id", InClause.args("")));
+
+        String[] joined = InClause.concat(args, new String[]{"9"}, new String[0]);
+        assertArrayEquals(new String[]{"1", "2", "3", "3", "9"}, joined);
+        assertEquals(0, InClause.concat().length);
+    }
+}
@@ -0,0 +1,281 @@
+package ca.marklauman.dominionpicker.test;
+
+import android.content.SharedPreferences;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import ca.marklauman.dominionpicker.FragmentPicker;
+import ca.marklauman.dominionpicker.database.InClause;
+import ca.marklauman.dominionpicker.database.Provider;
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.settings.Pref;
+
+import static org.junit.Assert.assertFalse;
+
+/** Runs {@code EXPLAIN QUERY PLAN} on the queries each {@link Provider} URI gets from the
+ *  app, against the bundled core database. Fails if any of them scans a whole card table,
+ *  which means an index (see translations/indexes.sql) is missing or unused.
+ *
+ *  <p>The selections and their arguments are built by the same code the app uses
+ *  ({@link FragmentPicker#getFilter}, {@link InClause}, {@link Pref#buildLanguageFilter}
+ *  and {@link Pref#buildEditionFilter}), from preferences like a user's. They are put
+ *  together the way {@link Provider} hands them to SQLite.</p>
+ *  @author Mark Lauman */
+public class QueryPlanTest {
+
+    /** The bundled core database (relative to the app module). */
+    private static final String CORE_DB = "src/main/assets/databases/core.db.gz";
+    /** A plan step that reads every row of a card table. Covering index scans are
+     *  allowed: they only read an index, and only happen for SELECT DISTINCT. */
+    private static final Pattern FULL_SCAN =
+            Pattern.compile("^SCAN (TABLE )?(cardData|cardTrans|cardSet)\\b(?!.*COVERING INDEX).*");
+    /** The value of a set that uses every edition ({@code R.integer.expansion_editions_all}). */
+    private static final int ALL_EDITIONS = -1;
+
+    /** The language filter, with the first two sets in German and the rest in English. */
+    private static final String LANG = Pref.buildLanguageFilter(
+            new String[]{"de", "de", "en", "en", "en", "en", "en", "en", "en", "en",
+                         "en", "en", "en", "en", "en", "en", "en", "en", "en"});
+    /** A card sort like {@code Pref.cardSort} (set, then name). */
+    private static final String SORT = TableCard._SET_NAME + "," + TableCard._NAME;
+    /** The columns shown for a card. */
+    private static final String[] COLS = {TableCard._ID, TableCard._NAME,
+            TableCard._SET_NAME, TableCard._COST, TableCard._TEXT};
+
+    /** Connection to a copy of the core database. */
+    private static Connection db;
+    /** The copy of the core database. */
+    private static File dbFile;
+
+
+    @BeforeClass
+    public static void openDatabase() throws IOException, SQLException {
+        dbFile = File.createTempFile("core", ".db");
+        InputStream in = new GZIPInputStream(new FileInputStream(CORE_DB));
+        OutputStream out = new FileOutputStream(dbFile);
+        try {
+            byte[] buf = new byte[8192];
+            int read;
+            while(0 < (read = in.read(buf)))
+                out.write(buf, 0, read);
+        } finally {
+            in.close();
+            out.close();
+        }
+        db = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+    }
+
+
+    @AfterClass
+    public static void closeDatabase() throws SQLException {
+        if(db != null) db.close();
+        //noinspection ResultOfMethodCallIgnored
+        dbFile.delete();
+    }
+
+
+    /** Get the plan of a query, one step per line. */
+    private static ArrayList<String> plan(String sql, Object... args) throws SQLException {
+        ArrayList<String> res = new ArrayList<>();
+        PreparedStatement stmt = db.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+        try {
+            for(int i=0; i<args.length; i++)
+                stmt.setObject(i+1, args[i]);
+            ResultSet rs = stmt.executeQuery();
+            // The step is the last column in every version of SQLite
+            int detail = rs.getMetaData().getColumnCount();
+            while(rs.next())
+                res.add(rs.getString(detail));
+        } finally {
+            stmt.close();
+        }
+        return res;
+    }
+
+
+    /** Check that a query made by {@link Provider} does not scan a card table.
+     *  The SQL is laid out like {@code SQLiteQueryBuilder.buildQueryString}.
+     *  @param table The table or view that the URI reads.
+     *  @param distinct If this is a SELECT DISTINCT.
+     *  @param cols The columns.
+     *  @param selection The WHERE clause, or null.
+     *  @param sort The ORDER BY clause, or null.
+     *  @param args The selection arguments. */
+    private static void assertIndexed(String table, boolean distinct, String[] cols,
+                                      String selection, String sort, String... args)
+            throws SQLException {
+        StringBuilder colSql = new StringBuilder();
+        for(String col : cols)
+            colSql.append(colSql.length() == 0 ? "" : ", ").append(col);
+        String sql = "SELECT " + (distinct ? "DISTINCT " : "") + colSql + " FROM " + table
+                     + (selection == null ? "" : " WHERE " + selection)
+                     + (sort == null ? "" : " ORDER BY " + sort);
+        ArrayList<String> plan = plan(sql, (Object[]) args);
+        for(String step : plan)
+            assertFalse("Full scan in:\n" + sql + "\n" + plan, FULL_SCAN.matcher(step).matches());
+    }
+
+
+    /** The picker: every card that passes the filters (FragmentPicker). */
+    @Test
+    public void cardAllPicker() throws SQLException {
+        MapPreferences pref = new MapPreferences();
+        pref.values.put(Pref.FILT_SET, "0,1,2,3,4,11");
+        pref.values.put(Pref.FILT_POTION, false);
+        pref.values.put(Pref.FILT_COST, "6");
+        pref.values.put(Pref.FILT_DEBT, "8");
+        pref.values.put(Pref.FILT_CURSE, false);
+        pref.values.put(Pref.FILT_EDITION,
+                        Pref.buildEditionFilter(new String[]{"2", "" + ALL_EDITIONS},
+                                                ALL_EDITIONS));
+        assertIndexed("cardAll", false, COLS, FragmentPicker.getFilter(pref) + " AND " + LANG,
+                      SORT, FragmentPicker.getFilterArgs(pref));
+
+        // With no filters but the sets
+        pref = new MapPreferences();
+        pref.values.put(Pref.FILT_SET, "0");
+        assertIndexed("cardAll", false, COLS, FragmentPicker.getFilter(pref) + " AND " + LANG,
+                      SORT, FragmentPicker.getFilterArgs(pref));
+    }
+
+
+    /** The cards of a supply (ActivitySupply) and of the black market (FragmentMarket). */
+    @Test
+    public void cardAllSupply() throws SQLException {
+        String[] cards = InClause.args(new long[]{1, 5, 9, 30, 41, 77, 103, 150, 161, 200});
+        assertIndexed("cardAll", false, COLS,
+                      "(" + InClause.in(TableCard._ID, cards) + ") AND " + LANG, SORT, cards);
+        cards = InClause.args(new long[]{12, 60, 140});
+        assertIndexed("cardAll", false, COLS,
+                      InClause.in(TableCard._ID, cards) + " AND " + LANG, SORT, cards);
+    }
+
+
+    /** One card (ActivityCardInfo and replacing a card in ActivitySupply). */
+    @Test
+    public void cardAllOne() throws SQLException {
+        assertIndexed("cardAll", false, COLS, TableCard._ID + "=? AND " + LANG, null, "161");
+    }
+
+
+    /** Every card in the current languages (CardRowCache). */
+    @Test
+    public void cardAllRows() throws SQLException {
+        assertIndexed("cardAll", false, COLS, LANG, SORT);
+    }
+
+
+    /** The cost and debt choices of the rules screen (AdapterRules). */
+    @Test
+    public void cardDataUnique() throws SQLException {
+        assertIndexed("cardData", true, new String[]{TableCard._COST_VAL}, null,
+                      TableCard._COST_VAL);
+        assertIndexed("cardData", true, new String[]{TableCard._DEBT}, null, TableCard._DEBT);
+    }
+
+
+    /** The sets in the current languages (AdapterRules, ActivityChooseEdition)
+     *  and the order of the sets (CardLanguageSelector). */
+    @Test
+    public void cardSet() throws SQLException {
+        assertIndexed("cardSet", false, new String[]{TableCard._SET_ID, TableCard._SET_NAME},
+                      LANG, TableCard._PROMO + ", " + TableCard._SET_NAME);
+        assertIndexed("cardSet", false, new String[]{TableCard._SET_ID}, TableCard._LANG + "=?",
+                      TableCard._PROMO + ", " + TableCard._RELEASE, "en");
+    }
+
+
+    /** The sample supplies (HandlerSamples) and one sample supply (ActivitySupply). */
+    @Test
+    public void supply() throws SQLException {
+        String[] cols = {"_id", "name", "cards"};
+        assertIndexed("supply", false, cols, LANG, "_id");
+        assertIndexed("supply", false, cols, "_id=? AND " + LANG, null, "3");
+    }
+
+
+    /* Not checked, as they read every row on purpose:
+     * cardData by CatalogLoader, every language of cardSet by CardLanguageSelector,
+     * and setEdition by ActivityChooseEdition. */
+
+
+    /** Preferences held in a map, for the filters that read them.
+     *  Only the getters are supported. */
+    private static class MapPreferences implements SharedPreferences {
+        /** The values of the preferences. */
+        final HashMap<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return values;
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(
+                OnSharedPreferenceChangeListener listener) {}
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(
+                OnSharedPreferenceChangeListener listener) {}
+    }
+}
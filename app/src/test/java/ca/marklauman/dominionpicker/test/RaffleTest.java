@@ -2,9 +2,21 @@ package ca.marklauman.dominionpicker.test;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.shuffler.AliasSampler;
+import ca.marklauman.dominionpicker.shuffler.IntRafflePool;
+import ca.marklauman.dominionpicker.shuffler.LongRafflePool;
 import ca.marklauman.dominionpicker.shuffler.RafflePool;
 
-/** Class devoted to testing {@link RafflePool} and ensuring it works to standard.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Class devoted to testing {@link RafflePool}, {@link LongRafflePool},
+ *  {@link IntRafflePool} and {@link AliasSampler} and ensuring they work to standard.
  *  @author Mark Lauman */
 public class RaffleTest {
 
@@ -21,6 +33,16 @@ public class RaffleTest {
             pool.add(i, (long)i);
     }
 
+    private static void fillPool(LongRafflePool pool, int maxValue) {
+        for(int i=1; i<=maxValue; i++)
+            pool.add(i, (long)i);
+    }
+
+    private static void fillPool(IntRafflePool pool, int maxValue) {
+        for(int i=1; i<=maxValue; i++)
+            pool.add(i, i);
+    }
+
     @Test
     public void basicTest() {
         println("Basic Pool:");
@@ -90,4 +112,181 @@ public class RaffleTest {
             println("");
         }
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void longBasicTest() {
+        println("Basic Long Pool:");
+        LongRafflePool pool = new LongRafflePool(15);
+        fillPool(pool, 3);
+        println(pool);
+        assertEquals(3, pool.numEntries());
+        assertEquals(6, pool.numTickets());
+
+        pool.clear();
+        assertEquals(0, pool.numTickets());
+        assertEquals(LongRafflePool.EMPTY, pool.draw());
+
+        pool.add(1, 1L);
+        assertEquals(1L, pool.draw());
+        assertEquals(LongRafflePool.EMPTY, pool.draw());
+
+        // Removal tests (the pool grows past its initial size here)
+        fillPool(pool, 20);
+        assertEquals(210, pool.numTickets());
+        assertTrue(pool.remove(9L));
+        assertFalse(pool.remove(9L));
+        assertEquals(201, pool.numTickets());
+        println(pool);
+
+        // Every value must be drawn exactly once, and the tickets must add up as we go.
+        int tickets = pool.numTickets();
+        boolean[] seen = new boolean[21];
+        for(int i=0; i<19; i++) {
+            long draw = pool.draw();
+            assertFalse(seen[(int)draw]);
+            seen[(int)draw] = true;
+            tickets -= draw;
+            assertEquals(tickets, pool.numTickets());
+        }
+        assertEquals(LongRafflePool.EMPTY, pool.draw());
+        assertFalse(seen[9]);
+    }
+
+    @Test
+    public void intBasicTest() {
+        println("Basic Int Pool:");
+        IntRafflePool pool = new IntRafflePool(15);
+        fillPool(pool, 3);
+        println(pool);
+        assertEquals(6, pool.numTickets());
+
+        pool.clear();
+        assertEquals(IntRafflePool.EMPTY, pool.draw());
+
+        fillPool(pool, 15);
+        assertTrue(pool.remove(9));
+        assertFalse(pool.remove(9));
+        assertEquals(111, pool.numTickets());
+        int tickets = pool.numTickets();
+        for(int i=0; i<14; i++) {
+            tickets -= pool.draw();
+            assertEquals(tickets, pool.numTickets());
+        }
+        assertEquals(IntRafflePool.EMPTY, pool.draw());
+    }
+
+    @Test
+    public void primitiveRandomTest() {
+        // Primitive pools given the same seed must draw the same values.
+        LongRafflePool longPool = new LongRafflePool(15, new Random(42L));
+        IntRafflePool intPool = new IntRafflePool(15, new Random(42L));
+        for(int i=0; i<10; i++) {
+            fillPool(longPool, 15);
+            fillPool(intPool, 15);
+            print("Draw: ");
+            for(int v=0; v<16; v++) {
+                long draw = longPool.draw();
+                assertEquals(draw, intPool.draw());
+                if(draw == -1L) print(" null");
+                else if(draw < 10) print("  "+draw);
+                else print(" "+draw);
+            }
+            println("");
+        }
+
+        // Entrants should be drawn first in proportion to their tickets.
+        int[] firsts = new int[3];
+        for(int i=0; i<6000; i++) {
+            intPool.clear();
+            intPool.add(1, 0);
+            intPool.add(2, 1);
+            intPool.add(3, 2);
+            firsts[intPool.draw()]++;
+        }
+        println("First draws: 1="+firsts[0]+" 2="+firsts[1]+" 3="+firsts[2]);
+        assertTrue(firsts[0] < firsts[1] && firsts[1] < firsts[2]);
+    }
+
+
+    @Test
+    public void reweightTest() {
+        println("Reweight Pool:");
+        RafflePool<Long> pool = new RafflePool<>(15, new Random(7L));
+        int[] handles = new int[16];
+        for(int i=1; i<=15; i++)
+            handles[i] = pool.add(i, (long)i);
+        assertEquals(120, pool.numTickets());
+
+        // Re-weight a few entrants in place
+        pool.setTickets(handles[15], 1);
+        pool.adjustTickets(handles[1], 4);
+        assertEquals(5, pool.getTickets(handles[1]));
+        assertEquals(110, pool.numTickets());
+
+        // An entrant with no tickets stays in the pool but is never drawn
+        pool.setTickets(handles[7], 0);
+        assertEquals(15, pool.numEntries());
+        println(pool);
+
+        // Removal by value and by handle
+        assertTrue(pool.remove(9L));
+        assertFalse(pool.remove(9L));
+        assertTrue(pool.withdraw(handles[3]));
+        assertFalse(pool.withdraw(handles[3]));
+        assertFalse(pool.isEntered(handles[3]));
+        assertEquals(91, pool.numTickets());
+
+        // Handles stay valid while other entrants move around
+        assertEquals(Long.valueOf(15L), pool.get(handles[15]));
+        assertEquals(handles[12], pool.findHandle(12L));
+        int tickets = pool.numTickets();
+        for(int i=0; i<12; i++) {
+            Long draw = pool.draw();
+            assertTrue(draw != 7L);
+            print(" "+draw);
+            if(draw == 1L) tickets -= 5;
+            else if(draw == 15L) tickets -= 1;
+            else tickets -= draw;
+            assertEquals(tickets, pool.numTickets());
+        }
+        println("");
+        assertEquals(1, pool.numEntries());
+        assertEquals(0, pool.numTickets());
+        assertNull(pool.draw());
+        assertEquals(Long.valueOf(7L), pool.get(handles[7]));
+    }
+
+    @Test
+    public void aliasTest() {
+        println("Alias Sampler:");
+        int[] weights = {1, 2, 3, 0, 4};
+        AliasSampler sampler = new AliasSampler(weights, new Random(3L));
+
+        // Samples should come up in proportion to their weights
+        int[] counts = new int[weights.length];
+        for(int i=0; i<10000; i++)
+            counts[sampler.sample()]++;
+        println("Samples: "+Arrays.toString(counts));
+        assertEquals(0, counts[3]);
+        assertTrue(counts[0] < counts[1] && counts[1] < counts[2] && counts[2] < counts[4]);
+
+        // Draws without replacement return each entrant with weight once, then run dry
+        for(int round=0; round<3; round++) {
+            boolean[] seen = new boolean[weights.length];
+            print("Draw:");
+            for(int i=0; i<4; i++) {
+                int draw = sampler.draw();
+                print(" "+draw);
+                assertFalse(seen[draw]);
+                seen[draw] = true;
+            }
+            println("");
+            assertEquals(-1, sampler.draw());
+            assertEquals(-1, sampler.sample());
+            assertEquals(0L, sampler.remainingWeight());
+            sampler.reset();
+            assertEquals(10L, sampler.remainingWeight());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.RecencyScores;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the decay of {@link RecencyScores}, and that a {@link CardPool} given the scores
+ *  draws recently seen cards less often.
+ *  @author Mark Lauman */
+public class RecencyScoresTest {
+
+    /** The largest error allowed in a score. */
+    private static final double DELTA = 1e-9;
+
+
+    /** Each supply adds 1 to its cards' scores, and every score decays by
+     *  {@link RecencyScores#DECAY} with each supply after that. */
+    @Test
+    public void decay() {
+        RecencyScores scores = new RecencyScores();
+        assertEquals(0.0, scores.scoreOf(1), DELTA);
+        assertEquals(0L, scores.version());
+
+        scores.record(new long[]{1, 2});
+        assertEquals(1.0, scores.scoreOf(1), DELTA);
+        assertEquals(1.0, scores.scoreOf(2), DELTA);
+        scores.record(new long[]{2, 3});
+        assertEquals(RecencyScores.DECAY, scores.scoreOf(1), DELTA);
+        assertEquals(1.0 + RecencyScores.DECAY, scores.scoreOf(2), DELTA);
+        assertEquals(1.0, scores.scoreOf(3), DELTA);
+        scores.record(new long[0]);
+        assertEquals(RecencyScores.DECAY * RecencyScores.DECAY, scores.scoreOf(1), DELTA);
+        assertEquals(0.0, scores.scoreOf(4), DELTA);
+        assertEquals(3L, scores.version());
+    }
+
+
+    /** Scores stay right over many supplies and many cards
+     *  (past the point where the stored scores are rescaled). */
+    @Test
+    public void longRun() {
+        RecencyScores scores = new RecencyScores();
+        scores.record(new long[]{100000});
+        for(int i=0; i<5000; i++)
+            scores.record(new long[]{1, 1000 + i});
+
+        // A card in every supply approaches 1/(1-DECAY)
+        assertEquals(1.0 / (1.0 - RecencyScores.DECAY), scores.scoreOf(1), 1e-6);
+        // A card in the last supply, and the one before it
+        assertEquals(1.0, scores.scoreOf(5999), DELTA);
+        assertEquals(RecencyScores.DECAY, scores.scoreOf(5998), DELTA);
+        // A card that has not been seen in thousands of supplies
+        assertEquals(0.0, scores.scoreOf(100000), 1e-6);
+        assertEquals(5001L, scores.version());
+    }
+
+
+    /** A card's tickets are its weight times {@link RecencyScores#SCALE},
+     *  divided by {@code 1 + PENALTY * score}. */
+    @Test
+    public void tickets() {
+        RecencyScores scores = new RecencyScores();
+        scores.record(new long[]{1});
+        assertEquals(RecencyScores.SCALE, scores.ticketsOf(1, 2));
+        assertEquals(3 * RecencyScores.SCALE, scores.ticketsOf(3, 2));
+        assertEquals(Math.round(RecencyScores.SCALE / (1.0 + RecencyScores.PENALTY)),
+                     scores.ticketsOf(1, 1));
+        assertEquals(0, scores.ticketsOf(0, 1));
+
+        // A card with weight always keeps a ticket
+        for(int i=0; i<100; i++)
+            scores.record(new long[]{1});
+        assertTrue(1 <= scores.ticketsOf(1, 1));
+    }
+
+
+    /** A weighted pool draws the cards of the last supply less often. Copies of the pool
+     *  see supplies recorded after they were made. */
+    @Test
+    public void downWeighting() {
+        CardCatalog.Builder builder = new CardCatalog.Builder(20);
+        for(long id=1; id<=20; id++)
+            builder.add(id, 0, 4, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        CardCatalog catalog = builder.build();
+        int[] cards = new int[catalog.size()];
+        int[] weights = new int[cards.length];
+        for(int i=0; i<cards.length; i++) {
+            cards[i] = i;
+            weights[i] = 1;
+        }
+
+        RecencyScores scores = new RecencyScores();
+        CardPool pool = new CardPool(catalog, new int[0], cards, weights);
+        pool.setRecency(scores);
+        CardPool copy = pool.copy();
+        long[] recent = {1, 2, 3, 4, 5};
+        scores.record(recent);
+
+        // Draw supplies of 1 card, and count how often a recent card is drawn
+        int shuffles = 20000, hits = 0;
+        Random random = new Random(0);
+        for(int i=0; i<shuffles; i++) {
+            ShuffleSupply supply = new ShuffleSupply(catalog, 1, 0, random);
+            copy.fill(supply, random);
+            if(supply.getCards()[0] <= recent.length) hits++;
+        }
+
+        // 5 cards with 4 tickets each, 15 cards with 16
+        double expected = 5 * 4 / (5 * 4 + 15 * 16.0);
+        assertEquals(expected, hits / (double) shuffles, 0.01);
+    }
+}
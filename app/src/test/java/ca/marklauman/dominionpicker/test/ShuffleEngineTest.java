@@ -0,0 +1,124 @@
+package ca.marklauman.dominionpicker.test;
+
+import org.junit.Test;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+import ca.marklauman.dominionpicker.shuffler.StratifiedSampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the supplies made by the {@link ShuffleEngine} under the cost curve,
+ *  and the batches it shuffles across threads.
+ *  @author Mark Lauman */
+public class ShuffleEngineTest {
+
+    /** The number of supplies shuffled by each test. */
+    private static final int SHUFFLES = 20000;
+
+
+    /** Build a catalog with exactly enough cards for the two cheaper ranges of the
+     *  cost curve (2 at cost 2, 4 at cost 4), and 4 cards at cost 6 (ids 7 to 10). */
+    private static CardCatalog catalog() {
+        CardCatalog.Builder res = new CardCatalog.Builder(10);
+        int[] costs = {2, 3, 4, 4, 5, 5, 6, 6, 6, 7};
+        for(int i=0; i<costs.length; i++)
+            res.add(i+1, 0, costs[i], 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        return res.build();
+    }
+
+
+    /** Count how often each card is in a supply of 7 (the size of the cost curve). */
+    private static int[] count(CardCatalog catalog, ShuffleRequest request) {
+        int[] res = new int[catalog.size()];
+        for(long seed=0; seed<SHUFFLES; seed++) {
+            ShuffleSupply supply = ShuffleEngine.shuffle(catalog, request, seed);
+            assertTrue(supply.isComplete());
+            int[] strata = new int[ShuffleEngine.COST_CURVE.length];
+            for(long id : supply.getCards()) {
+                int card = catalog.indexOf(id);
+                res[card]++;
+                strata[StratifiedSampler.stratumOf(catalog, card, ShuffleEngine.COST_CURVE)]++;
+            }
+            for(int s=0; s<strata.length; s++)
+                assertTrue(ShuffleEngine.COST_CURVE_QUOTAS[s] <= strata[s]);
+        }
+        return res;
+    }
+
+
+    /** With weights, the cost curve is still met, and the one card drawn from the most
+     *  expensive range is picked in proportion to its weight. */
+    @Test
+    public void weightedCostCurve() {
+        CardCatalog catalog = catalog();
+        ShuffleRequest request = new ShuffleRequest.Builder()
+                .setLimits(7, 0)
+                .setFilter("0", "", "", true, true, "")
+                .setWeights("", "7:1,8:2,9:3,10:4")
+                .setCostCurve(true)
+                .build();
+        int[] counts = count(catalog, request);
+        for(int w=1; w<=4; w++) {
+            double share = counts[catalog.indexOf(6 + w)] / (double) SHUFFLES;
+            assertEquals(w / 10.0, share, 0.015);
+        }
+    }
+
+
+    /** Without weights, every card in the most expensive range is equally likely. */
+    @Test
+    public void evenCostCurve() {
+        CardCatalog catalog = catalog();
+        ShuffleRequest request = new ShuffleRequest.Builder()
+                .setLimits(7, 0)
+                .setFilter("0", "", "", true, true, "")
+                .setCostCurve(true)
+                .build();
+        int[] counts = count(catalog, request);
+        for(long id=7; id<=10; id++)
+            assertEquals(0.25, counts[catalog.indexOf(id)] / (double) SHUFFLES, 0.015);
+    }
+
+
+    /** A batch is the same no matter how many threads it is split between,
+     *  and each supply is the one its own seed gives. */
+    @Test
+    public void batchSplits() throws InterruptedException {
+        CardCatalog.Builder builder = new CardCatalog.Builder(40);
+        for(int i=0; i<40; i++)
+            builder.add(i+1, i % 2, 2 + i % 5, 0, 0, CardCatalog.FLAG_PLAIN_COST);
+        CardCatalog catalog = builder.build();
+        ShuffleRequest request = new ShuffleRequest.Builder()
+                .setLimits(10, 0)
+                .setFilter("0,1", "", "", true, true, "")
+                .setWeights("1,3", "")
+                .build();
+        CardPool pool = ShuffleEngine.newPool(catalog, request);
+
+        final int count = 37;
+        final long master = 8675309L;
+        ShuffleSupply[] single = ShuffleEngine.shuffleBatch(catalog, request, pool,
+                                                            count, master, 1);
+        assertEquals(count, single.length);
+        for(int i=0; i<count; i++) {
+            assertTrue(single[i].isComplete());
+            long seed = ShuffleEngine.seedFor(master, i);
+            assertArrayEquals(ShuffleEngine.shuffle(catalog, request, seed).getCards(),
+                              single[i].getCards());
+        }
+        for(int threads : new int[]{2, 3, 4, 8, 64}) {
+            ShuffleSupply[] split = ShuffleEngine.shuffleBatch(catalog, request, pool,
+                                                               count, master, threads);
+            for(int i=0; i<count; i++)
+                assertArrayEquals("threads " + threads + ", supply " + i,
+                                  single[i].getCards(), split[i].getCards());
+        }
+        assertEquals(0, ShuffleEngine.shuffleBatch(catalog, request, pool, 0, master, 4).length);
+    }
+}
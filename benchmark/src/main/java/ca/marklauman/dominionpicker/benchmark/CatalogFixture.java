@@ -0,0 +1,86 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+
+/** Builds a {@link CardCatalog} from the card data in {@code translations/cards/data.tsv},
+ *  the same way the app builds it from the core database (see {@code CatalogLoader}).
+ *  The file is found through the {@code catalog} system property, which the Gradle tasks
+ *  set. Without it, the path is taken relative to the benchmark project.
+ *  @author Mark Lauman */
+public abstract class CatalogFixture {
+
+    /** Path of the card data, relative to the benchmark project. */
+    private static final String DEFAULT_PATH = "../translations/cards/data.tsv";
+
+    /** The catalog, once it has been loaded. */
+    private static CardCatalog catalog = null;
+
+
+    /** Get the catalog. It is only read from the file once. */
+    public static synchronized CardCatalog get() {
+        if(catalog != null) return catalog;
+        File file = new File(System.getProperty("catalog", DEFAULT_PATH));
+        try {
+            catalog = read(Files.readAllLines(file.toPath(), Charset.forName("UTF-8")));
+        } catch(IOException e) {
+            throw new IllegalStateException("Could not read the card data from " + file, e);
+        }
+        return catalog;
+    }
+
+
+    /** Build a catalog from the lines of the data file (a header, then one card a line). */
+    private static CardCatalog read(List<String> lines) {
+        String[] header = lines.get(0).split("\t");
+        HashMap<String, Integer> cols = new HashMap<>();
+        for(int i=0; i<header.length; i++)
+            cols.put(header[i].trim(), i);
+
+        CardCatalog.Builder builder = new CardCatalog.Builder(lines.size());
+        for(String line : lines.subList(1, lines.size())) {
+            if(line.trim().length() == 0) continue;
+            String[] row = line.split("\t", -1);
+            int flags = 0;
+            if(isSet(row, cols, "typeEvent"))    flags |= CardCatalog.FLAG_EVENT;
+            if(isSet(row, cols, "typeLandmark")) flags |= CardCatalog.FLAG_LANDMARK;
+            if(isSet(row, cols, "metaCurser"))   flags |= CardCatalog.FLAG_CURSER;
+            if(isSet(row, cols, "typeAttack"))   flags |= CardCatalog.FLAG_ATTACK;
+            if(value(row, cols, "cost").matches("\\d+"))
+                flags |= CardCatalog.FLAG_PLAIN_COST;
+            if(isSet(row, cols, "plusBuy"))      flags |= CardCatalog.FLAG_PLUS_BUY;
+            if(2 <= TableCard.parseVal(value(row, cols, "plusAction")))
+                flags |= CardCatalog.FLAG_VILLAGE;
+            String edition = value(row, cols, "uniqueToEdition");
+            builder.add(Long.parseLong(value(row, cols, "_id")),
+                        Integer.parseInt(value(row, cols, "set_id")),
+                        Integer.parseInt(value(row, cols, "costVal")),
+                        Integer.parseInt(value(row, cols, "debt")),
+                        Integer.parseInt(value(row, cols, "potion")),
+                        flags, edition.length() == 0 ? 0 : Integer.parseInt(edition));
+        }
+        return builder.build();
+    }
+
+
+    /** Get a value from a row, or "" if the row does not have that column. */
+    private static String value(String[] row, HashMap<String, Integer> cols, String col) {
+        Integer pos = cols.get(col);
+        if(pos == null || row.length <= pos) return "";
+        return row[pos].trim();
+    }
+
+
+    /** Check if a numeric column is not 0 (values like "2+" count as their number). */
+    private static boolean isSet(String[] row, HashMap<String, Integer> cols, String col) {
+        String val = value(row, cols, col);
+        return val.length() != 0 && TableCard.parseVal(val) != 0;
+    }
+}
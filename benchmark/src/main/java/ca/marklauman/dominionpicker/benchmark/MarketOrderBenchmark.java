@@ -0,0 +1,74 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.marklauman.dominionpicker.shuffler.RandomOrder;
+
+/** Compares ways of putting the black market stock in a random order.
+ *  The stock is a bitset over a catalog where roughly 3 in 4 cards are eligible.
+ *  @author Mark Lauman */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarketOrderBenchmark {
+
+    /** Number of cards in the catalog. */
+    @Param({"500", "2000"})
+    public int size;
+
+    /** The eligible cards. */
+    private BitSet stock;
+    /** Source of randomness for the orders. */
+    private Random random;
+
+
+    @Setup
+    public void setup() {
+        Random pick = new Random(size);
+        stock = new BitSet(size);
+        for(int card=0; card<size; card++)
+            if(pick.nextInt(4) != 0) stock.set(card);
+        random = new Random(1L);
+    }
+
+
+    /** Copy the bitset to an array, then shuffle the array. */
+    @Benchmark
+    public int[] copyThenShuffle() {
+        int[] res = new int[stock.cardinality()];
+        int i = 0;
+        for(int card = stock.nextSetBit(0); 0 <= card; card = stock.nextSetBit(card+1))
+            res[i++] = card;
+        for(i=res.length-1; 0<i; i--) {
+            int pick = random.nextInt(i+1);
+            int card = res[i];
+            res[i] = res[pick];
+            res[pick] = card;
+        }
+        return res;
+    }
+
+
+    /** Shuffle while streaming the bitset ({@link RandomOrder}). */
+    @Benchmark
+    public int[] streamShuffle() {
+        return RandomOrder.of(stock, random);
+    }
+}
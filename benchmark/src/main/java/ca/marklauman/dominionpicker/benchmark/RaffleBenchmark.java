@@ -0,0 +1,116 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.marklauman.dominionpicker.shuffler.AliasSampler;
+import ca.marklauman.dominionpicker.shuffler.IntRafflePool;
+import ca.marklauman.dominionpicker.shuffler.RafflePool;
+
+/** Compares the weighted samplers in the shuffler package.
+ *  The single draw benchmarks put each entrant back after it is drawn, so the pools
+ *  stay the same size. The supply benchmarks draw 10 entrants without replacement
+ *  (like a kingdom) and then put them back.
+ *  @author Mark Lauman */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaffleBenchmark {
+
+    /** Number of entrants drawn for one supply. */
+    private static final int SUPPLY_SIZE = 10;
+
+    /** Number of entrants in each pool. */
+    @Param({"500", "5000", "1000000"})
+    public int size;
+
+    /** The weight of each entrant. */
+    private int[] weights;
+    /** Boxed pool holding every entrant. */
+    private RafflePool<Integer> rafflePool;
+    /** Primitive pool holding every entrant. */
+    private IntRafflePool intPool;
+    /** Alias sampler holding every entrant. */
+    private AliasSampler alias;
+    /** Scratch space for the supply benchmarks. */
+    private int[] supply;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        weights = new int[size];
+        rafflePool = new RafflePool<>(size, new Random(1L));
+        intPool = new IntRafflePool(size, new Random(1L));
+        for(int i=0; i<size; i++) {
+            weights[i] = 1 + random.nextInt(100);
+            rafflePool.add(weights[i], i);
+            intPool.add(weights[i], i);
+        }
+        alias = new AliasSampler(weights, new Random(1L));
+        supply = new int[SUPPLY_SIZE];
+    }
+
+
+    @Benchmark
+    public int rafflePoolDraw() {
+        Integer entrant = rafflePool.draw();
+        rafflePool.add(weights[entrant], entrant);
+        return entrant;
+    }
+
+    @Benchmark
+    public int intRafflePoolDraw() {
+        int entrant = intPool.draw();
+        intPool.add(weights[entrant], entrant);
+        return entrant;
+    }
+
+    @Benchmark
+    public int aliasSample() {
+        return alias.sample();
+    }
+
+
+    @Benchmark
+    public void rafflePoolSupply(Blackhole hole) {
+        for(int i=0; i<SUPPLY_SIZE; i++)
+            supply[i] = rafflePool.draw();
+        for(int entrant : supply)
+            rafflePool.add(weights[entrant], entrant);
+        hole.consume(supply);
+    }
+
+    @Benchmark
+    public void intRafflePoolSupply(Blackhole hole) {
+        for(int i=0; i<SUPPLY_SIZE; i++)
+            supply[i] = intPool.draw();
+        for(int entrant : supply)
+            intPool.add(weights[entrant], entrant);
+        hole.consume(supply);
+    }
+
+    @Benchmark
+    public void aliasSupply(Blackhole hole) {
+        for(int i=0; i<SUPPLY_SIZE; i++)
+            supply[i] = alias.draw();
+        alias.reset();
+        hole.consume(supply);
+    }
+}
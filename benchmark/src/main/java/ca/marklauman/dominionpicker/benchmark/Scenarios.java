@@ -0,0 +1,75 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import ca.marklauman.dominionpicker.database.TableCard;
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+
+/** The shuffles measured by the benchmarks. Each one takes a different path through the
+ *  shuffler. Every set in the catalog is allowed, so events and landmarks are included.
+ *  @author Mark Lauman */
+public abstract class Scenarios {
+
+    /** An ordinary shuffle (a partial Fisher-Yates draw). */
+    public static final String PLAIN = "plain";
+    /** A shuffle with set weights (drawn from a raffle). */
+    public static final String WEIGHTED = "weighted";
+    /** A shuffle with the +Buy, village and attack rules (picked by the solver). */
+    public static final String RULES = "rules";
+    /** A shuffle with the cost curve (drawn by the stratified sampler). */
+    public static final String COST_CURVE = "costCurve";
+    /** A shuffle with the Young Witch required, so a bane is always drawn. */
+    public static final String YOUNG_WITCH = "youngWitch";
+
+    /** Every scenario. */
+    public static final String[] ALL = {PLAIN, WEIGHTED, RULES, COST_CURVE, YOUNG_WITCH};
+
+
+    /** Get the request for a scenario.
+     *  @param catalog The catalog the cards come from.
+     *  @param name The name of the scenario. */
+    public static ShuffleRequest request(CardCatalog catalog, String name) {
+        ShuffleRequest.Builder res = new ShuffleRequest.Builder()
+                .setFilter(allSets(catalog), "", "", true, true, "");
+        switch(name) {
+            case PLAIN:
+                break;
+            case WEIGHTED:
+                // Every other set is twice as likely
+                StringBuilder weights = new StringBuilder();
+                for(int set=0; set<=maxSet(catalog); set++)
+                    weights.append(set == 0 ? "" : ",").append(set % 2 == 0 ? 2 : 1);
+                res.setWeights(weights.toString(), "");
+                break;
+            case RULES:
+                res.setRules(true, true, true, false);
+                break;
+            case COST_CURVE:
+                res.setCostCurve(true);
+                break;
+            case YOUNG_WITCH:
+                res.setCards(new long[0], new long[]{TableCard.ID_YOUNG_WITCH});
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + name);
+        }
+        return res.build();
+    }
+
+
+    /** Get the highest set id in the catalog. */
+    private static int maxSet(CardCatalog catalog) {
+        int res = 0;
+        for(int card=0; card<catalog.size(); card++)
+            res = Math.max(res, catalog.getSet(card));
+        return res;
+    }
+
+
+    /** Get a set filter that allows every set in the catalog. */
+    private static String allSets(CardCatalog catalog) {
+        StringBuilder res = new StringBuilder();
+        for(int set=0; set<=maxSet(catalog); set++)
+            res.append(set == 0 ? "" : ",").append(set);
+        return res.toString();
+    }
+}
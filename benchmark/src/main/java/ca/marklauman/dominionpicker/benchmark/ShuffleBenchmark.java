@@ -0,0 +1,75 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+
+/** Measures whole shuffles against the real card catalog, for each of the
+ *  {@link Scenarios}. The pool is built once (as the app caches it), so each operation
+ *  is one supply. Run with {@code -Pjmh.prof=gc} to see the bytes allocated per supply
+ *  ({@code gc.alloc.rate.norm}).
+ *  @author Mark Lauman */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShuffleBenchmark {
+
+    /** The scenario to shuffle. */
+    @Param({Scenarios.PLAIN, Scenarios.WEIGHTED, Scenarios.RULES,
+            Scenarios.COST_CURVE, Scenarios.YOUNG_WITCH})
+    public String scenario;
+
+    /** The catalog the cards come from. */
+    private CardCatalog catalog;
+    /** The settings of the shuffle. */
+    private ShuffleRequest request;
+    /** The pool the supplies are drawn from. */
+    private CardPool pool;
+    /** Source of randomness for the supplies. */
+    private Random random;
+
+
+    @Setup
+    public void setup() {
+        catalog = CatalogFixture.get();
+        request = Scenarios.request(catalog, scenario);
+        pool = ShuffleEngine.newPool(catalog, request);
+        random = new Random(1L);
+    }
+
+
+    /** Shuffle one supply from the cached pool. */
+    @Benchmark
+    public ShuffleSupply shuffle() {
+        ShuffleSupply supply = ShuffleEngine.newSupply(catalog, request, random);
+        pool.fill(supply, random);
+        return supply;
+    }
+
+
+    /** Shuffle one supply, building the pool first (a shuffle after the settings change). */
+    @Benchmark
+    public ShuffleSupply shuffleNewPool() {
+        return ShuffleEngine.shuffle(catalog, request, random.nextLong());
+    }
+}
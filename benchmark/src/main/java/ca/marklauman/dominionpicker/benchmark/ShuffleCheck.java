@@ -0,0 +1,202 @@
+package ca.marklauman.dominionpicker.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+
+import ca.marklauman.dominionpicker.shuffler.CardCatalog;
+import ca.marklauman.dominionpicker.shuffler.CardPool;
+import ca.marklauman.dominionpicker.shuffler.CardWeights;
+import ca.marklauman.dominionpicker.shuffler.ShuffleEngine;
+import ca.marklauman.dominionpicker.shuffler.ShuffleRequest;
+import ca.marklauman.dominionpicker.shuffler.ShuffleSupply;
+import ca.marklauman.dominionpicker.shuffler.SidePile;
+import ca.marklauman.dominionpicker.shuffler.StratifiedSampler;
+
+/** Shuffles many supplies for each of the {@link Scenarios} and reports the shuffles per
+ *  second, the bytes allocated per shuffle and whether the cards were drawn fairly.
+ *  This is run by the {@code shuffleCheck} Gradle task, which fails if any draw is unfair.
+ *
+ *  <p>Fairness is checked with chi-square tests. Cards that the shuffler can't tell apart
+ *  (same kind, weight, rules, cost range and bane eligibility) should be in the supply
+ *  equally often, so each group of such cards is tested on its own. Banes are tested the
+ *  same way: every card that can be the bane should be drawn for it equally often.
+ *  A test fails if its statistic is more than {@link #MAX_Z} standard deviations above
+ *  what chance would give (using the Wilson-Hilferty approximation).</p>
+ *
+ *  <p>Arguments: the number of shuffles per scenario (1,000,000 by default),
+ *  then the scenarios to run (all of them by default).</p>
+ *  @author Mark Lauman */
+public class ShuffleCheck {
+
+    /** The largest z-score allowed for a chi-square test. */
+    private static final double MAX_Z = 4.5;
+    /** The number of shuffles run before timing starts. */
+    private static final int WARMUP = 20000;
+
+    /** The catalog the cards come from. */
+    private final CardCatalog catalog;
+    /** True once a test has failed. */
+    private boolean failed = false;
+
+
+    private ShuffleCheck(CardCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+
+    public static void main(String[] args) {
+        int shuffles = args.length < 1 ? 1000000 : Integer.parseInt(args[0]);
+        String[] scenarios = Scenarios.ALL;
+        if(1 < args.length) {
+            scenarios = new String[args.length - 1];
+            System.arraycopy(args, 1, scenarios, 0, scenarios.length);
+        }
+
+        ShuffleCheck check = new ShuffleCheck(CatalogFixture.get());
+        for(String scenario : scenarios)
+            check.run(scenario, shuffles);
+        if(check.failed) {
+            System.out.println("FAILED: some cards were not drawn fairly");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+
+    /** Shuffle the supplies of one scenario and report on them. */
+    private void run(String scenario, int shuffles) {
+        ShuffleRequest request = Scenarios.request(catalog, scenario);
+        CardPool pool = ShuffleEngine.newPool(catalog, request);
+        Random random = new Random(scenario.hashCode());
+        for(int i=0; i<WARMUP; i++)
+            pool.fill(ShuffleEngine.newSupply(catalog, request, random), random);
+
+        // Time the shuffles and count the cards in them
+        long[] inSupply = new long[catalog.size()];
+        long[] asBane = new long[catalog.size()];
+        long specials = 0L;
+        int incomplete = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i=0; i<shuffles; i++) {
+            ShuffleSupply supply = ShuffleEngine.newSupply(catalog, request, random);
+            pool.fill(supply, random);
+            if(!supply.isComplete()) {
+                incomplete++;
+                continue;
+            }
+            long bane = supply.getBane();
+            for(long id : supply.getCards()) {
+                int card = catalog.indexOf(id);
+                if(id == bane) asBane[card]++;
+                else inSupply[card]++;
+                if(catalog.isSpecial(card)) specials++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        System.out.println("== " + scenario);
+        System.out.println(String.format(Locale.US, "  %.0f shuffles/sec", shuffles * 1e9 / time));
+        if(0 <= bytes)
+            System.out.println(String.format(Locale.US, "  %.0f bytes/shuffle",
+                                             bytes / (double) shuffles));
+        System.out.println(String.format(Locale.US, "  %.3f events and landmarks/supply",
+                                         specials / (double) (shuffles - incomplete)));
+        if(incomplete != 0) {
+            System.out.println("  " + incomplete + " supplies could not be completed");
+            failed = true;
+        }
+
+        // Test that cards the shuffler can't tell apart are drawn equally often
+        BitSet eligible = request.getFilter().compile(catalog);
+        CardWeights weights = request.getWeights();
+        TreeMap<String, ArrayList<Integer>> groups = new TreeMap<>();
+        ArrayList<Integer> banes = new ArrayList<>();
+        for(int card = eligible.nextSetBit(0); 0 <= card; card = eligible.nextSetBit(card+1)) {
+            if(request.isRequired(catalog.getId(card))) continue;
+            String key = groupOf(card, weights);
+            ArrayList<Integer> group = groups.get(key);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(card);
+            if(fitsBane(card)) banes.add(card);
+        }
+        for(String key : groups.keySet())
+            test("in supply " + key, groups.get(key), inSupply);
+        if(request.isRequired(SidePile.ALL[0].trigger) || 0 < total(banes, asBane))
+            test("as bane", banes, asBane);
+    }
+
+
+    /** Get the group of a card: every card in the group should be drawn equally often. */
+    private String groupOf(int card, CardWeights weights) {
+        return (catalog.isSpecial(card) ? "special" : "kingdom")
+               + " w" + weights.weightOf(catalog, card)
+               + (catalog.hasFlag(card, CardCatalog.FLAG_PLUS_BUY) ? " buy" : "")
+               + (catalog.hasFlag(card, CardCatalog.FLAG_VILLAGE) ? " village" : "")
+               + (catalog.hasFlag(card, CardCatalog.FLAG_ATTACK) ? " attack" : "")
+               + " s" + StratifiedSampler.stratumOf(catalog, card, ShuffleEngine.COST_CURVE)
+               + (fitsBane(card) ? " bane" : "")
+               + (catalog.getId(card) == SidePile.ALL[0].trigger ? " trigger" : "");
+    }
+
+
+    /** Check if a card may be the young witch's bane. */
+    private boolean fitsBane(int card) {
+        return SidePile.ALL[0].fits(catalog, card);
+    }
+
+
+    /** Add up the counts of a group of cards. */
+    private static long total(ArrayList<Integer> cards, long[] counts) {
+        long res = 0L;
+        for(int card : cards)
+            res += counts[card];
+        return res;
+    }
+
+
+    /** Run a chi-square test that every card in a group was counted equally often,
+     *  and report the result. Groups of fewer than 2 cards are not tested. */
+    private void test(String name, ArrayList<Integer> cards, long[] counts) {
+        int df = cards.size() - 1;
+        if(df < 1) return;
+        double expected = total(cards, counts) / (double) cards.size();
+        if(expected <= 0) {
+            System.out.println("  " + name + ": never drawn  FAIL");
+            failed = true;
+            return;
+        }
+        double chi = 0.0;
+        for(int card : cards) {
+            double diff = counts[card] - expected;
+            chi += diff * diff / expected;
+        }
+
+        // Wilson-Hilferty: (chi/df)^(1/3) is roughly normal
+        double v = 2.0 / (9.0 * df);
+        double z = (Math.cbrt(chi / df) - (1.0 - v)) / Math.sqrt(v);
+        boolean fail = MAX_Z < z;
+        failed |= fail;
+        System.out.println(String.format(Locale.US, "  %-40s %4d cards  chi2=%9.1f  df=%3d  z=%6.2f%s",
+                                         name, cards.size(), chi, df, z, fail ? "  FAIL" : ""));
+    }
+
+
+    /** Get the bytes allocated by this thread so far, or -1 if the JVM can't tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) return -1L;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+        if(!sun.isThreadAllocatedMemorySupported()) return -1L;
+        return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
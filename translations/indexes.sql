@@ -0,0 +1,14 @@
+-- Indexes for the card and supply tables of core.db.
+-- Run this after importing the tsv files (see readme.txt).
+
+-- The language filter (Pref.languageFilter) picks translations by language,
+-- so cardAll and supply are read starting from these.
+CREATE INDEX IF NOT EXISTS cardTrans_language ON cardTrans(language, _id);
+CREATE INDEX IF NOT EXISTS supplyTrans_language ON supplyTrans(language, _id);
+
+-- The picker filter (FragmentPicker.getFilter) is checked on the rows found by the
+-- language filter, and the card catalog reads every row, so cardData needs no index for them.
+
+-- The cost and debt choices on the rules screen (SELECT DISTINCT).
+CREATE INDEX IF NOT EXISTS cardData_costVal ON cardData(costVal);
+CREATE INDEX IF NOT EXISTS cardData_debt ON cardData(debt);